@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.benchmark;
+
+import io.liquer.pencil.encoder.support.Base64Support;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Base64Support encode/decode/wrap/unwrap at hash sized (SSHA: 28 bytes, SSHA512: 72 bytes)
+ * and LDIF sized payloads with the JDK Base64 codec as baseline.
+ * Run with {@code -prof gc} to see the allocation rate per operation.
+ *
+ * @author sius
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Base64SupportBenchmark {
+
+  private static final String PREFIX = "{SSHA512}";
+
+  @Param({"28", "72", "1024", "65536"})
+  private int size;
+
+  private byte[] value;
+  private String encoded;
+  private String wrapped;
+
+  @Setup
+  public void setup() {
+    value = new byte[size];
+    new Random(size).nextBytes(value);
+    encoded = Base64Support.base64Encode(value);
+    wrapped = Base64Support.wrap(encoded, 76);
+  }
+
+  @Benchmark
+  public String encode() {
+    return Base64Support.base64Encode(PREFIX, value, 0, size, false, false);
+  }
+
+  @Benchmark
+  public String encodeUfSafeNoPadding() {
+    return Base64Support.base64Encode(PREFIX, value, 0, size, true, true);
+  }
+
+  @Benchmark
+  public byte[] decode() {
+    return Base64Support.base64Decode(encoded);
+  }
+
+  @Benchmark
+  public String wrap() {
+    return Base64Support.wrap(encoded, 76);
+  }
+
+  @Benchmark
+  public String unwrap() {
+    return Base64Support.unwrap(wrapped);
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public String encodeContended() {
+    return Base64Support.base64Encode(PREFIX, value, 0, size, false, false);
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public byte[] decodeContended() {
+    return Base64Support.base64Decode(encoded);
+  }
+
+  @Benchmark
+  public String jdkEncode() {
+    return PREFIX + Base64.getEncoder().encodeToString(value);
+  }
+
+  @Benchmark
+  public byte[] jdkDecode() {
+    return Base64.getDecoder().decode(encoded);
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.benchmark;
+
+import io.liquer.pencil.autoconfigure.PencilAutoConfiguration;
+import io.liquer.pencil.autoconfigure.PencilPasswordEncoderDecorator;
+import io.liquer.pencil.autoconfigure.PencilProperties;
+import io.liquer.pencil.encoder.support.SaltSources;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Single and multi-threaded encode/matches throughput of the DelegatingPasswordEncoder
+ * of the PencilAutoConfiguration without decorators,
+ * see {@link LdapShaDelegatingPasswordEncoderBenchmark} for the baseline.
+ * Run with {@code -prof gc} to see the allocation rate per operation.
+ *
+ * @author sius
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DelegatingPasswordEncoderBenchmark {
+
+  private static final String RAW_PASSWORD = "password";
+
+  @Param({"ldap", "SSHA", "SSHA256", "SSHA512"})
+  private String encodeId;
+
+  @Param({"THREAD_LOCAL", "SHARED", "PREFETCH"})
+  private SaltSources.Type saltSource;
+
+  private PasswordEncoder pencil;
+  private String encodedPassword;
+
+  @Setup
+  public void setup() {
+    final PencilProperties properties = new PencilProperties();
+    properties.setDefaultEncodeId(encodeId);
+    properties.setSaltSource(saltSource);
+    pencil = new PencilAutoConfiguration().passwordEncoder(properties,
+        new StaticListableBeanFactory().getBeanProvider(PencilPasswordEncoderDecorator.class));
+    encodedPassword = pencil.encode(RAW_PASSWORD);
+  }
+
+  @Benchmark
+  public String encode() {
+    return pencil.encode(RAW_PASSWORD);
+  }
+
+  @Benchmark
+  public boolean matches() {
+    return pencil.matches(RAW_PASSWORD, encodedPassword);
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public String encodeContended() {
+    return pencil.encode(RAW_PASSWORD);
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public boolean matchesContended() {
+    return pencil.matches(RAW_PASSWORD, encodedPassword);
+  }
+}
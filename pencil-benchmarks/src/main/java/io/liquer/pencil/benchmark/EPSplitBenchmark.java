@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.benchmark;
+
+import io.liquer.pencil.encoder.SSHA512PasswordEncoder;
+import io.liquer.pencil.encoder.support.EPParser;
+import io.liquer.pencil.encoder.support.EPSplit;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Splitting an encoded SSHA512 password with EPSplit
+ * compared to the reusable EPParser flyweight.
+ * Run with {@code -prof gc} to see the allocation rate per operation.
+ *
+ * @author sius
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EPSplitBenchmark {
+
+  private static final int HASH_SIZE = 64;
+  private static final Set<String> IDENTIFIERS = Collections.singleton("{SSHA512}");
+
+  private String encodedPassword;
+  private EPParser parser;
+  private byte[] buffer;
+
+  @Setup
+  public void setup() {
+    encodedPassword = new SSHA512PasswordEncoder().encode("password");
+    parser = new EPParser(IDENTIFIERS, HASH_SIZE);
+    buffer = new byte[128];
+  }
+
+  @Benchmark
+  public byte[] split() {
+    return new EPSplit(encodedPassword, IDENTIFIERS, HASH_SIZE).getSalt();
+  }
+
+  @Benchmark
+  public int parse() {
+    return parser.parse(encodedPassword) ? parser.decode(buffer, 0) : -1;
+  }
+}
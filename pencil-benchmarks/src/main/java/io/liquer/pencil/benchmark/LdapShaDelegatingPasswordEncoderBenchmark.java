@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.benchmark;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.LdapShaPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Encode/matches throughput of a DelegatingPasswordEncoder with Spring's LdapShaPasswordEncoder,
+ * the baseline of the {@link DelegatingPasswordEncoderBenchmark}.
+ * Run with {@code -prof gc} to see the allocation rate per operation.
+ *
+ * @author sius
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LdapShaDelegatingPasswordEncoderBenchmark {
+
+  private static final String RAW_PASSWORD = "password";
+
+  private PasswordEncoder baseline;
+  private String encodedPassword;
+
+  @Setup
+  @SuppressWarnings("deprecation")
+  public void setup() {
+    baseline = new DelegatingPasswordEncoder("ldap",
+        Collections.singletonMap("ldap", new LdapShaPasswordEncoder()));
+    encodedPassword = baseline.encode(RAW_PASSWORD);
+  }
+
+  @Benchmark
+  public String encode() {
+    return baseline.encode(RAW_PASSWORD);
+  }
+
+  @Benchmark
+  public boolean matches() {
+    return baseline.matches(RAW_PASSWORD, encodedPassword);
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.benchmark;
+
+import io.liquer.pencil.encoder.SSHA224PasswordEncoder;
+import io.liquer.pencil.encoder.SSHA256PasswordEncoder;
+import io.liquer.pencil.encoder.SSHA384PasswordEncoder;
+import io.liquer.pencil.encoder.SSHA512PasswordEncoder;
+import io.liquer.pencil.encoder.SSHAPasswordEncoder;
+import io.liquer.pencil.encoder.legacy.XORPasswordEncoder;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.password.LdapShaPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Single and multi-threaded encode/matches throughput of the pencil PasswordEncoders
+ * with Spring's LdapShaPasswordEncoder as baseline.
+ * Run with {@code -prof gc} to see the allocation rate per operation.
+ *
+ * @author sius
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordEncoderBenchmark {
+
+  @Param({"SSHA", "SSHA224", "SSHA256", "SSHA384", "SSHA512", "XOR", "LdapSha"})
+  private String encoder;
+
+  @Param({"password", "Tr0ub4dor&3-correct-horse-battery-staple-äöüß"})
+  private String rawPassword;
+
+  private PasswordEncoder passwordEncoder;
+  private String encodedPassword;
+
+  @Setup
+  public void setup() {
+    passwordEncoder = passwordEncoder(encoder);
+    encodedPassword = passwordEncoder.encode(rawPassword);
+  }
+
+  @Benchmark
+  public String encode() {
+    return passwordEncoder.encode(rawPassword);
+  }
+
+  @Benchmark
+  public boolean matches() {
+    return passwordEncoder.matches(rawPassword, encodedPassword);
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public String encodeContended() {
+    return passwordEncoder.encode(rawPassword);
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public boolean matchesContended() {
+    return passwordEncoder.matches(rawPassword, encodedPassword);
+  }
+
+  @SuppressWarnings("deprecation")
+  static PasswordEncoder passwordEncoder(String encoder) {
+    switch (encoder) {
+      case "SSHA":
+        return new SSHAPasswordEncoder();
+      case "SSHA224":
+        return new SSHA224PasswordEncoder();
+      case "SSHA256":
+        return new SSHA256PasswordEncoder();
+      case "SSHA384":
+        return new SSHA384PasswordEncoder();
+      case "SSHA512":
+        return new SSHA512PasswordEncoder();
+      case "XOR":
+        return new XORPasswordEncoder();
+      case "LdapSha":
+        return new LdapShaPasswordEncoder();
+      default:
+        throw new IllegalArgumentException("Unknown encoder: " + encoder);
+    }
+  }
+}
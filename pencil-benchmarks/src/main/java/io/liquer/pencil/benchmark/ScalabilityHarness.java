@@ -0,0 +1,362 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.benchmark;
+
+import io.liquer.pencil.autoconfigure.PencilAutoConfiguration;
+import io.liquer.pencil.autoconfigure.PencilPasswordEncoderDecorator;
+import io.liquer.pencil.autoconfigure.PencilProperties;
+import io.liquer.pencil.encoder.support.SaltSources;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+import org.HdrHistogram.Histogram;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Multi-core scalability harness for the PasswordEncoders of the PencilAutoConfiguration.
+ * Runs encode/matches per encode id with 1, 2, 4 .. N platform and virtual threads (Java 21+)
+ * and reports the throughput, the scaling efficiency relative to one thread,
+ * the p50/p99/p999 latency and the lock contention recorded with JFR
+ * (jdk.JavaMonitorEnter, jdk.ThreadPark and jdk.VirtualThreadPinned of the worker threads).
+ * <pre>
+ * java -cp pencil-benchmarks/target/benchmarks.jar io.liquer.pencil.benchmark.ScalabilityHarness \
+ *   --ids=SSHA,SSHA512 --ops=matches,encode --kinds=platform,virtual \
+ *   --threads=16 --warmup=1 --duration=3 --salt-source=thread-local --jfr=true
+ * </pre>
+ * Without --ids every distinct PasswordEncoder is measured once under its first encode id.
+ *
+ * @author sius
+ */
+public final class ScalabilityHarness {
+
+  private static final String RAW_PASSWORD = "Tr0ub4dor&3";
+  private static final String THREAD_NAME = "pencil-scale-";
+  private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.SECONDS.toNanos(60);
+  private static final String MONITOR_ENTER = "jdk.JavaMonitorEnter";
+  private static final String THREAD_PARK = "jdk.ThreadPark";
+  private static final String PINNED = "jdk.VirtualThreadPinned";
+  private static final Set<String> OPTIONS = new HashSet<>(Arrays.asList(
+      "ids", "ops", "kinds", "threads", "warmup", "duration", "salt-source", "jfr"));
+
+  public static void main(String[] args) throws Exception {
+    final Map<String, String> options = options(args);
+    final int maxThreads = Integer.parseInt(
+        options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+    final Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "1")));
+    final Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "3")));
+    final boolean jfr = Boolean.parseBoolean(options.getOrDefault("jfr", "true"));
+    final PencilProperties properties = new PencilProperties();
+    if (options.containsKey("salt-source")) {
+      properties.setSaltSource(SaltSources.Type.valueOf(
+          options.get("salt-source").toUpperCase(Locale.ROOT).replace('-', '_')));
+    }
+    final Map<String, PasswordEncoder> encoders = encoders(registered(properties), options.get("ids"));
+
+    System.out.printf("%-10s %-8s %-9s %7s %12s %6s %10s %10s %10s %8s %8s %8s  %s%n",
+        "encodeId", "op", "kind", "threads", "ops/s", "eff%",
+        "p50(us)", "p99(us)", "p999(us)", "monitor", "park", "pinned", "top contended");
+    for (Map.Entry<String, PasswordEncoder> encoder : encoders.entrySet()) {
+      for (String op : list(options.getOrDefault("ops", "matches,encode"))) {
+        final Runnable task = task(encoder.getValue(), op);
+        for (String kind : list(options.getOrDefault("kinds", "platform,virtual"))) {
+          final ThreadFactory threads = threadFactory(kind);
+          if (threads == null) {
+            System.out.printf("%-10s %-8s %-9s virtual threads are not available on Java %s%n",
+                encoder.getKey(), op, kind, Runtime.version().feature());
+            continue;
+          }
+          double single = 0;
+          for (int n : threadCounts(maxThreads)) {
+            measure(task, threads, n, warmup, false);
+            final Result result = measure(task, threads, n, duration, jfr);
+            if (n == 1) {
+              single = result.throughput();
+            }
+            final double efficiency = single == 0 ? 0 : 100 * result.throughput() / (n * single);
+            System.out.printf(Locale.ROOT,
+                "%-10s %-8s %-9s %7d %12.0f %6.1f %10.1f %10.1f %10.1f %8d %8d %8d  %s%n",
+                encoder.getKey(), op, kind, n, result.throughput(), efficiency,
+                result.percentile(50), result.percentile(99), result.percentile(99.9),
+                result.count(MONITOR_ENTER), result.count(THREAD_PARK), result.count(PINNED),
+                result.topContended());
+          }
+        }
+      }
+    }
+  }
+
+  private static Result measure(
+      Runnable task, ThreadFactory threads, int n, Duration duration, boolean jfr)
+      throws InterruptedException, IOException {
+    final Histogram[] histograms = new Histogram[n];
+    final Thread[] workers = new Thread[n];
+    final CountDownLatch ready = new CountDownLatch(n);
+    final CountDownLatch start = new CountDownLatch(1);
+    final long[] deadline = new long[1];
+    for (int i = 0; i < n; i++) {
+      final Histogram histogram = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+      histograms[i] = histogram;
+      workers[i] = threads.newThread(() -> {
+        ready.countDown();
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+        final long end = deadline[0];
+        long t0 = System.nanoTime();
+        while (t0 < end) {
+          task.run();
+          final long t1 = System.nanoTime();
+          histogram.recordValue(Math.min(t1 - t0, HIGHEST_TRACKABLE_NANOS));
+          t0 = t1;
+        }
+      });
+      workers[i].start();
+    }
+    ready.await();
+    final Recording recording = jfr ? contentionRecording() : null;
+    final long begin = System.nanoTime();
+    // published to the workers by the happens-before edge of the start latch
+    deadline[0] = begin + duration.toNanos();
+    start.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    final long elapsed = System.nanoTime() - begin;
+    final Histogram latency = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+    for (Histogram histogram : histograms) {
+      latency.add(histogram);
+    }
+    return new Result(latency, elapsed, recording == null
+        ? Collections.emptyMap()
+        : contention(recording));
+  }
+
+  private static Recording contentionRecording() {
+    final Recording recording = new Recording();
+    recording.enable(MONITOR_ENTER).withThreshold(Duration.ZERO);
+    recording.enable(THREAD_PARK).withThreshold(Duration.ZERO);
+    recording.enable(PINNED).withThreshold(Duration.ZERO);
+    recording.start();
+    return recording;
+  }
+
+  /* counts the contention events of the worker threads by event type and by event type:class */
+  private static Map<String, Long> contention(Recording recording) throws IOException {
+    final Map<String, Long> ret = new HashMap<>();
+    final Path file = Files.createTempFile(THREAD_NAME, ".jfr");
+    try {
+      recording.stop();
+      recording.dump(file);
+      for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+        final RecordedThread thread = event.getThread();
+        if (thread == null
+            || thread.getJavaName() == null
+            || !thread.getJavaName().startsWith(THREAD_NAME)) {
+          continue;
+        }
+        final String type = event.getEventType().getName();
+        ret.merge(type, 1L, Long::sum);
+        final String field = MONITOR_ENTER.equals(type) ? "monitorClass" : "parkedClass";
+        if (event.hasField(field)) {
+          final RecordedClass recordedClass = event.getClass(field);
+          if (recordedClass != null) {
+            ret.merge(type + ":" + recordedClass.getName(), 1L, Long::sum);
+          }
+        }
+      }
+    } finally {
+      recording.close();
+      Files.deleteIfExists(file);
+    }
+    return ret;
+  }
+
+  private static Runnable task(PasswordEncoder encoder, String op) {
+    switch (op) {
+      case "encode":
+        return () -> encoder.encode(RAW_PASSWORD);
+      case "matches":
+        final String encodedPassword = encoder.encode(RAW_PASSWORD);
+        return () -> {
+          if (!encoder.matches(RAW_PASSWORD, encodedPassword)) {
+            throw new IllegalStateException("Password mismatch!");
+          }
+        };
+      default:
+        throw new IllegalArgumentException("Unknown op: " + op);
+    }
+  }
+
+  private static ThreadFactory threadFactory(String kind) {
+    switch (kind) {
+      case "platform":
+        final AtomicInteger counter = new AtomicInteger();
+        return r -> new Thread(r, THREAD_NAME + counter.getAndIncrement());
+      case "virtual":
+        return virtualThreadFactory();
+      default:
+        throw new IllegalArgumentException("Unknown thread kind: " + kind);
+    }
+  }
+
+  /* Thread.ofVirtual().name(prefix, 0).factory() without a compile time dependency on Java 21 */
+  private static ThreadFactory virtualThreadFactory() {
+    try {
+      final Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      builder = builderType.getMethod("name", String.class, long.class)
+          .invoke(builder, THREAD_NAME + "v-", 0L);
+      return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+    } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+      return null;
+    }
+  }
+
+  /* the undecorated PasswordEncoders by encode id, as registered by the PencilAutoConfiguration */
+  private static Map<String, PasswordEncoder> registered(PencilProperties properties) {
+    final Map<String, PasswordEncoder> ret = new LinkedHashMap<>();
+    final StaticListableBeanFactory beans = new StaticListableBeanFactory();
+    beans.addBean("registered", (PencilPasswordEncoderDecorator) (encodeId, passwordEncoder) -> {
+      if (!PencilPasswordEncoderDecorator.UNKNOWN_ENCODE_ID.equals(encodeId)) {
+        ret.put(encodeId, passwordEncoder);
+      }
+      return passwordEncoder;
+    });
+    new PencilAutoConfiguration().passwordEncoder(
+        properties, beans.getBeanProvider(PencilPasswordEncoderDecorator.class));
+    return ret;
+  }
+
+  /* one entry per distinct PasswordEncoder, aliases are skipped unless requested explicitly */
+  private static Map<String, PasswordEncoder> encoders(
+      Map<String, PasswordEncoder> encoders, String ids) {
+    final Map<String, PasswordEncoder> ret = new LinkedHashMap<>();
+    if (ids != null) {
+      for (String id : list(ids)) {
+        if (!encoders.containsKey(id)) {
+          throw new IllegalArgumentException(
+              "Unknown encode id: " + id + ", supported: " + encoders.keySet());
+        }
+        ret.put(id, encoders.get(id));
+      }
+      return ret;
+    }
+    final Map<PasswordEncoder, Boolean> seen = new IdentityHashMap<>();
+    encoders.forEach((id, encoder) -> {
+      if (seen.put(encoder, Boolean.TRUE) == null) {
+        ret.put(id, encoder);
+      }
+    });
+    return ret;
+  }
+
+  private static List<Integer> threadCounts(int maxThreads) {
+    final List<Integer> ret = new ArrayList<>();
+    for (int n = 1; n < maxThreads; n <<= 1) {
+      ret.add(n);
+    }
+    ret.add(Math.max(maxThreads, 1));
+    return ret;
+  }
+
+  private static List<String> list(String value) {
+    final List<String> ret = new ArrayList<>();
+    for (String s : value.split(",")) {
+      if (!s.trim().isEmpty()) {
+        ret.add(s.trim());
+      }
+    }
+    return ret;
+  }
+
+  private static Map<String, String> options(String[] args) {
+    final Map<String, String> ret = new HashMap<>();
+    for (String arg : args) {
+      final int eq = arg.indexOf('=');
+      final String key = arg.startsWith("--") && eq > 2 ? arg.substring(2, eq) : null;
+      if (key == null || !OPTIONS.contains(key)) {
+        throw new IllegalArgumentException(
+            "Invalid option: " + arg + ", supported: --<option>=<value> with option in " + OPTIONS);
+      }
+      ret.put(key, arg.substring(eq + 1));
+    }
+    return ret;
+  }
+
+  private static final class Result {
+
+    private final Histogram latency;
+    private final long elapsedNanos;
+    private final Map<String, Long> contention;
+
+    Result(Histogram latency, long elapsedNanos, Map<String, Long> contention) {
+      this.latency = latency;
+      this.elapsedNanos = elapsedNanos;
+      this.contention = contention;
+    }
+
+    double throughput() {
+      return latency.getTotalCount() * 1e9 / elapsedNanos;
+    }
+
+    double percentile(double percentile) {
+      return latency.getValueAtPercentile(percentile) / 1e3;
+    }
+
+    long count(String type) {
+      return contention.getOrDefault(type, 0L);
+    }
+
+    String topContended() {
+      return contention.entrySet().stream()
+          .filter(e -> e.getKey().indexOf(':') > 0)
+          .max(Map.Entry.comparingByValue())
+          .map(e -> e.getKey().substring(e.getKey().indexOf(':') + 1) + " (" + e.getValue() + ")")
+          .orElse("-");
+    }
+  }
+
+  private ScalabilityHarness() { }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.migration;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The durable progress of a chunked migration job in its work directory:
+ * <ul>
+ *   <li>{@code fingerprint} the job parameters, a work directory is never resumed by another job</li>
+ *   <li>{@code part-<chunk>.ldif} the rewritten chunks, atomically moved into place when complete</li>
+ *   <li>{@code done} the journal of the completed chunks with their counters, forced to disk per chunk</li>
+ * </ul>
+ *
+ * @author sius
+ */
+final class Checkpoint implements Closeable {
+
+  static final String FINGERPRINT = "fingerprint";
+  static final String DONE = "done";
+
+  private final Path workDir;
+  private final Map<Integer, long[]> done;
+  private final FileChannel journal;
+
+  private Checkpoint(Path workDir, Map<Integer, long[]> done, FileChannel journal) {
+    this.workDir = workDir;
+    this.done = done;
+    this.journal = journal;
+  }
+
+  /**
+   * Opens the checkpoint of the job and reads the completed chunks.
+   * @param workDir the work directory, created if missing
+   * @param fingerprint the job parameters
+   * @return the checkpoint
+   * @throws IOException if the work directory is not accessible
+   * @throws IllegalArgumentException if the work directory belongs to another job
+   */
+  static Checkpoint open(Path workDir, String fingerprint) throws IOException {
+    Files.createDirectories(workDir);
+    final Path fp = workDir.resolve(FINGERPRINT);
+    final Path journal = workDir.resolve(DONE);
+    if (Files.exists(fp)) {
+      if (!fingerprint.equals(new String(Files.readAllBytes(fp), StandardCharsets.UTF_8))) {
+        throw new IllegalArgumentException(
+            "The work directory " + workDir + " belongs to another migration job!");
+      }
+    } else {
+      Files.deleteIfExists(journal);
+      final Path tmp = workDir.resolve(FINGERPRINT + ".tmp");
+      Files.write(tmp, fingerprint.getBytes(StandardCharsets.UTF_8));
+      Files.move(tmp, fp, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+    final FileChannel channel = FileChannel.open(journal,
+        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    final Map<Integer, long[]> done = new ConcurrentHashMap<>();
+    try {
+      channel.position(read(channel, done));
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+    return new Checkpoint(workDir, done, channel);
+  }
+
+  /**
+   * Whether the chunk has been completed by a previous run.
+   * @param chunk the chunk index
+   * @return true if the chunk is journaled and its part exists
+   */
+  boolean isDone(int chunk) {
+    return done.containsKey(chunk) && Files.exists(part(chunk));
+  }
+
+  /**
+   * The journaled counters of a completed chunk.
+   * @param chunk the chunk index
+   * @return the number of values and rewritten values
+   */
+  long[] counters(int chunk) {
+    return done.get(chunk);
+  }
+
+  Path part(int chunk) {
+    return workDir.resolve(String.format("part-%08d.ldif", chunk));
+  }
+
+  Path tmp(int chunk) {
+    return workDir.resolve(String.format("part-%08d.ldif.tmp", chunk));
+  }
+
+  /**
+   * Moves the complete part of the chunk into place and journals the chunk.
+   * @param chunk the chunk index
+   * @param values the number of password values of the chunk
+   * @param rewritten the number of rewritten password values of the chunk
+   * @throws IOException if the part cannot be moved or the journal cannot be written
+   */
+  void commit(int chunk, long values, long rewritten) throws IOException {
+    Files.move(tmp(chunk), part(chunk),
+        StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    final ByteBuffer line = ByteBuffer.wrap((chunk + " " + values + " " + rewritten + "\n")
+        .getBytes(StandardCharsets.US_ASCII));
+    synchronized (journal) {
+      while (line.hasRemaining()) {
+        journal.write(line);
+      }
+      journal.force(false);
+    }
+    done.put(chunk, new long[] {values, rewritten});
+  }
+
+  /**
+   * Deletes the parts, the journal and the fingerprint of the completed job.
+   * @param chunks the number of chunks
+   * @throws IOException if a file cannot be deleted
+   */
+  void delete(int chunks) throws IOException {
+    journal.close();
+    for (int i = 0; i < chunks; i++) {
+      Files.deleteIfExists(part(i));
+      Files.deleteIfExists(tmp(i));
+    }
+    Files.deleteIfExists(workDir.resolve(DONE));
+    Files.deleteIfExists(workDir.resolve(FINGERPRINT));
+    try {
+      Files.deleteIfExists(workDir);
+    } catch (DirectoryNotEmptyException e) {
+      // foreign files are kept
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    journal.close();
+  }
+
+  /* reads the journal, a torn last line of a crashed run is dropped, returns the append position */
+  private static long read(FileChannel channel, Map<Integer, long[]> done) throws IOException {
+    final ByteBuffer buf = ByteBuffer.allocate((int) channel.size());
+    while (buf.hasRemaining() && channel.read(buf, buf.position()) >= 0) {
+      // read fully
+    }
+    final String journal = new String(buf.array(), 0, buf.position(), StandardCharsets.US_ASCII);
+    final int end = journal.lastIndexOf('\n') + 1;
+    for (String line : journal.substring(0, end).split("\n")) {
+      final String[] fields = line.trim().split(" ");
+      if (fields.length == 3) {
+        done.put(Integer.parseInt(fields[0]),
+            new long[] {Long.parseLong(fields[1]), Long.parseLong(fields[2])});
+      }
+    }
+    channel.truncate(end);
+    return end;
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.migration;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * The durable progress of a JDBC migration job: the last committed key and the counters,
+ * forced to disk and atomically replaced after every committed batch.
+ * Replaying a batch after a crash between commit and checkpoint does not rewrite
+ * the rewritten values again, but the rows, batches and schemes of the replayed batch
+ * are counted twice.
+ *
+ * @author sius
+ */
+final class JdbcCheckpoint {
+
+  private static final String FINGERPRINT = "fingerprint";
+  private static final String LAST_KEY = "lastKey";
+  private static final String KEY_TYPE = "keyType";
+  private static final String LONG = "long";
+  private static final String STRING = "string";
+
+  private final Path path;
+  private final Properties state;
+
+  private JdbcCheckpoint(Path path, Properties state) {
+    this.path = path;
+    this.state = state;
+  }
+
+  /**
+   * Opens the checkpoint of the job.
+   * @param path the checkpoint file
+   * @param fingerprint the job parameters
+   * @return the checkpoint, empty if the file does not exist
+   * @throws IOException if the file cannot be read
+   * @throws IllegalArgumentException if the checkpoint belongs to another job
+   */
+  static JdbcCheckpoint open(Path path, String fingerprint) throws IOException {
+    final Properties state = new Properties();
+    if (Files.exists(path)) {
+      try (Reader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+        state.load(in);
+      }
+      if (!fingerprint.equals(state.getProperty(FINGERPRINT))) {
+        throw new IllegalArgumentException(
+            "The checkpoint " + path + " belongs to another migration job!");
+      }
+    }
+    state.setProperty(FINGERPRINT, fingerprint);
+    return new JdbcCheckpoint(path, state);
+  }
+
+  /**
+   * The last committed key, a Long for integral keys.
+   * @return the last committed key or null
+   */
+  Object getLastKey() {
+    final String key = state.getProperty(LAST_KEY);
+    if (key == null) {
+      return null;
+    }
+    return LONG.equals(state.getProperty(KEY_TYPE)) ? Long.valueOf(key) : key;
+  }
+
+  /**
+   * The counters of the committed batches.
+   * @return the counters by name
+   */
+  Map<String, Long> getCounters() {
+    final Map<String, Long> ret = new TreeMap<>();
+    for (String name : state.stringPropertyNames()) {
+      if (!FINGERPRINT.equals(name) && !LAST_KEY.equals(name) && !KEY_TYPE.equals(name)) {
+        ret.put(name, Long.valueOf(state.getProperty(name)));
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Saves the last committed key and the counters.
+   * @param lastKey the last committed key
+   * @param counters the counters by name
+   * @throws IOException if the file cannot be written
+   */
+  void save(Object lastKey, Map<String, Long> counters) throws IOException {
+    final boolean integral = lastKey instanceof Long || lastKey instanceof Integer
+        || lastKey instanceof Short || lastKey instanceof Byte;
+    state.setProperty(LAST_KEY, String.valueOf(lastKey));
+    state.setProperty(KEY_TYPE, integral ? LONG : STRING);
+    counters.forEach((name, value) -> state.setProperty(name, String.valueOf(value)));
+    final StringWriter out = new StringWriter();
+    state.store(out, "pencil JDBC migration checkpoint");
+    final ByteBuffer bytes = ByteBuffer.wrap(out.toString().getBytes(StandardCharsets.UTF_8));
+    final Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      while (bytes.hasRemaining()) {
+        channel.write(bytes);
+      }
+      channel.force(true);
+    }
+    Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  void delete() throws IOException {
+    Files.deleteIfExists(path);
+  }
+}
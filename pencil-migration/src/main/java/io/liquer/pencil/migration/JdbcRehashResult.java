@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.migration;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The counters of a completed JDBC migration run.
+ *
+ * @author sius
+ */
+public final class JdbcRehashResult {
+
+  private final long rows;
+  private final long resumedRows;
+  private final long rewritten;
+  private final long updated;
+  private final long batches;
+  private final Map<String, Long> schemes;
+  private final Duration elapsed;
+
+  JdbcRehashResult(long rows, long resumedRows, long rewritten, long updated, long batches,
+      Map<String, Long> schemes, Duration elapsed) {
+    this.rows = rows;
+    this.resumedRows = resumedRows;
+    this.rewritten = rewritten;
+    this.updated = updated;
+    this.batches = batches;
+    this.schemes = Collections.unmodifiableMap(schemes);
+    this.elapsed = elapsed;
+  }
+
+  /**
+   * The number of rows, including the rows committed by previous runs.
+   * A batch replayed after a crash between its commit and its checkpoint is counted twice.
+   * @return the number of rows
+   */
+  public long getRows() {
+    return rows;
+  }
+
+  /**
+   * The number of rows committed by previous runs.
+   * @return the number of resumed rows
+   */
+  public long getResumedRows() {
+    return resumedRows;
+  }
+
+  /**
+   * The number of rewritten password values.
+   * @return the number of rewritten password values
+   */
+  public long getRewritten() {
+    return rewritten;
+  }
+
+  /**
+   * The number of updated rows, rows changed concurrently since they were read are not updated.
+   * @return the number of updated rows
+   */
+  public long getUpdated() {
+    return updated;
+  }
+
+  /**
+   * The number of committed batches, including a replayed batch.
+   * @return the number of batches
+   */
+  public long getBatches() {
+    return batches;
+  }
+
+  /**
+   * The number of rows per stored encode id before the migration, {@code unknown} without encode id.
+   * @return the rows by encode id
+   */
+  public Map<String, Long> getSchemes() {
+    return schemes;
+  }
+
+  /**
+   * The elapsed time of this run.
+   * @return the elapsed time
+   */
+  public Duration getElapsed() {
+    return elapsed;
+  }
+
+  /**
+   * The throughput of this run, a replayed batch is included.
+   * @return the rows per second of this run
+   */
+  public double getRowsPerSecond() {
+    return (rows - resumedRows) / (Math.max(elapsed.toNanos(), 1) / 1e9);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "rows: %d (resumed: %d), rewritten: %d, updated: %d, batches: %d, elapsed: %.3fs, %.1f rows/s, schemes: %s",
+        rows, resumedRows, rewritten, updated, batches, elapsed.toNanos() / 1e9, getRowsPerSecond(), schemes);
+  }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.migration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * Rewrites the password column of a users table in batches.
+ * The table is paged with keyset pagination ({@code WHERE id > ? ORDER BY id}),
+ * every page is classified by encode id and rewritten in parallel on the fork/join pool
+ * while the next page is read, the rewritten values are written back with a JDBC batch update
+ * and committed together with a checkpoint of the last key.
+ * A failed or killed run is resumed from the checkpoint with the same arguments,
+ * a batch committed right before the crash is replayed and counted again.
+ * The update only applies if the stored value is unchanged since it was read ({@code AND password = ?}),
+ * so that concurrent password changes are never overwritten.
+ *
+ * @author sius
+ */
+public final class JdbcRehasher {
+
+  public static final String DEFAULT_ID_COLUMN = "id";
+  public static final String DEFAULT_PASSWORD_COLUMN = "password";
+  public static final int DEFAULT_BATCH_SIZE = 500;
+
+  private static final String UNKNOWN = "unknown";
+  private static final String SCHEME = "scheme.";
+  private static final String ROWS = "rows";
+  private static final String REWRITTEN = "rewritten";
+  private static final String UPDATED = "updated";
+  private static final String BATCHES = "batches";
+  private static final Pattern SQL_IDENTIFIER =
+      Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)?");
+
+  private final PasswordRewriter rewriter;
+  private final String table;
+  private final String idColumn;
+  private final String passwordColumn;
+  private final int batchSize;
+  private final ForkJoinPool pool;
+
+  /**
+   * Creates the JDBC rehasher for the id and password columns with batches of 500 rows on the common pool.
+   * @param rewriter the password rewriter
+   * @param table the users table
+   */
+  public JdbcRehasher(PasswordRewriter rewriter, String table) {
+    this(rewriter, table, DEFAULT_ID_COLUMN, DEFAULT_PASSWORD_COLUMN, DEFAULT_BATCH_SIZE,
+        ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Creates the JDBC rehasher.
+   * @param rewriter the password rewriter
+   * @param table the users table, e.g.: users or schema.users
+   * @param idColumn the unique, ordered key column
+   * @param passwordColumn the encoded password column
+   * @param batchSize the number of rows per page, batch update and commit
+   * @param pool the fork/join pool
+   * @throws IllegalArgumentException if an argument is missing, a name is not a plain SQL identifier
+   *     or the batch size is not positive
+   */
+  public JdbcRehasher(PasswordRewriter rewriter, String table, String idColumn, String passwordColumn,
+      int batchSize, ForkJoinPool pool) {
+    if (rewriter == null || pool == null) {
+      throw new IllegalArgumentException("The rewriter and pool are required!");
+    }
+    for (String name : new String[] {table, idColumn, passwordColumn}) {
+      if (name == null || !SQL_IDENTIFIER.matcher(name).matches()) {
+        throw new IllegalArgumentException("Invalid SQL identifier: " + name);
+      }
+    }
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("Illegal batch size: " + batchSize);
+    }
+    this.rewriter = rewriter;
+    this.table = table;
+    this.idColumn = idColumn;
+    this.passwordColumn = passwordColumn;
+    this.batchSize = batchSize;
+    this.pool = pool;
+  }
+
+  /**
+   * Rewrites the password column, resuming a previous run from the checkpoint.
+   * The checkpoint is deleted after the last batch has been committed.
+   * @param connection the connection, auto-commit is disabled during the run
+   * @param checkpoint the checkpoint file
+   * @return the counters of the run
+   * @throws SQLException if reading or writing the table fails, the current batch is rolled back
+   * @throws IOException if the checkpoint cannot be read or written
+   * @throws IllegalArgumentException if the checkpoint belongs to another job
+   */
+  public JdbcRehashResult rehash(Connection connection, Path checkpoint)
+      throws SQLException, IOException {
+    final long start = System.nanoTime();
+    final JdbcCheckpoint state = JdbcCheckpoint.open(checkpoint, fingerprint());
+    final Map<String, Long> counters = new TreeMap<>(state.getCounters());
+    final long resumed = counters.getOrDefault(ROWS, 0L);
+    final boolean autoCommit = connection.getAutoCommit();
+    connection.setAutoCommit(false);
+    try (PreparedStatement first = connection.prepareStatement(select(false));
+         PreparedStatement next = connection.prepareStatement(select(true));
+         PreparedStatement update = connection.prepareStatement(update())) {
+      first.setMaxRows(batchSize);
+      first.setFetchSize(batchSize);
+      next.setMaxRows(batchSize);
+      next.setFetchSize(batchSize);
+      Page page = state.getLastKey() == null ? fetch(first, null) : fetch(next, state.getLastKey());
+      while (!page.keys.isEmpty()) {
+        final Page current = page;
+        final ForkJoinTask<String[]> rewritten = pool.submit(() -> rewrite(current));
+        page = current.keys.size() < batchSize ? Page.EMPTY : fetch(next, current.lastKey());
+        final String[] values = join(rewritten);
+        final long updated = write(update, current, values);
+        connection.commit();
+        count(counters, current, values, updated);
+        state.save(current.lastKey(), counters);
+      }
+    } catch (SQLException | RuntimeException e) {
+      connection.rollback();
+      throw e;
+    } finally {
+      connection.setAutoCommit(autoCommit);
+    }
+    state.delete();
+    final Map<String, Long> schemes = new TreeMap<>();
+    counters.forEach((name, value) -> {
+      if (name.startsWith(SCHEME)) {
+        schemes.put(name.substring(SCHEME.length()), value);
+      }
+    });
+    return new JdbcRehashResult(counters.getOrDefault(ROWS, 0L), resumed,
+        counters.getOrDefault(REWRITTEN, 0L), counters.getOrDefault(UPDATED, 0L),
+        counters.getOrDefault(BATCHES, 0L), schemes, Duration.ofNanos(System.nanoTime() - start));
+  }
+
+  /* the encode id of the stored value without braces, unknown without encode id */
+  static String encodeId(String encodedPassword) {
+    final int end = encodedPassword == null || !encodedPassword.startsWith("{")
+        ? -1
+        : encodedPassword.indexOf('}');
+    return end < 0 ? UNKNOWN : encodedPassword.substring(1, end);
+  }
+
+  private String[] rewrite(Page page) {
+    final String[] ret = new String[page.keys.size()];
+    IntStream.range(0, ret.length).parallel()
+        .forEach(i -> ret[i] = page.values.get(i) == null ? null : rewriter.rewrite(page.values.get(i)));
+    return ret;
+  }
+
+  private static Page fetch(PreparedStatement select, Object lastKey) throws SQLException {
+    if (lastKey != null) {
+      select.setObject(1, lastKey);
+    }
+    final Page ret = new Page();
+    try (ResultSet rs = select.executeQuery()) {
+      while (rs.next()) {
+        ret.keys.add(rs.getObject(1));
+        ret.values.add(rs.getString(2));
+      }
+    }
+    return ret;
+  }
+
+  private static long write(PreparedStatement update, Page page, String[] values)
+      throws SQLException {
+    boolean pending = false;
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] != null) {
+        update.setString(1, values[i]);
+        update.setObject(2, page.keys.get(i));
+        update.setString(3, page.values.get(i));
+        update.addBatch();
+        pending = true;
+      }
+    }
+    long ret = 0;
+    if (pending) {
+      for (int count : update.executeBatch()) {
+        ret += count == PreparedStatement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+      }
+    }
+    return ret;
+  }
+
+  private static void count(Map<String, Long> counters, Page page, String[] values, long updated) {
+    long rewritten = 0;
+    for (int i = 0; i < values.length; i++) {
+      counters.merge(SCHEME + encodeId(page.values.get(i)), 1L, Long::sum);
+      rewritten += values[i] == null ? 0 : 1;
+    }
+    counters.merge(ROWS, (long) values.length, Long::sum);
+    counters.merge(REWRITTEN, rewritten, Long::sum);
+    counters.merge(UPDATED, updated, Long::sum);
+    counters.merge(BATCHES, 1L, Long::sum);
+  }
+
+  private static String[] join(ForkJoinTask<String[]> task) throws SQLException {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrupted, rerun to resume!", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause().getMessage(), e.getCause());
+    }
+  }
+
+  private String select(boolean after) {
+    return "SELECT " + idColumn + ", " + passwordColumn + " FROM " + table
+        + (after ? " WHERE " + idColumn + " > ?" : "")
+        + " ORDER BY " + idColumn;
+  }
+
+  private String update() {
+    return "UPDATE " + table + " SET " + passwordColumn + " = ?"
+        + " WHERE " + idColumn + " = ? AND " + passwordColumn + " = ?";
+  }
+
+  private String fingerprint() {
+    return String.join(",", table, idColumn, passwordColumn, rewriter.name());
+  }
+
+  /* a page of keys and stored values */
+  private static final class Page {
+    private static final Page EMPTY = new Page();
+
+    private final List<Object> keys = new ArrayList<>();
+    private final List<String> values = new ArrayList<>();
+
+    Object lastKey() {
+      return keys.get(keys.size() - 1);
+    }
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.migration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * Rewrites the password attribute values of an LDIF chunk.
+ * The chunk is scanned in place, logical lines are unfolded only for the password attribute,
+ * all other bytes are copied to the output channel verbatim in as few writes as possible.
+ * Plain ({@code attr: value}) and Base64 ({@code attr:: b64value}) values are supported,
+ * URL values ({@code attr:< url}) are kept. A rewritten value is written unfolded
+ * in its original notation and with its original line separator.
+ *
+ * @author sius
+ */
+final class LdifChunkRewriter {
+
+  private static final byte[] PLAIN = {':', ' '};
+  private static final byte[] BASE64 = {':', ':', ' '};
+
+  private final byte[] attribute;
+  private final PasswordRewriter rewriter;
+  private long values;
+  private long rewritten;
+
+  LdifChunkRewriter(String attribute, PasswordRewriter rewriter) {
+    this.attribute = attribute.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.US_ASCII);
+    this.rewriter = rewriter;
+  }
+
+  /**
+   * Rewrite the chunk between the position and the limit of the buffer.
+   * The chunk must start at the beginning of a line that is not a continuation line.
+   * @param in the chunk
+   * @param out the output channel
+   * @throws IOException if writing fails
+   */
+  void rewrite(ByteBuffer in, WritableByteChannel out) throws IOException {
+    final int limit = in.limit();
+    int copyFrom = in.position();
+    int start = -1;
+    int pos = in.position();
+    while (pos < limit) {
+      final int next = nextLine(in, pos, limit);
+      if (start >= 0 && in.get(pos) == ' ') {
+        pos = next;
+        continue;
+      }
+      if (start >= 0) {
+        copyFrom = line(in, start, pos, copyFrom, out);
+      }
+      start = isBlank(in, pos, next) ? -1 : pos;
+      pos = next;
+    }
+    if (start >= 0) {
+      copyFrom = line(in, start, limit, copyFrom, out);
+    }
+    write(in, copyFrom, limit, out);
+  }
+
+  long getValues() {
+    return values;
+  }
+
+  long getRewritten() {
+    return rewritten;
+  }
+
+  /* rewrites the logical line [start, end) if it holds a password value, returns the next copy position */
+  private int line(ByteBuffer in, int start, int end, int copyFrom, WritableByteChannel out)
+      throws IOException {
+    final int colon = colon(in, start, end);
+    if (colon < 0) {
+      return copyFrom;
+    }
+    values++;
+    int pos = colon + 1;
+    if (pos < end && in.get(pos) == '<') {
+      return copyFrom;
+    }
+    final boolean b64 = pos < end && in.get(pos) == ':';
+    if (b64) {
+      pos++;
+    }
+    while (pos < end && in.get(pos) == ' ') {
+      pos++;
+    }
+    final String value;
+    try {
+      final byte[] unfolded = unfold(in, pos, end);
+      value = new String(b64 ? Base64.getDecoder().decode(unfolded) : unfolded, StandardCharsets.UTF_8);
+    } catch (IllegalArgumentException e) {
+      return copyFrom;
+    }
+    final String ret = rewriter.rewrite(value);
+    if (ret == null) {
+      return copyFrom;
+    }
+    rewritten++;
+    write(in, copyFrom, colon, out);
+    final ByteArrayOutputStream line = new ByteArrayOutputStream(ret.length() + 8);
+    line.write(b64 ? BASE64 : PLAIN, 0, b64 ? BASE64.length : PLAIN.length);
+    final byte[] bytes = ret.getBytes(StandardCharsets.UTF_8);
+    final byte[] encoded = b64 ? Base64.getEncoder().encode(bytes) : bytes;
+    line.write(encoded, 0, encoded.length);
+    if (end > start && in.get(end - 1) == '\n') {
+      if (end - 1 > start && in.get(end - 2) == '\r') {
+        line.write('\r');
+      }
+      line.write('\n');
+    }
+    final ByteBuffer buf = ByteBuffer.wrap(line.toByteArray());
+    while (buf.hasRemaining()) {
+      out.write(buf);
+    }
+    return end;
+  }
+
+  /* the position of the colon after the password attribute description or -1 */
+  private int colon(ByteBuffer in, int start, int end) {
+    final int len = attribute.length;
+    if (end - start <= len) {
+      return -1;
+    }
+    for (int i = 0; i < len; i++) {
+      final byte b = in.get(start + i);
+      if ((b >= 'A' && b <= 'Z' ? b + 32 : b) != attribute[i]) {
+        return -1;
+      }
+    }
+    int pos = start + len;
+    if (in.get(pos) == ';') {
+      while (pos < end && in.get(pos) != ':' && in.get(pos) != '\n') {
+        pos++;
+      }
+    }
+    return pos < end && in.get(pos) == ':' ? pos : -1;
+  }
+
+  /* the value bytes without line separators and the leading space of continuation lines */
+  private static byte[] unfold(ByteBuffer in, int start, int end) {
+    final ByteArrayOutputStream ret = new ByteArrayOutputStream(end - start);
+    boolean lineStart = false;
+    for (int i = start; i < end; i++) {
+      final byte b = in.get(i);
+      if (b == '\n') {
+        lineStart = true;
+      } else if (b != '\r') {
+        if (!lineStart || b != ' ') {
+          ret.write(b);
+        }
+        lineStart = false;
+      }
+    }
+    return ret.toByteArray();
+  }
+
+  private static int nextLine(ByteBuffer in, int pos, int limit) {
+    for (int i = pos; i < limit; i++) {
+      if (in.get(i) == '\n') {
+        return i + 1;
+      }
+    }
+    return limit;
+  }
+
+  private static boolean isBlank(ByteBuffer in, int pos, int next) {
+    final byte b = in.get(pos);
+    return b == '\n' || (b == '\r' && next == pos + 2);
+  }
+
+  private static void write(ByteBuffer in, int from, int to, WritableByteChannel out)
+      throws IOException {
+    if (to <= from) {
+      return;
+    }
+    final ByteBuffer buf = in.duplicate();
+    buf.limit(to);
+    buf.position(from);
+    while (buf.hasRemaining()) {
+      out.write(buf);
+    }
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.migration;
+
+import java.time.Duration;
+
+/**
+ * The counters of a completed LDIF migration run.
+ *
+ * @author sius
+ */
+public final class LdifRehashResult {
+
+  private final int chunks;
+  private final int resumedChunks;
+  private final long bytes;
+  private final long values;
+  private final long rewritten;
+  private final Duration elapsed;
+
+  LdifRehashResult(
+      int chunks, int resumedChunks, long bytes, long values, long rewritten, Duration elapsed) {
+    this.chunks = chunks;
+    this.resumedChunks = resumedChunks;
+    this.bytes = bytes;
+    this.values = values;
+    this.rewritten = rewritten;
+    this.elapsed = elapsed;
+  }
+
+  /**
+   * The number of chunks of the input.
+   * @return the number of chunks
+   */
+  public int getChunks() {
+    return chunks;
+  }
+
+  /**
+   * The number of chunks completed by previous runs.
+   * @return the number of resumed chunks
+   */
+  public int getResumedChunks() {
+    return resumedChunks;
+  }
+
+  /**
+   * The size of the input in bytes.
+   * @return the input size
+   */
+  public long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * The number of password values, including the resumed chunks.
+   * @return the number of password values
+   */
+  public long getValues() {
+    return values;
+  }
+
+  /**
+   * The number of rewritten password values, including the resumed chunks.
+   * @return the number of rewritten password values
+   */
+  public long getRewritten() {
+    return rewritten;
+  }
+
+  /**
+   * The elapsed time of this run.
+   * @return the elapsed time
+   */
+  public Duration getElapsed() {
+    return elapsed;
+  }
+
+  @Override
+  public String toString() {
+    final double seconds = Math.max(elapsed.toNanos(), 1) / 1e9;
+    return String.format(
+        "chunks: %d (resumed: %d), bytes: %d, values: %d, rewritten: %d, elapsed: %.3fs, %.1f MB/s",
+        chunks, resumedChunks, bytes, values, rewritten, seconds, bytes / seconds / 1e6);
+  }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.migration;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Rewrites the password values of an LDIF file in parallel.
+ * The input is split at entry boundaries (blank lines) into chunks of at least {@code chunkSize} bytes,
+ * every chunk is memory-mapped and rewritten by a task of the fork/join pool into its own part file,
+ * the parts are finally concatenated in order into the output.
+ * Completed chunks are checkpointed in the work directory, a failed or killed run
+ * is resumed with the same arguments and only rewrites the remaining chunks.
+ *
+ * @author sius
+ */
+public final class LdifRehasher {
+
+  public static final String DEFAULT_ATTRIBUTE = "userPassword";
+  public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+  private final PasswordRewriter rewriter;
+  private final String attribute;
+  private final int chunkSize;
+  private final ForkJoinPool pool;
+
+  /**
+   * Creates the LDIF rehasher for the userPassword attribute with 1 MiB chunks on the common pool.
+   * @param rewriter the password rewriter
+   */
+  public LdifRehasher(PasswordRewriter rewriter) {
+    this(rewriter, DEFAULT_ATTRIBUTE, DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Creates the LDIF rehasher.
+   * @param rewriter the password rewriter
+   * @param attribute the case insensitive password attribute name
+   * @param chunkSize the minimum chunk size in bytes
+   * @param pool the fork/join pool
+   * @throws IllegalArgumentException if an argument is missing or the chunk size is not positive
+   */
+  public LdifRehasher(PasswordRewriter rewriter, String attribute, int chunkSize, ForkJoinPool pool) {
+    if (rewriter == null || attribute == null || attribute.isEmpty() || pool == null) {
+      throw new IllegalArgumentException("The rewriter, attribute and pool are required!");
+    }
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("Illegal chunk size: " + chunkSize);
+    }
+    this.rewriter = rewriter;
+    this.attribute = attribute;
+    this.chunkSize = chunkSize;
+    this.pool = pool;
+  }
+
+  /**
+   * Rewrites the input LDIF into the output LDIF, resuming a previous run in the work directory.
+   * The work directory is cleaned up after the output has been written.
+   * @param input the input LDIF
+   * @param output the output LDIF
+   * @param workDir the work directory of the checkpoint and the part files
+   * @return the counters of the run
+   * @throws IOException if reading, writing or checkpointing fails
+   * @throws IllegalArgumentException if the work directory belongs to another job
+   */
+  public LdifRehashResult rehash(Path input, Path output, Path workDir) throws IOException {
+    final long start = System.nanoTime();
+    try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+         Checkpoint checkpoint = Checkpoint.open(workDir, fingerprint(input))) {
+      final long[] bounds = boundaries(in, chunkSize);
+      final int chunks = bounds.length - 1;
+      final List<ForkJoinTask<long[]>> tasks = new ArrayList<>(chunks);
+      int resumed = 0;
+      for (int i = 0; i < chunks; i++) {
+        if (checkpoint.isDone(i)) {
+          resumed++;
+          continue;
+        }
+        final int chunk = i;
+        tasks.add(pool.submit(() -> rewrite(in, bounds[chunk], bounds[chunk + 1], chunk, checkpoint)));
+      }
+      join(tasks);
+
+      long values = 0;
+      long rewritten = 0;
+      try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+        for (int i = 0; i < chunks; i++) {
+          final long[] counters = checkpoint.counters(i);
+          values += counters[0];
+          rewritten += counters[1];
+          try (FileChannel part = FileChannel.open(checkpoint.part(i), StandardOpenOption.READ)) {
+            final long size = part.size();
+            long pos = 0;
+            while (pos < size) {
+              pos += part.transferTo(pos, size - pos, out);
+            }
+          }
+        }
+        out.force(true);
+      }
+      checkpoint.delete(chunks);
+      return new LdifRehashResult(chunks, resumed, bounds[chunks], values, rewritten,
+          Duration.ofNanos(System.nanoTime() - start));
+    }
+  }
+
+  private long[] rewrite(FileChannel in, long from, long to, int chunk, Checkpoint checkpoint) {
+    try {
+      final MappedByteBuffer buf = in.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+      final LdifChunkRewriter chunkRewriter = new LdifChunkRewriter(attribute, rewriter);
+      try (FileChannel out = FileChannel.open(checkpoint.tmp(chunk), StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+        chunkRewriter.rewrite(buf, out);
+        out.force(false);
+      }
+      checkpoint.commit(chunk, chunkRewriter.getValues(), chunkRewriter.getRewritten());
+      return new long[] {chunkRewriter.getValues(), chunkRewriter.getRewritten()};
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /* waits for all tasks, so that every completed chunk is checkpointed, and rethrows the first failure */
+  private static void join(List<ForkJoinTask<long[]>> tasks) throws IOException {
+    Throwable failure = null;
+    for (ForkJoinTask<long[]> task : tasks) {
+      try {
+        task.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted, rerun to resume!", e);
+      } catch (ExecutionException e) {
+        if (failure == null) {
+          failure = e.getCause();
+        }
+      }
+    }
+    if (failure instanceof UncheckedIOException) {
+      throw ((UncheckedIOException) failure).getCause();
+    }
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    }
+    if (failure != null) {
+      throw new IllegalStateException(failure.getMessage(), failure);
+    }
+  }
+
+  private String fingerprint(Path input) throws IOException {
+    return String.join("\n",
+        input.toAbsolutePath().normalize().toString(),
+        String.valueOf(Files.size(input)),
+        String.valueOf(Files.getLastModifiedTime(input).toMillis()),
+        String.valueOf(chunkSize),
+        attribute,
+        rewriter.name());
+  }
+
+  /**
+   * The chunk boundaries: the first blank line at or after each multiple of the chunk size.
+   * @param in the input
+   * @param chunkSize the minimum chunk size
+   * @return the ascending chunk offsets including 0 and the input size
+   * @throws IOException if reading fails
+   */
+  static long[] boundaries(FileChannel in, long chunkSize) throws IOException {
+    final long size = in.size();
+    final List<Long> offsets = new ArrayList<>();
+    offsets.add(0L);
+    final ByteBuffer buf = ByteBuffer.allocate(8192);
+    long pos = chunkSize;
+    while (pos < size) {
+      final long boundary = nextEntry(in, pos, size, buf);
+      if (boundary >= size) {
+        break;
+      }
+      offsets.add(boundary);
+      pos = boundary + chunkSize;
+    }
+    offsets.add(size);
+    final long[] ret = new long[offsets.size()];
+    for (int i = 0; i < ret.length; i++) {
+      ret[i] = offsets.get(i);
+    }
+    return ret;
+  }
+
+  /* the offset of the first blank line (\n or \r\n after \n) at or after from, or the size */
+  private static long nextEntry(FileChannel in, long from, long size, ByteBuffer buf)
+      throws IOException {
+    long pos = from - 1;
+    byte p2 = 0;
+    byte p1 = 0;
+    while (pos < size) {
+      buf.clear();
+      final int n = in.read(buf, pos);
+      if (n <= 0) {
+        break;
+      }
+      for (int i = 0; i < n; i++) {
+        final byte b = buf.get(i);
+        if (b == '\n' && p1 == '\n') {
+          return pos + i;
+        }
+        if (b == '\n' && p1 == '\r' && p2 == '\n') {
+          return pos + i - 1;
+        }
+        p2 = p1;
+        p1 = b;
+      }
+      pos += n;
+    }
+    return size;
+  }
+}
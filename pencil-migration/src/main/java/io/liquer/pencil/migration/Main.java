@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.migration;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The command line runner of the LDIF and the JDBC migration:
+ * <pre>
+ * java -jar pencil-migration.jar --in=users.ldif --out=migrated.ldif [--work=users.ldif.work]
+ *   [--attribute=userPassword] [--chunk-size=1048576] [--threads=cores]
+ *   [--rewriter=onion|&lt;PasswordRewriter class&gt;] [--cost=10]
+ *
+ * java -cp pencil-migration.jar:&lt;jdbc driver&gt;.jar io.liquer.pencil.migration.Main
+ *   --jdbc-url=jdbc:... --table=users [--user=&lt;user&gt;] [--id-column=id] [--password-column=password]
+ *   [--batch-size=500] [--checkpoint=users.checkpoint] [--threads=cores]
+ *   [--rewriter=onion|&lt;PasswordRewriter class&gt;] [--cost=10]
+ * </pre>
+ * The JDBC password is read from the environment variable {@code PENCIL_JDBC_PASSWORD}.
+ * A failed or killed run is resumed by running it again with the same arguments.
+ * Exit codes: 0 success, 1 migration failure, 2 invalid arguments.
+ *
+ * @author sius
+ */
+public final class Main {
+
+  static final String JDBC_PASSWORD = "PENCIL_JDBC_PASSWORD";
+
+  private static final Set<String> OPTIONS = new HashSet<>(Arrays.asList(
+      "in", "out", "work", "attribute", "chunk-size", "threads", "rewriter", "cost",
+      "jdbc-url", "user", "table", "id-column", "password-column", "batch-size", "checkpoint"));
+
+  private Main() {
+  }
+
+  public static void main(String[] args) {
+    System.exit(run(args, System.out, System.err));
+  }
+
+  static int run(String[] args, PrintStream out, PrintStream err) {
+    return run(args, System.getenv(JDBC_PASSWORD), out, err);
+  }
+
+  static int run(String[] args, String jdbcPassword, PrintStream out, PrintStream err) {
+    final Job job;
+    ForkJoinPool pool = null;
+    try {
+      final Map<String, String> options = options(args);
+      final PasswordRewriter rewriter = rewriter(
+          options.getOrDefault("rewriter", OnionRewriter.NAME),
+          Integer.parseInt(options.getOrDefault("cost", String.valueOf(OnionRewriter.DEFAULT_COST))));
+      pool = new ForkJoinPool(Integer.parseInt(options.getOrDefault("threads",
+          String.valueOf(Runtime.getRuntime().availableProcessors()))));
+      job = options.containsKey("jdbc-url")
+          ? jdbc(options, jdbcPassword, rewriter, pool)
+          : ldif(options, rewriter, pool);
+    } catch (IllegalArgumentException e) {
+      if (pool != null) {
+        pool.shutdown();
+      }
+      err.println(e.getMessage());
+      err.println("Usage: --in=<ldif> --out=<ldif> [--work=<dir>] [--attribute=userPassword]"
+          + " [--chunk-size=<bytes>] [--threads=<n>] [--rewriter=onion|<class>] [--cost=<bcrypt cost>]");
+      err.println("   or: --jdbc-url=<url> --table=<table> [--user=<user>] [--id-column=id]"
+          + " [--password-column=password] [--batch-size=<rows>] [--checkpoint=<file>] [--threads=<n>]"
+          + " [--rewriter=onion|<class>] [--cost=<bcrypt cost>], password from " + JDBC_PASSWORD);
+      return 2;
+    }
+    try {
+      out.println(job.run());
+      return 0;
+    } catch (IOException | SQLException | RuntimeException e) {
+      err.println("Migration failed, rerun with the same arguments to resume: " + e);
+      return 1;
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private static Job ldif(Map<String, String> options, PasswordRewriter rewriter, ForkJoinPool pool) {
+    if (!options.containsKey("in") || !options.containsKey("out")) {
+      throw new IllegalArgumentException("The options --in and --out are required!");
+    }
+    final Path input = Paths.get(options.get("in"));
+    final Path output = Paths.get(options.get("out"));
+    final Path workDir = Paths.get(options.getOrDefault("work", options.get("in") + ".work"));
+    final LdifRehasher rehasher = new LdifRehasher(rewriter,
+        options.getOrDefault("attribute", LdifRehasher.DEFAULT_ATTRIBUTE),
+        Integer.parseInt(options.getOrDefault("chunk-size", String.valueOf(LdifRehasher.DEFAULT_CHUNK_SIZE))),
+        pool);
+    return () -> rehasher.rehash(input, output, workDir);
+  }
+
+  private static Job jdbc(
+      Map<String, String> options, String password, PasswordRewriter rewriter, ForkJoinPool pool) {
+    if (!options.containsKey("table")) {
+      throw new IllegalArgumentException("The option --table is required with --jdbc-url!");
+    }
+    final String table = options.get("table");
+    final JdbcRehasher rehasher = new JdbcRehasher(rewriter, table,
+        options.getOrDefault("id-column", JdbcRehasher.DEFAULT_ID_COLUMN),
+        options.getOrDefault("password-column", JdbcRehasher.DEFAULT_PASSWORD_COLUMN),
+        Integer.parseInt(options.getOrDefault("batch-size", String.valueOf(JdbcRehasher.DEFAULT_BATCH_SIZE))),
+        pool);
+    final Path checkpoint = Paths.get(options.getOrDefault("checkpoint", table + ".checkpoint"));
+    final Properties info = new Properties();
+    if (options.containsKey("user")) {
+      info.setProperty("user", options.get("user"));
+    }
+    if (password != null) {
+      info.setProperty("password", password);
+    }
+    return () -> {
+      try (Connection connection = DriverManager.getConnection(options.get("jdbc-url"), info)) {
+        return rehasher.rehash(connection, checkpoint);
+      }
+    };
+  }
+
+  /* the onion rewriter or a PasswordRewriter class with a public no-arg constructor */
+  private static PasswordRewriter rewriter(String name, int cost) {
+    if (OnionRewriter.NAME.equals(name)) {
+      return new OnionRewriter(cost);
+    }
+    try {
+      return Class.forName(name).asSubclass(PasswordRewriter.class)
+          .getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException | ClassCastException e) {
+      throw new IllegalArgumentException("Invalid rewriter: " + name, e);
+    }
+  }
+
+  private static Map<String, String> options(String[] args) {
+    final Map<String, String> ret = new HashMap<>();
+    for (String arg : args) {
+      final int eq = arg.indexOf('=');
+      final String key = arg.startsWith("--") && eq > 2 ? arg.substring(2, eq) : null;
+      if (key == null || !OPTIONS.contains(key)) {
+        throw new IllegalArgumentException(
+            "Invalid option: " + arg + ", supported: --<option>=<value> with option in " + OPTIONS);
+      }
+      ret.put(key, arg.substring(eq + 1));
+    }
+    return ret;
+  }
+
+  /* a configured migration run */
+  private interface Job {
+    Object run() throws IOException, SQLException;
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.migration;
+
+import io.liquer.pencil.encoder.OnionBatchConverter;
+import io.liquer.pencil.encoder.OnionPasswordEncoder;
+
+/**
+ * Wraps legacy salted SHA hashes into bcrypt (onion hashing), so that the stored
+ * hashes are upgraded without the plaintext passwords:
+ * <pre>
+ *   {bcrypt+SSHA512}b64(salt)bcrypt(b64(sha256(sha512(rawPassword, salt))))
+ * </pre>
+ * The onion hashes are verified by the {@link OnionPasswordEncoder}.
+ * Unsalted, unknown or malformed values are kept.
+ *
+ * @author sius
+ */
+public final class OnionRewriter implements PasswordRewriter {
+
+  public static final String NAME = "onion";
+
+  public static final int DEFAULT_COST = OnionPasswordEncoder.DEFAULT_STRENGTH;
+
+  private final int cost;
+  private final OnionBatchConverter converter;
+
+  /**
+   * Creates the onion rewriter with the default bcrypt cost of 10.
+   */
+  public OnionRewriter() {
+    this(DEFAULT_COST);
+  }
+
+  /**
+   * Creates the onion rewriter.
+   * @param cost the bcrypt cost (log rounds) between 4 and 31
+   * @throws IllegalArgumentException if the cost is out of range
+   */
+  public OnionRewriter(int cost) {
+    this.cost = cost;
+    this.converter = new OnionBatchConverter(cost);
+  }
+
+  @Override
+  public String name() {
+    return NAME + "-" + cost;
+  }
+
+  @Override
+  public String rewrite(String encodedPassword) {
+    return converter.convert(encodedPassword);
+  }
+}
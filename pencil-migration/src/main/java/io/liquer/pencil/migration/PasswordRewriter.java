@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.migration;
+
+/**
+ * Rewrites a single encoded password value of a bulk migration
+ * without access to the plaintext password.
+ * Implementations must be thread safe, values are rewritten concurrently.
+ *
+ * @author sius
+ */
+public interface PasswordRewriter {
+
+  /**
+   * The name of the rewriter, part of the checkpoint fingerprint,
+   * so that a job is never resumed with a different rewriter.
+   * @return the rewriter name
+   */
+  String name();
+
+  /**
+   * Rewrite the encoded password.
+   * @param encodedPassword the stored encoded password, e.g.: {SSHA512}b64(hash, salt)
+   * @return the rewritten encoded password or null to keep the stored value
+   */
+  String rewrite(String encodedPassword);
+}
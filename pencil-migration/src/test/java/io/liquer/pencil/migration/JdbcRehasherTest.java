@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.migration;
+
+import io.liquer.pencil.encoder.SSHA256PasswordEncoder;
+import io.liquer.pencil.encoder.SSHA512PasswordEncoder;
+import io.liquer.pencil.encoder.SSHAPasswordEncoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author sius
+ */
+public class JdbcRehasherTest {
+
+  static final String URL = "jdbc:h2:mem:pencil;DB_CLOSE_DELAY=-1";
+  private static final int ROWS = 95;
+  private static final int BATCH_SIZE = 10;
+  private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+  private final OnionRewriter onion = new OnionRewriter(4);
+
+  @TempDir
+  Path dir;
+
+  private Connection connection;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    connection = DriverManager.getConnection(URL);
+    users(connection, ROWS);
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    try (Statement stmt = connection.createStatement()) {
+      stmt.execute("DROP TABLE users");
+    }
+    connection.close();
+  }
+
+  @AfterAll
+  static void shutdown() {
+    POOL.shutdown();
+  }
+
+  @Test
+  void legacy_hashes_should_be_wrapped() throws Exception {
+    final Path checkpoint = dir.resolve("users.checkpoint");
+    final JdbcRehashResult result =
+        new JdbcRehasher(onion, "users", "id", "password", BATCH_SIZE, POOL).rehash(connection, checkpoint);
+
+    assertThat(result.getRows()).isEqualTo(ROWS);
+    assertThat(result.getResumedRows()).isZero();
+    assertThat(result.getBatches()).isEqualTo(10);
+    assertThat(result.getRewritten()).isEqualTo(76);
+    assertThat(result.getUpdated()).isEqualTo(76);
+    assertThat(result.getSchemes())
+        .containsEntry("SSHA", 25L).containsEntry("SSHA512", 26L).containsEntry("SSHA-256", 25L)
+        .containsEntry("bcrypt", 9L).containsEntry("unknown", 10L);
+    assertThat(result.getRowsPerSecond()).isPositive();
+    assertThat(result.toString()).contains("rows/s");
+    assertMigrated(connection);
+    assertThat(connection.getAutoCommit()).isTrue();
+    assertThat(Files.exists(checkpoint)).isFalse();
+  }
+
+  @Test
+  void failed_run_should_be_resumed() throws Exception {
+    final Path checkpoint = dir.resolve("users.checkpoint");
+    final String crash = stored(connection, 57);
+    final PasswordRewriter failing = new PasswordRewriter() {
+      @Override
+      public String name() {
+        return onion.name();
+      }
+
+      @Override
+      public String rewrite(String encodedPassword) {
+        if (encodedPassword.equals(crash)) {
+          throw new IllegalStateException("crash");
+        }
+        return onion.rewrite(encodedPassword);
+      }
+    };
+
+    assertThatThrownBy(() -> new JdbcRehasher(failing, "users", "id", "password", BATCH_SIZE, POOL)
+        .rehash(connection, checkpoint))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("crash");
+    assertThat(new String(Files.readAllBytes(checkpoint))).contains("lastKey=50", "rows=50");
+    assertThat(stored(connection, 51)).startsWith("{SSHA");
+    assertThatThrownBy(() -> new JdbcRehasher(new OnionRewriter(5), "users")
+        .rehash(connection, checkpoint))
+        .isInstanceOf(IllegalArgumentException.class);
+
+    final JdbcRehashResult result =
+        new JdbcRehasher(onion, "users", "id", "password", 25, POOL).rehash(connection, checkpoint);
+
+    assertThat(result.getRows()).isEqualTo(ROWS);
+    assertThat(result.getResumedRows()).isEqualTo(50);
+    assertThat(result.getRewritten()).isEqualTo(76);
+    assertThat(result.getSchemes().get("SSHA")).isEqualTo(25L);
+    assertMigrated(connection);
+    assertThat(Files.exists(checkpoint)).isFalse();
+  }
+
+  @Test
+  void concurrently_changed_passwords_should_not_be_overwritten() throws Exception {
+    final String changed = new SSHA512PasswordEncoder().encode("changed");
+    final String original = stored(connection, 1);
+    final PasswordRewriter concurrent = new PasswordRewriter() {
+      @Override
+      public String name() {
+        return onion.name();
+      }
+
+      @Override
+      public String rewrite(String encodedPassword) {
+        if (encodedPassword.equals(original)) {
+          try (Connection other = DriverManager.getConnection(URL);
+               PreparedStatement update = other.prepareStatement("UPDATE users SET password = ? WHERE id = 1")) {
+            update.setString(1, changed);
+            update.executeUpdate();
+          } catch (SQLException e) {
+            throw new IllegalStateException(e);
+          }
+        }
+        return onion.rewrite(encodedPassword);
+      }
+    };
+    final JdbcRehashResult result = new JdbcRehasher(concurrent, "users", "id", "password", BATCH_SIZE, POOL)
+        .rehash(connection, dir.resolve("users.checkpoint"));
+
+    assertThat(result.getRewritten()).isEqualTo(76);
+    assertThat(result.getUpdated()).isEqualTo(75);
+    assertThat(stored(connection, 1)).isEqualTo(changed);
+  }
+
+  @Test
+  void stored_values_should_be_classified_by_encode_id() {
+    assertThat(JdbcRehasher.encodeId("{SSHA-512}abc")).isEqualTo("SSHA-512");
+    assertThat(JdbcRehasher.encodeId("$2a$10$abc")).isEqualTo("unknown");
+    assertThat(JdbcRehasher.encodeId("{SSHA")).isEqualTo("unknown");
+    assertThat(JdbcRehasher.encodeId(null)).isEqualTo("unknown");
+  }
+
+  @Test
+  void illegal_arguments_should_throw() {
+    assertThatThrownBy(() -> new JdbcRehasher(null, "users"))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new JdbcRehasher(onion, "users; DROP TABLE users"))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new JdbcRehasher(onion, "users", "id", "pass word", 10, POOL))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new JdbcRehasher(onion, "users", "id", "password", 0, POOL))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  /*
+   * rows with the password "password-<id>", ids 1..rows:
+   * every 10th row bcrypt, every 10th row + 5 plain or null,
+   * the others SSHA, SSHA512 and SSHA-256
+   */
+  static void users(Connection connection, int rows) throws SQLException {
+    final PasswordEncoder[] encoders = {
+        new SSHAPasswordEncoder(), new SSHA512PasswordEncoder(), new SSHA256PasswordEncoder("{SSHA-256}", 8)
+    };
+    try (Statement stmt = connection.createStatement()) {
+      stmt.execute("CREATE TABLE users (id BIGINT PRIMARY KEY, password VARCHAR(255))");
+    }
+    try (PreparedStatement insert = connection.prepareStatement("INSERT INTO users VALUES (?, ?)")) {
+      for (int id = 1; id <= rows; id++) {
+        insert.setLong(1, id);
+        insert.setString(2, id % 10 == 0
+            ? "{bcrypt}$2a$04$" + id
+            : id % 10 == 5 ? (id % 20 == 5 ? null : "plain-" + id) : encoders[id % 3].encode("password-" + id));
+        insert.addBatch();
+      }
+      insert.executeBatch();
+    }
+  }
+
+  static String stored(Connection connection, long id) {
+    try (PreparedStatement select = connection.prepareStatement("SELECT password FROM users WHERE id = ?")) {
+      select.setLong(1, id);
+      try (ResultSet rs = select.executeQuery()) {
+        return rs.next() ? rs.getString(1) : null;
+      }
+    } catch (SQLException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void assertMigrated(Connection connection) throws SQLException {
+    final Map<Long, String> rows = new LinkedHashMap<>();
+    try (Statement stmt = connection.createStatement();
+         ResultSet rs = stmt.executeQuery("SELECT id, password FROM users ORDER BY id")) {
+      while (rs.next()) {
+        rows.put(rs.getLong(1), rs.getString(2));
+      }
+    }
+    assertThat(rows).hasSize(ROWS);
+    rows.forEach((id, password) -> {
+      if (id % 10 == 0) {
+        assertThat(password).isEqualTo("{bcrypt}$2a$04$" + id);
+      } else if (id % 10 == 5) {
+        assertThat(password).isEqualTo(id % 20 == 5 ? null : "plain-" + id);
+      } else {
+        assertThat(OnionRewriterTest.matches("password-" + id, password)).isTrue();
+      }
+    });
+  }
+}
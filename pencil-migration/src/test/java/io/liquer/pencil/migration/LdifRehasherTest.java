@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.migration;
+
+import io.liquer.pencil.encoder.SSHA256PasswordEncoder;
+import io.liquer.pencil.encoder.SSHA512PasswordEncoder;
+import io.liquer.pencil.encoder.SSHAPasswordEncoder;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author sius
+ */
+public class LdifRehasherTest {
+
+  private static final int ENTRIES = 40;
+  private static final int CHUNK_SIZE = 512;
+  private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+  private final OnionRewriter onion = new OnionRewriter(4);
+
+  @TempDir
+  Path dir;
+
+  @AfterAll
+  static void shutdown() {
+    POOL.shutdown();
+  }
+
+  @Test
+  void legacy_hashes_should_be_wrapped() throws Exception {
+    final Path input = ldif(dir.resolve("users.ldif"));
+    final Path output = dir.resolve("migrated.ldif");
+    final Path work = dir.resolve("work");
+
+    final LdifRehashResult result =
+        new LdifRehasher(onion, "userpassword", CHUNK_SIZE, POOL).rehash(input, output, work);
+
+    assertThat(result.getChunks()).isGreaterThan(4);
+    assertThat(result.getResumedChunks()).isZero();
+    assertThat(result.getBytes()).isEqualTo(Files.size(input));
+    assertThat(result.getValues()).isEqualTo(ENTRIES + 1);
+    assertThat(result.getRewritten()).isEqualTo(ENTRIES - ENTRIES / 10);
+    assertThat(result.toString()).contains("rewritten: " + result.getRewritten());
+    assertMigrated(input, output);
+    assertThat(Files.exists(work)).isFalse();
+  }
+
+  @Test
+  void failed_run_should_be_resumed() throws Exception {
+    final Path input = ldif(dir.resolve("users.ldif"));
+    final Path output = dir.resolve("migrated.ldif");
+    final Path work = dir.resolve("work");
+    final PasswordRewriter failing = new PasswordRewriter() {
+      @Override
+      public String name() {
+        return onion.name();
+      }
+
+      @Override
+      public String rewrite(String encodedPassword) {
+        if (encodedPassword.startsWith("{SSHA-256}")) {
+          throw new IllegalStateException("crash");
+        }
+        return onion.rewrite(encodedPassword);
+      }
+    };
+
+    assertThatThrownBy(() -> new LdifRehasher(failing, "userPassword", CHUNK_SIZE, POOL)
+        .rehash(input, output, work))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("crash");
+    assertThat(Files.readAllLines(work.resolve(Checkpoint.DONE))).isNotEmpty();
+    assertThatThrownBy(() -> new LdifRehasher(onion, "userPassword", CHUNK_SIZE * 2, POOL)
+        .rehash(input, output, work))
+        .isInstanceOf(IllegalArgumentException.class);
+
+    final LdifRehashResult result =
+        new LdifRehasher(onion, "userPassword", CHUNK_SIZE, POOL).rehash(input, output, work);
+
+    assertThat(result.getResumedChunks()).isGreaterThan(0).isLessThan(result.getChunks());
+    assertThat(result.getValues()).isEqualTo(ENTRIES + 1);
+    assertThat(result.getRewritten()).isEqualTo(ENTRIES - ENTRIES / 10);
+    assertMigrated(input, output);
+    assertThat(Files.exists(work)).isFalse();
+  }
+
+  @Test
+  void torn_journal_line_should_be_dropped() throws Exception {
+    final Path work = dir.resolve("work");
+    try (Checkpoint checkpoint = Checkpoint.open(work, "job")) {
+      Files.write(checkpoint.tmp(0), new byte[] {'\n'});
+      checkpoint.commit(0, 1, 1);
+    }
+    Files.write(work.resolve(Checkpoint.DONE), "1 2".getBytes(StandardCharsets.US_ASCII),
+        StandardOpenOption.APPEND);
+    try (Checkpoint checkpoint = Checkpoint.open(work, "job")) {
+      assertThat(checkpoint.isDone(0)).isTrue();
+      assertThat(checkpoint.counters(0)).containsExactly(1, 1);
+      assertThat(checkpoint.isDone(1)).isFalse();
+    }
+    assertThat(Files.readAllLines(work.resolve(Checkpoint.DONE))).containsExactly("0 1 1");
+  }
+
+  @Test
+  void chunks_should_start_at_blank_lines() throws Exception {
+    final Path input = ldif(dir.resolve("users.ldif"));
+    final byte[] bytes = Files.readAllBytes(input);
+    try (FileChannel in = FileChannel.open(input)) {
+      final long[] bounds = LdifRehasher.boundaries(in, 100);
+      assertThat(bounds[0]).isZero();
+      assertThat(bounds[bounds.length - 1]).isEqualTo(bytes.length);
+      for (int i = 1; i < bounds.length - 1; i++) {
+        final int pos = (int) bounds[i];
+        assertThat(bounds[i]).isGreaterThanOrEqualTo(bounds[i - 1] + 100);
+        assertThat(bytes[pos - 1]).isEqualTo((byte) '\n');
+        assertThat(bytes[pos] == '\n' || (bytes[pos] == '\r' && bytes[pos + 1] == '\n')).isTrue();
+      }
+    }
+  }
+
+  @Test
+  void illegal_arguments_should_throw() {
+    assertThatThrownBy(() -> new LdifRehasher(null))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new LdifRehasher(onion, "", CHUNK_SIZE, POOL))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new LdifRehasher(onion, "userPassword", 0, POOL))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  /*
+   * ENTRIES entries with the password "password-<i>":
+   * plain, Base64 and folded values, CRLF entries, attribute options,
+   * every 10th entry is already bcrypt encoded and one entry has a URL value
+   */
+  private static Path ldif(Path path) throws IOException {
+    final PasswordEncoder[] encoders = {
+        new SSHAPasswordEncoder(), new SSHA512PasswordEncoder(), new SSHA256PasswordEncoder("{SSHA-256}", 8)
+    };
+    final StringBuilder ldif = new StringBuilder("version: 1\n\n");
+    for (int i = 0; i < ENTRIES; i++) {
+      final String nl = i % 7 == 3 ? "\r\n" : "\n";
+      final String raw = "password-" + i;
+      final String encoded = i % 10 == 9
+          ? "{bcrypt}$2a$04$" + i
+          : encoders[i == 25 ? 2 : i % 2].encode(raw);
+      ldif.append("# entry ").append(i).append(nl)
+          .append("dn: uid=user").append(i).append(",ou=people,dc=example,dc=org").append(nl)
+          .append("objectClass: inetOrgPerson").append(nl)
+          .append("cn: User ").append(i).append(nl);
+      if (i % 3 == 0) {
+        ldif.append("userPassword:: ").append(fold(base64(encoded), nl)).append(nl);
+      } else if (i % 3 == 1) {
+        ldif.append("UserPassword: ").append(fold(encoded, nl)).append(nl);
+      } else {
+        ldif.append("userPassword;binary: ").append(encoded).append(nl);
+      }
+      ldif.append("mail: user").append(i).append("@example.org").append(nl)
+          .append(nl);
+    }
+    ldif.append("dn: uid=url,ou=people,dc=example,dc=org\n")
+        .append("userPassword:< file:///tmp/password\n");
+    return Files.write(path, ldif.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String fold(String value, String nl) {
+    final StringBuilder ret = new StringBuilder();
+    for (int i = 0; i < value.length(); i += 30) {
+      if (i > 0) {
+        ret.append(nl).append(' ');
+      }
+      ret.append(value, i, Math.min(value.length(), i + 30));
+    }
+    return ret.toString();
+  }
+
+  private static String base64(String value) {
+    return Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /* the non password lines are kept, the legacy passwords are wrapped, the others are kept */
+  private static void assertMigrated(Path input, Path output) throws Exception {
+    final List<String> in = logicalLines(input);
+    final List<String> out = logicalLines(output);
+    assertThat(out).hasSameSizeAs(in);
+    int entry = 0;
+    for (int i = 0; i < in.size(); i++) {
+      final String line = in.get(i);
+      if (!line.toLowerCase().startsWith("userpassword")) {
+        assertThat(out.get(i)).isEqualTo(line);
+        continue;
+      }
+      final int colon = line.indexOf(':');
+      assertThat(out.get(i)).startsWith(line.substring(0, colon + 1));
+      assertThat(out.get(i).endsWith("\r")).isEqualTo(line.endsWith("\r"));
+      if (line.startsWith(":<", colon)) {
+        assertThat(out.get(i)).isEqualTo(line);
+        continue;
+      }
+      final String value = value(out.get(i));
+      if (entry % 10 == 9) {
+        assertThat(value).isEqualTo(value(line));
+      } else {
+        assertThat(OnionRewriterTest.matches("password-" + entry, value)).isTrue();
+      }
+      entry++;
+    }
+    assertThat(entry).isEqualTo(ENTRIES);
+  }
+
+  private static String value(String line) {
+    final int colon = line.indexOf(':');
+    return line.startsWith("::", colon)
+        ? new String(Base64.getDecoder().decode(line.substring(colon + 2).trim()), StandardCharsets.UTF_8)
+        : line.substring(colon + 1).trim();
+  }
+
+  /* the unfolded lines with the trailing \r of CRLF lines */
+  private static List<String> logicalLines(Path path) throws IOException {
+    final List<String> ret = new ArrayList<>();
+    for (String line : new String(Files.readAllBytes(path), StandardCharsets.UTF_8).split("\n", -1)) {
+      if (line.startsWith(" ") && !ret.isEmpty()) {
+        final String last = ret.get(ret.size() - 1);
+        ret.set(ret.size() - 1, last.substring(0, last.length() - (last.endsWith("\r") ? 1 : 0))
+            + line.substring(1));
+      } else {
+        ret.add(line);
+      }
+    }
+    return ret;
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.migration;
+
+import io.liquer.pencil.encoder.SSHA512PasswordEncoder;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author sius
+ */
+public class MainTest {
+
+  private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+  private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+  @TempDir
+  Path dir;
+
+  private Path input;
+  private Path output;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    input = Files.write(dir.resolve("users.ldif"), ("dn: uid=user,dc=example,dc=org\n"
+        + "userPassword: " + new SSHA512PasswordEncoder().encode("password") + "\n")
+        .getBytes(StandardCharsets.UTF_8));
+    output = dir.resolve("migrated.ldif");
+  }
+
+  @Test
+  void onion_migration_should_succeed() throws Exception {
+    assertThat(run("--in=" + input, "--out=" + output, "--cost=4", "--threads=2")).isZero();
+    assertThat(out.toString()).contains("rewritten: 1");
+    assertThat(new String(Files.readAllBytes(output), StandardCharsets.UTF_8))
+        .contains("userPassword: {bcrypt+SSHA512}");
+    assertThat(Files.exists(dir.resolve("users.ldif.work"))).isFalse();
+  }
+
+  @Test
+  void custom_rewriter_should_be_instantiated() throws Exception {
+    assertThat(run("--in=" + input, "--out=" + output, "--work=" + dir.resolve("work"),
+        "--rewriter=" + KeepRewriter.class.getName(), "--attribute=userPassword", "--chunk-size=64"))
+        .isZero();
+    assertThat(Files.readAllBytes(output)).isEqualTo(Files.readAllBytes(input));
+  }
+
+  @Test
+  void invalid_arguments_should_exit_with_2() {
+    assertThat(run("--in=" + input)).isEqualTo(2);
+    assertThat(run("--in=" + input, "--out=" + output, "--unknown=1")).isEqualTo(2);
+    assertThat(run("--in=" + input, "--out=" + output, "--threads=x")).isEqualTo(2);
+    assertThat(run("--in=" + input, "--out=" + output, "--rewriter=java.lang.String")).isEqualTo(2);
+    assertThat(err.toString()).contains("Usage:");
+  }
+
+  @Test
+  void failed_migration_should_exit_with_1() {
+    assertThat(run("--in=" + dir.resolve("missing.ldif"), "--out=" + output)).isEqualTo(1);
+    assertThat(err.toString()).contains("rerun with the same arguments");
+  }
+
+  @Test
+  void jdbc_migration_should_succeed() throws Exception {
+    try (Connection connection = DriverManager.getConnection(JdbcRehasherTest.URL)) {
+      JdbcRehasherTest.users(connection, 20);
+      try {
+        assertThat(Main.run(new String[] {"--jdbc-url=" + JdbcRehasherTest.URL, "--table=users", "--user=",
+            "--batch-size=7", "--cost=4", "--checkpoint=" + dir.resolve("users.checkpoint")},
+            "", new PrintStream(out, true), new PrintStream(err, true))).isZero();
+        assertThat(out.toString()).contains("rows: 20", "rewritten: 16", "rows/s");
+        assertThat(JdbcRehasherTest.stored(connection, 1)).startsWith("{bcrypt+SSHA512}");
+        assertThat(run("--jdbc-url=" + JdbcRehasherTest.URL)).isEqualTo(2);
+        assertThat(run("--jdbc-url=jdbc:unknown:db", "--table=users", "--user=",
+            "--checkpoint=" + dir.resolve("unknown.checkpoint"))).isEqualTo(1);
+      } finally {
+        try (Statement stmt = connection.createStatement()) {
+          stmt.execute("DROP TABLE users");
+        }
+      }
+    }
+  }
+
+  private int run(String... args) {
+    return Main.run(args, new PrintStream(out, true), new PrintStream(err, true));
+  }
+
+  public static final class KeepRewriter implements PasswordRewriter {
+
+    @Override
+    public String name() {
+      return "keep";
+    }
+
+    @Override
+    public String rewrite(String encodedPassword) {
+      return null;
+    }
+  }
+}
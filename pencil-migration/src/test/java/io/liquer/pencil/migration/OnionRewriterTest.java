@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.migration;
+
+import io.liquer.pencil.encoder.OnionPasswordEncoder;
+import io.liquer.pencil.encoder.SSHA224PasswordEncoder;
+import io.liquer.pencil.encoder.SSHA256PasswordEncoder;
+import io.liquer.pencil.encoder.SSHA384PasswordEncoder;
+import io.liquer.pencil.encoder.SSHA512PasswordEncoder;
+import io.liquer.pencil.encoder.SSHAPasswordEncoder;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author sius
+ */
+public class OnionRewriterTest {
+
+  private static final String RAW_PASSWORD = "Xx3vuFMXVGSQS413";
+
+  private final OnionRewriter rewriter = new OnionRewriter(4);
+
+  @Test
+  void salted_sha_hashes_should_be_wrapped() {
+    final PasswordEncoder[] encoders = {
+        new SSHAPasswordEncoder(),
+        new SSHA224PasswordEncoder(),
+        new SSHA256PasswordEncoder(),
+        new SSHA384PasswordEncoder(),
+        new SSHA512PasswordEncoder()
+    };
+    final String[] ids = {"SSHA", "SSHA224", "SSHA256", "SSHA384", "SSHA512"};
+    for (int i = 0; i < encoders.length; i++) {
+      final String onion = rewriter.rewrite(encoders[i].encode(RAW_PASSWORD));
+      assertThat(onion).startsWith("{" + "bcrypt+" + ids[i] + "}");
+      assertThat(matches(RAW_PASSWORD, onion)).isTrue();
+      assertThat(matches("wrong", onion)).isFalse();
+    }
+  }
+
+  @Test
+  void long_identifiers_should_be_normalized() {
+    final String onion = rewriter.rewrite(
+        new SSHA256PasswordEncoder("{SSHA-256}", 8).encode(RAW_PASSWORD));
+    assertThat(onion).startsWith("{bcrypt+SSHA256}");
+    assertThat(matches(RAW_PASSWORD, onion)).isTrue();
+  }
+
+  @Test
+  void other_values_should_be_kept() {
+    assertThat(rewriter.rewrite(null)).isNull();
+    assertThat(rewriter.rewrite("secret")).isNull();
+    assertThat(rewriter.rewrite("{bcrypt}$2a$04$abcdefghijklmnopqrstuu")).isNull();
+    assertThat(rewriter.rewrite(rewriter.rewrite(new SSHA512PasswordEncoder().encode(RAW_PASSWORD))))
+        .isNull();
+    assertThat(rewriter.rewrite(new SSHAPasswordEncoder("{SSHA}", 0).encode(RAW_PASSWORD))).isNull();
+    assertThat(rewriter.rewrite("{SSHA512}dG9vIHNob3J0")).isNull();
+    assertThat(rewriter.rewrite("{SSHA512}!!!")).isNull();
+  }
+
+  @Test
+  void illegal_cost_should_throw() {
+    assertThatThrownBy(() -> new OnionRewriter(3)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new OnionRewriter(32)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new OnionRewriter(-1)).isInstanceOf(IllegalArgumentException.class);
+    assertThat(new OnionRewriter().name()).isEqualTo("onion-10");
+  }
+
+  /* verifies an onion hash the way a login would */
+  static boolean matches(String rawPassword, String onion) {
+    final String id = onion.substring("{bcrypt+".length(), onion.indexOf('}'));
+    return new OnionPasswordEncoder(id).matches(rawPassword, onion);
+  }
+}
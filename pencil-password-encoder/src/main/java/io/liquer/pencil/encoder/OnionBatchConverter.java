@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.encoder;
+
+import io.liquer.pencil.encoder.support.EncoderSupport;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Converts legacy {SSHA*} hashes into onion hashes ({@link OnionPasswordEncoder})
+ * without the plaintext passwords, e.g. to retire the legacy hashes of inactive users.
+ * The batch conversion is bound by bcrypt and runs in parallel on a fork/join pool.
+ *
+ * @author sius
+ */
+public final class OnionBatchConverter {
+
+  private final Map<String, OnionPasswordEncoder> encoders = new HashMap<>();
+
+  /**
+   * Creates the converter with the bcrypt strength 10.
+   */
+  public OnionBatchConverter() {
+    this(OnionPasswordEncoder.DEFAULT_STRENGTH);
+  }
+
+  /**
+   * Creates the converter.
+   * @param strength the bcrypt strength (log rounds) between 4 and 31
+   * @throws IllegalArgumentException if the strength is not supported
+   */
+  public OnionBatchConverter(int strength) {
+    for (String encodeId : Arrays.asList("SSHA", "SSHA224", "SSHA256", "SSHA384", "SSHA512")) {
+      final OnionPasswordEncoder encoder = new OnionPasswordEncoder(encodeId, null,
+          SaltedMessageDigestPasswordEncoder.DEFAULT_SALT_SIZE, strength, null);
+      encoder.getLegacyIdentifiers().forEach(identifier -> encoders.put(identifier, encoder));
+    }
+  }
+
+  /**
+   * Convert a legacy salted SHA hash, long identifiers are converted to the short onion identifier,
+   * e.g.: {SSHA-512} to {bcrypt+SSHA512}.
+   * @param encodedPassword the legacy encoded password
+   * @return the onion encoded password or null if the encoded password is not a salted SHA hash
+   */
+  public String convert(String encodedPassword) {
+    if (EncoderSupport.isNullOrEmpty(encodedPassword)) {
+      return null;
+    }
+    final int end = encodedPassword.indexOf('}');
+    final OnionPasswordEncoder encoder = end < 0 ? null : encoders.get(encodedPassword.substring(0, end + 1));
+    return encoder == null ? null : encoder.wrap(encodedPassword);
+  }
+
+  /**
+   * Convert the legacy salted SHA hashes on all cores of the common pool.
+   * @param encodedPasswords the legacy encoded passwords
+   * @return the onion encoded passwords in input order, null if not converted
+   */
+  public List<String> convertAll(List<String> encodedPasswords) {
+    return convertAll(encodedPasswords, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Convert the legacy salted SHA hashes in parallel on the fork/join pool.
+   * @param encodedPasswords the legacy encoded passwords
+   * @param pool the fork/join pool
+   * @return the onion encoded passwords in input order, null if not converted
+   */
+  public List<String> convertAll(List<String> encodedPasswords, ForkJoinPool pool) {
+    final String[] ret = new String[encodedPasswords.size()];
+    pool.submit(() -> IntStream.range(0, ret.length).parallel()
+        .forEach(i -> ret[i] = convert(encodedPasswords.get(i))))
+        .join();
+    return Collections.unmodifiableList(Arrays.asList(ret));
+  }
+}
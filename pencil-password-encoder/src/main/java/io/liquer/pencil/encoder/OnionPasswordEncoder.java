@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.encoder;
+
+import io.liquer.pencil.encoder.support.Base64Support;
+import io.liquer.pencil.encoder.support.BatchPasswordEncoder;
+import io.liquer.pencil.encoder.support.EPSplit;
+import io.liquer.pencil.encoder.support.EncoderSupport;
+import io.liquer.pencil.encoder.support.SaltSource;
+import io.liquer.pencil.encoder.support.SaltSources;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * Onion PasswordEncoder, bcrypt over the salted SHA digest of a legacy encode id:
+ * <pre>
+ *   {bcrypt+SSHA512}b64(salt)bcrypt(b64(sha256(sha512(rawPassword, salt))))
+ * </pre>
+ * Legacy {SSHA*} hashes are wrapped offline with {@link #wrap(String)}, the plaintext is not needed.
+ * The digest is compressed with SHA-256 to stay within the 72 bytes input limit of bcrypt,
+ * the bcrypt part starts with {@code $}, which is not part of the Base64 alphabet.
+ * Matches recomputes the salted SHA digest with the embedded salt and checks the outer bcrypt.
+ *
+ * @author sius
+ */
+public final class OnionPasswordEncoder implements BatchPasswordEncoder {
+
+  public static final String ONION_PREFIX = "bcrypt+";
+  public static final int DEFAULT_STRENGTH = 10;
+
+  private static final Map<String, Legacy> LEGACY = legacy();
+
+  private final Legacy legacy;
+  private final String identifier;
+  private final Set<String> supportedIdentifiers;
+  private final int saltSize;
+  private final SaltSource saltSource;
+  private final BCryptPasswordEncoder bcrypt;
+  private final ThreadLocal<Context> contexts;
+
+  /**
+   * Creates an onion PasswordEncoder with the identifier {bcrypt+&lt;legacyEncodeId&gt;},
+   * a random 8 byte salt value and the bcrypt strength 10.
+   * @param legacyEncodeId  SSHA, SSHA224, SSHA256, SSHA384, SSHA512 or their long form, e.g.: SSHA-512
+   * @throws IllegalArgumentException if the legacy encode id is not supported
+   */
+  public OnionPasswordEncoder(String legacyEncodeId) {
+    this(legacyEncodeId, null, SaltedMessageDigestPasswordEncoder.DEFAULT_SALT_SIZE,
+        DEFAULT_STRENGTH, SaltSources.defaultSource());
+  }
+
+  /**
+   * Creates an onion PasswordEncoder.
+   * @param legacyEncodeId  SSHA, SSHA224, SSHA256, SSHA384, SSHA512 or their long form, e.g.: SSHA-512
+   * @param identifier  {bcrypt+SSHA512}, {bcrypt+SSHA-512} ..., an empty identifier for the DelegatingPasswordEncoder,
+   *                    null for {bcrypt+&lt;legacyEncodeId&gt;}
+   * @param saltSize  the salt byte array size of the inner salted SHA digest
+   * @param strength  the bcrypt strength (log rounds) between 4 and 31
+   * @param saltSource  the SaltSource that fills the random salt values
+   * @throws IllegalArgumentException if the legacy encode id or the strength is not supported
+   */
+  public OnionPasswordEncoder(
+      String legacyEncodeId, String identifier, int saltSize, int strength, SaltSource saltSource) {
+    this.legacy = LEGACY.get(legacyEncodeId == null ? "" : legacyEncodeId.toUpperCase(Locale.ROOT));
+    if (legacy == null) {
+      throw new IllegalArgumentException("Unsupported legacy encode id: " + legacyEncodeId);
+    }
+    if (strength < 4 || strength > 31) {
+      throw new IllegalArgumentException("Illegal bcrypt strength: " + strength);
+    }
+    this.identifier = identifier == null ? legacy.onionIdentifier : identifier;
+    this.supportedIdentifiers = legacy.onionIdentifiers;
+    this.saltSize = Math.max(saltSize, 0);
+    this.saltSource = saltSource == null ? SaltSources.defaultSource() : saltSource;
+    this.bcrypt = new BCryptPasswordEncoder(strength);
+    this.contexts = ThreadLocal.withInitial(() -> new Context(legacy.algorithm));
+  }
+
+  /**
+   * Encode the raw password.
+   *
+   * @param rawPassword plain text password
+   * @return identifier + b64(salt) + bcrypt(b64(sha256(sha(rawPassword, salt))))
+   */
+  @Override
+  public String encode(CharSequence rawPassword) {
+    if (rawPassword == null) {
+      return null;
+    }
+    final byte[] salt = new byte[saltSize];
+    saltSource.nextSalt(salt);
+    return encode(contexts.get(), rawPassword, salt, 0);
+  }
+
+  /**
+   * Encode a range of raw passwords with one per thread context,
+   * the salt values of the range are generated at once.
+   */
+  @Override
+  public void encodeRange(List<? extends CharSequence> rawPasswords, int from, int to, String[] ret) {
+    final Context ctx = contexts.get();
+    final byte[] salts = new byte[(to - from) * saltSize];
+    saltSource.nextSalt(salts);
+    for (int i = from; i < to; i++) {
+      final CharSequence rawPassword = rawPasswords.get(i);
+      ret[i] = rawPassword == null ? null : encode(ctx, rawPassword, salts, (i - from) * saltSize);
+    }
+  }
+
+  /**
+   * Match the raw password against the encoded password.
+   *
+   * @param rawPassword plain text password
+   * @param encodedPassword identifier + b64(salt) + bcrypt(b64(sha256(sha(rawPassword, salt))))
+   * @return true if the outer bcrypt matches
+   */
+  @Override
+  public boolean matches(CharSequence rawPassword, String encodedPassword) {
+    if (rawPassword == null || EncoderSupport.isNullOrEmpty(encodedPassword)) {
+      return false;
+    }
+    final int start = payload(encodedPassword);
+    final int bcryptStart = start < 0 ? -1 : encodedPassword.indexOf('$', start);
+    if (bcryptStart < 0) {
+      return false;
+    }
+    final byte[] salt;
+    try {
+      salt = Base64Support.base64Decode(encodedPassword.substring(start, bcryptStart));
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+    return bcrypt.matches(contexts.get().inner(rawPassword, salt), encodedPassword.substring(bcryptStart));
+  }
+
+  /**
+   * The outer bcrypt hash should be upgraded if its strength is lower than the configured strength.
+   *
+   * @param encodedPassword identifier + b64(salt) + bcrypt(b64(sha256(sha(rawPassword, salt))))
+   * @return true if the bcrypt part should be upgraded
+   */
+  @Override
+  public boolean upgradeEncoding(String encodedPassword) {
+    if (EncoderSupport.isNullOrEmpty(encodedPassword)) {
+      return false;
+    }
+    final int start = payload(encodedPassword);
+    final int bcryptStart = start < 0 ? -1 : encodedPassword.indexOf('$', start);
+    return bcryptStart >= 0 && bcrypt.upgradeEncoding(encodedPassword.substring(bcryptStart));
+  }
+
+  /**
+   * Wrap a legacy salted SHA hash of the legacy encode id without the plaintext password.
+   *
+   * @param encodedPassword the legacy encoded password, e.g.: {SSHA512}b64(concat(sha512(rawPassword, salt), salt))
+   * @return the onion encoded password or null if the encoded password is unsalted,
+   *     malformed or of another encode id
+   */
+  public String wrap(String encodedPassword) {
+    if (EncoderSupport.isNullOrEmpty(encodedPassword) || encodedPassword.charAt(0) != '{') {
+      return null;
+    }
+    final EPSplit split;
+    try {
+      split = new EPSplit(encodedPassword, legacy.identifiers, legacy.hashSize);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+    final byte[] hash = split.getHash();
+    final byte[] salt = split.getSalt();
+    if (!split.isIdentifierSupported() || hash.length != legacy.hashSize || salt.length == 0) {
+      return null;
+    }
+    final String inner = contexts.get().inner(hash);
+    Arrays.fill(hash, (byte) 0);
+    return identifier + Base64Support.base64Encode(salt) + bcrypt.encode(inner);
+  }
+
+  /**
+   * The legacy identifiers accepted by {@link #wrap(String)}.
+   * @return the legacy identifiers, e.g.: {SSHA512}, {SSHA-512}
+   */
+  public Set<String> getLegacyIdentifiers() {
+    return Collections.unmodifiableSet(legacy.identifiers);
+  }
+
+  /* identifier + b64(salt) + bcrypt(b64(sha256(sha(rawPassword, salt)))) with the salt at the offset */
+  private String encode(Context ctx, CharSequence rawPassword, byte[] salt, int saltOff) {
+    return identifier + Base64Support.base64Encode(null, salt, saltOff, saltSize, false, false)
+        + bcrypt.encode(ctx.inner(rawPassword, salt, saltOff, saltSize));
+  }
+
+  /* the start of the payload after a supported identifier, 0 without identifier, -1 for another identifier */
+  private int payload(String encodedPassword) {
+    if (encodedPassword.charAt(0) != '{') {
+      return 0;
+    }
+    final int end = encodedPassword.indexOf('}');
+    return end > 0 && supportedIdentifiers.contains(encodedPassword.substring(0, end + 1)) ? end + 1 : -1;
+  }
+
+  private static Map<String, Legacy> legacy() {
+    final Map<String, Legacy> ret = new HashMap<>();
+    register(ret, new Legacy("SSHA",
+        SaltedMessageDigestPasswordEncoder.SHA1_ALGORITHM,
+        SaltedMessageDigestPasswordEncoder.SHA1_HASH_SIZE), "SSHA", "SSHA1", "SSHA-1");
+    register(ret, new Legacy("SSHA224",
+        SaltedMessageDigestPasswordEncoder.SHA224_ALGORITHM,
+        SaltedMessageDigestPasswordEncoder.SHA224_HASH_SIZE), "SSHA224", "SSHA-224");
+    register(ret, new Legacy("SSHA256",
+        SaltedMessageDigestPasswordEncoder.SHA256_ALGORITHM,
+        SaltedMessageDigestPasswordEncoder.SHA256_HASH_SIZE), "SSHA256", "SSHA-256");
+    register(ret, new Legacy("SSHA384",
+        SaltedMessageDigestPasswordEncoder.SHA384_ALGORITHM,
+        SaltedMessageDigestPasswordEncoder.SHA384_HASH_SIZE), "SSHA384", "SSHA-384");
+    register(ret, new Legacy("SSHA512",
+        SaltedMessageDigestPasswordEncoder.SHA512_ALGORITHM,
+        SaltedMessageDigestPasswordEncoder.SHA512_HASH_SIZE), "SSHA512", "SSHA-512");
+    return Collections.unmodifiableMap(ret);
+  }
+
+  private static void register(Map<String, Legacy> legacy, Legacy scheme, String... encodeIds) {
+    for (String encodeId : encodeIds) {
+      legacy.put(encodeId, scheme);
+      scheme.identifiers.add("{" + encodeId + "}");
+      scheme.onionIdentifiers.add("{" + ONION_PREFIX + encodeId + "}");
+    }
+  }
+
+  private static MessageDigest digest(String algorithm) {
+    try {
+      return MessageDigest.getInstance(algorithm);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e.getMessage(), e);
+    }
+  }
+
+  /* the legacy salted SHA scheme of an encode id and its aliases */
+  private static final class Legacy {
+    private final String algorithm;
+    private final int hashSize;
+    private final String onionIdentifier;
+    private final Set<String> identifiers = new HashSet<>();
+    private final Set<String> onionIdentifiers = new HashSet<>();
+
+    Legacy(String encodeId, String algorithm, int hashSize) {
+      this.algorithm = algorithm;
+      this.hashSize = hashSize;
+      this.onionIdentifier = "{" + ONION_PREFIX + encodeId + "}";
+    }
+  }
+
+  /* the per thread legacy and SHA-256 MessageDigests and password scratch */
+  private static final class Context {
+    private final MessageDigest md;
+    private final MessageDigest sha256 = digest("SHA-256");
+    private final byte[] scratch = new byte[256];
+
+    Context(String algorithm) {
+      this.md = digest(algorithm);
+    }
+
+    /* b64(sha256(sha(rawPassword, salt))) */
+    String inner(CharSequence rawPassword, byte[] salt) {
+      return inner(rawPassword, salt, 0, salt.length);
+    }
+
+    /* b64(sha256(sha(rawPassword, salt range))) */
+    String inner(CharSequence rawPassword, byte[] salt, int off, int len) {
+      md.reset();
+      EncoderSupport.updateUtf8(md, rawPassword, scratch);
+      md.update(salt, off, len);
+      return inner(md.digest());
+    }
+
+    /* b64(sha256(digest)) */
+    String inner(byte[] digest) {
+      sha256.reset();
+      return Base64Support.base64Encode(sha256.digest(digest));
+    }
+  }
+}
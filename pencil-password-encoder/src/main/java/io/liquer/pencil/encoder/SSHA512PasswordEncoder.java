@@ -18,6 +18,8 @@
 
 package io.liquer.pencil.encoder;
 
+import io.liquer.pencil.encoder.support.SaltSource;
+import io.liquer.pencil.encoder.support.SaltSources;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
@@ -56,6 +58,20 @@ public final class SSHA512PasswordEncoder extends SaltedMessageDigestPasswordEnc
    * @param noPadding  drop trailing base64 padding ('=') if true
    */
   public SSHA512PasswordEncoder(String identifier, int saltSize, boolean ufSafe, boolean noPadding) {
+    this(identifier, saltSize, ufSafe, noPadding, SaltSources.defaultSource());
+  }
+
+  /**
+   * Creates a PasswordEncoder with a custom encoding identifier, e.g.: {SSHA512}, {SSHA-512} ...
+   * and base64 encoding options.
+   * @param identifier  {SSHA512}, {SSHA-512} ...
+   * @param saltSize  the salt byte array size (with a minimum of 8 bytes)
+   * @param ufSafe  url and file safe base64 encoding if true
+   * @param noPadding  drop trailing base64 padding ('=') if true
+   * @param saltSource  the SaltSource that fills the random salt values
+   */
+  public SSHA512PasswordEncoder(
+      String identifier, int saltSize, boolean ufSafe, boolean noPadding, SaltSource saltSource) {
     super(
         SHA512_ALGORITHM, SHA512_HASH_SIZE, new HashSet<>(
             Arrays.asList(
@@ -63,6 +79,6 @@ public final class SSHA512PasswordEncoder extends SaltedMessageDigestPasswordEnc
                 SSHA512_LONG_IDENTIFIER,
                 EMPTY_IDENTIFIER
             )),
-        identifier, saltSize, ufSafe, noPadding);
+        identifier, saltSize, ufSafe, noPadding, saltSource);
   }
 }
@@ -18,6 +18,8 @@
 
 package io.liquer.pencil.encoder;
 
+import io.liquer.pencil.encoder.support.SaltSource;
+import io.liquer.pencil.encoder.support.SaltSources;
 import java.util.Arrays;
 import java.util.HashSet;
 
@@ -57,6 +59,21 @@ public final class SSHAPasswordEncoder extends SaltedMessageDigestPasswordEncode
    * @param noPadding  drop trailing base64 padding ('=') if true
    */
   public SSHAPasswordEncoder(String identifier, int saltSize, boolean ufSafe, boolean noPadding) {
+    this(identifier, saltSize, ufSafe, noPadding, SaltSources.defaultSource());
+  }
+
+  /**
+   * Creates a PasswordEncoder with a custom encoding identifier,
+   * e.g.: {SHA}, {SSHA}, {SSHA1}, {SSHA-1} ...
+   * and base64 encoding options.
+   * @param identifier  {SHA}, {SSHA}, {SSHA1}, {SSHA-1} ...
+   * @param saltSize  the salt byte array size (to create an unsalted SHA password hash use 0)
+   * @param ufSafe  url and file safe base64 encoding if true
+   * @param noPadding  drop trailing base64 padding ('=') if true
+   * @param saltSource  the SaltSource that fills the random salt values
+   */
+  public SSHAPasswordEncoder(
+      String identifier, int saltSize, boolean ufSafe, boolean noPadding, SaltSource saltSource) {
     super(
         SHA1_ALGORITHM, SHA1_HASH_SIZE,
             new HashSet<>(
@@ -68,6 +85,6 @@ public final class SSHAPasswordEncoder extends SaltedMessageDigestPasswordEncode
                   SSHA_LONG_IDENTIFIER,
                   EMPTY_IDENTIFIER
               )),
-        identifier, saltSize, ufSafe, noPadding);
+        identifier, saltSize, ufSafe, noPadding, saltSource);
   }
 }
@@ -18,31 +18,47 @@
 
 package io.liquer.pencil.encoder;
 
+import io.liquer.pencil.encoder.jfr.PencilEncodeEvent;
+import io.liquer.pencil.encoder.jfr.PencilEvent;
+import io.liquer.pencil.encoder.jfr.PencilMatchEvent;
+import io.liquer.pencil.encoder.jfr.PencilParseEvent;
 import io.liquer.pencil.encoder.support.Base64Support;
-import io.liquer.pencil.encoder.support.EPSplit;
+import io.liquer.pencil.encoder.support.BatchPasswordEncoder;
+import io.liquer.pencil.encoder.support.EPParser;
+import io.liquer.pencil.encoder.support.EncodedPasswordValidator;
 import io.liquer.pencil.encoder.support.EncoderSupport;
+import io.liquer.pencil.encoder.support.PasswordPair;
+import io.liquer.pencil.encoder.support.SaltSource;
+import io.liquer.pencil.encoder.support.SaltSources;
 
 import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
+import java.util.List;
 import java.util.Set;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.security.crypto.password.PasswordEncoder;
 
 /**
  * The abstract base class for the salted MessageDigest PasswordEncoder implementations.
+ * The MessageDigest algorithm is resolved once on construction, each thread
+ * reuses its own clone of the resolved prototype, parser and codec buffers,
+ * so that encode and matches never perform a provider lookup.
+ * Encode, matches and parsing emit the Pencil JFR events.
+ * Batches reuse the per thread state across the items of a range
+ * and generate the salt values of a range in blocks.
  *
  * @author sius
  */
-abstract class SaltedMessageDigestPasswordEncoder implements PasswordEncoder {
-
-  private static Logger LOG = LoggerFactory.getLogger(SaltedMessageDigestPasswordEncoder.class);
+abstract class SaltedMessageDigestPasswordEncoder
+    implements BatchPasswordEncoder, EncodedPasswordValidator {
 
   public static final int DEFAULT_SALT_SIZE = 8;
 
+  /**
+   * The number of passwords per bulk salt generation of {@link #encodeRange}.
+   */
+  static final int SALT_BLOCK = 64;
+
   public static String EMPTY_IDENTIFIER = "{}";
 
   public static int SHA1_HASH_SIZE = 20;
@@ -75,12 +91,20 @@ abstract class SaltedMessageDigestPasswordEncoder implements PasswordEncoder {
 
   private final String algorithm;
   private final String identifier;
+  private final String encodeId;
   private final Set<String> supportedIdentifiers;
   private final int hashSize;
   private final int saltSize;
   private final boolean ufSafe;
   private final boolean noPadding;
+  private final SaltSource saltSource;
+  private final MessageDigest prototype;
+  private final ThreadLocal<Context> contexts;
 
+  /**
+   * Creates the salted MessageDigest PasswordEncoder.
+   * @throws IllegalArgumentException if the algorithm is not supported by any provider
+   */
   protected SaltedMessageDigestPasswordEncoder(
           String algorithm,
           int hashSize,
@@ -88,15 +112,20 @@ abstract class SaltedMessageDigestPasswordEncoder implements PasswordEncoder {
           String identifier,
           int saltSize,
           boolean ufSafe,
-          boolean noPadding) {
+          boolean noPadding,
+          SaltSource saltSource) {
 
     this.algorithm = algorithm;
     this.identifier = identifier;
+    this.encodeId = encodeId(identifier, algorithm);
     this.supportedIdentifiers = supportedIdentifiers;
     this.hashSize = hashSize;
     this.saltSize = Math.max(saltSize, 0);
     this.ufSafe = ufSafe;
     this.noPadding = noPadding;
+    this.saltSource = saltSource == null ? SaltSources.defaultSource() : saltSource;
+    this.prototype = prototype(algorithm);
+    this.contexts = ThreadLocal.withInitial(() -> new Context(newDigest(), newParser(), this.saltSize));
   }
 
   /**
@@ -110,63 +139,230 @@ abstract class SaltedMessageDigestPasswordEncoder implements PasswordEncoder {
     if (rawPassword == null) {
       return null;
     }
-    final byte [] salt = salt();
-    return identifier + b64(EncoderSupport.concat(sha(rawPassword, salt), salt));
+    final Context ctx = contexts.get();
+    saltSource.nextSalt(ctx.salt);
+    return encode(ctx, rawPassword, ctx.salt, 0);
   }
 
+  /**
+   * Encode a range of raw passwords with one per thread context,
+   * the salt values of up to {@value #SALT_BLOCK} passwords are generated at once.
+   */
+  @Override
+  public void encodeRange(List<? extends CharSequence> rawPasswords, int from, int to, String[] ret) {
+    final Context ctx = contexts.get();
+    final byte[] salts = new byte[Math.min(to - from, SALT_BLOCK) * saltSize];
+    for (int block = from; block < to; block += SALT_BLOCK) {
+      final int end = Math.min(to, block + SALT_BLOCK);
+      saltSource.nextSalt(salts);
+      for (int i = block; i < end; i++) {
+        final CharSequence rawPassword = rawPasswords.get(i);
+        ret[i] = rawPassword == null ? null : encode(ctx, rawPassword, salts, (i - block) * saltSize);
+      }
+    }
+  }
+
+  /**
+   * Match the raw password against the encoded password.
+   * The recomputed hash is compared in constant time
+   * with the decoded hash part of the encoded password.
+   *
+   * @param rawPassword plain text password
+   * @param encodedPassword identifier + b64(concat(sha(rawPassword, salt), salt))
+   * @return true if the hashes are equal
+   */
   @Override
   public boolean matches(CharSequence rawPassword, String encodedPassword) {
-    if (rawPassword == null && encodedPassword == null) {
+    return matches(contexts.get(), rawPassword, encodedPassword);
+  }
+
+  /**
+   * Match a range of password pairs with one per thread context.
+   */
+  @Override
+  public void matchesRange(List<PasswordPair> passwords, int from, int to, boolean[] ret) {
+    final Context ctx = contexts.get();
+    for (int i = from; i < to; i++) {
+      final PasswordPair pair = passwords.get(i);
+      ret[i] = pair != null && matches(ctx, pair.getRawPassword(), pair.getEncodedPassword());
+    }
+  }
+
+  /**
+   * Test the identifier, the payload length and the Base64 alphabet
+   * of the encoded password without hashing.
+   *
+   * @param encodedPassword identifier + b64(concat(sha(rawPassword, salt), salt))
+   * @return true if the encoded password is well formed
+   */
+  @Override
+  public boolean isWellFormed(String encodedPassword) {
+    if (EncoderSupport.isNullOrEmpty(encodedPassword)) {
       return false;
     }
+    return parse(contexts.get(), encodedPassword);
+  }
 
+  /**
+   * Salts shorter than the configured salt size (e.g. unsalted {SHA} hashes)
+   * should be re-encoded, the payload is parsed without decoding or hashing.
+   *
+   * @param encodedPassword identifier + b64(concat(sha(rawPassword, salt), salt))
+   * @return true if the encoded password is well formed and its salt is shorter than the salt size
+   */
+  @Override
+  public boolean upgradeEncoding(String encodedPassword) {
     if (EncoderSupport.isNullOrEmpty(encodedPassword)) {
       return false;
     }
+    final EPParser parser = contexts.get().parser;
+    return parser.parse(encodedPassword) && parser.getSaltSize() < saltSize;
+  }
+
+  /* identifier + b64(concat(sha(rawPassword, salt), salt)) with the salt at the offset of the salt array */
+  private String encode(Context ctx, CharSequence rawPassword, byte[] salt, int saltOff) {
+    final PencilEncodeEvent event = PencilEncodeEvent.start();
+    String outcome = PencilEvent.ERROR;
+    try {
+      // buffer layout: hash, salt
+      final byte[] buf = ctx.buffer(hashSize + saltSize);
+      final MessageDigest md = ctx.md();
+      EncoderSupport.updateUtf8(md, rawPassword, ctx.scratch);
+      md.update(salt, saltOff, saltSize);
+      digest(md, buf, 0);
+      System.arraycopy(salt, saltOff, buf, hashSize, saltSize);
+
+      final String ret = Base64Support.base64Encode(
+          identifier, buf, 0, hashSize + saltSize, ufSafe, noPadding);
+      outcome = PencilEvent.OK;
+      return ret;
+    } finally {
+      PencilEvent.complete(event, encodeId, algorithm, saltSize, outcome);
+    }
+  }
+
+  private boolean matches(Context ctx, CharSequence rawPassword, String encodedPassword) {
+    if (rawPassword == null) {
+      return false;
+    }
 
-    final EPSplit split = new EPSplit(encodedPassword, supportedIdentifiers, hashSize);
-    if (!split.isIdentifierSupported()) {
+    if (EncoderSupport.isNullOrEmpty(encodedPassword)) {
       return false;
     }
 
-    final byte[] salt = split.getSalt();
-    final String challenge = split.getIdentifier() + b64(EncoderSupport.concat(sha(rawPassword, salt), salt));
+    final PencilMatchEvent event = PencilMatchEvent.start();
+    final EPParser parser = ctx.parser;
+    String outcome = PencilEvent.ERROR;
+    int eventSaltSize = saltSize;
+    try {
+      if (!parse(ctx, encodedPassword)) {
+        outcome = PencilEvent.MALFORMED;
+        return false;
+      }
+      eventSaltSize = parser.getSaltSize();
+
+      // buffer layout: decoded hash, decoded salt, recomputed hash
+      final int len = parser.getDecodedLength();
+      final byte[] buf = ctx.buffer;
+      final MessageDigest md = ctx.md();
+      EncoderSupport.updateUtf8(md, rawPassword, ctx.scratch);
+      md.update(buf, hashSize, len - hashSize);
+      digest(md, buf, len);
 
-    return encodedPassword.equals(challenge);
+      final boolean ret = EncoderSupport.isEqual(buf, 0, buf, len, hashSize);
+      outcome = ret ? PencilEvent.MATCH : PencilEvent.MISMATCH;
+      return ret;
+    } finally {
+      PencilEvent.complete(event, encodeId, algorithm, eventSaltSize, outcome);
+    }
   }
 
-  private String b64(byte[] val) {
-    return Base64Support.base64Encode(val, ufSafe, noPadding);
+
+  /* parses and decodes the encoded password into the context buffer with room for the recomputed hash */
+  private boolean parse(Context ctx, String encodedPassword) {
+    final PencilParseEvent event = PencilParseEvent.start();
+    final EPParser parser = ctx.parser;
+    String outcome = PencilEvent.ERROR;
+    int eventSaltSize = saltSize;
+    try {
+      final boolean ret = parser.parse(encodedPassword)
+          && parser.decode(ctx.buffer(parser.getDecodedLength() + hashSize), 0) >= 0;
+      if (ret) {
+        eventSaltSize = parser.getSaltSize();
+      }
+      outcome = ret ? PencilEvent.OK : PencilEvent.MALFORMED;
+      return ret;
+    } finally {
+      PencilEvent.complete(event, encodeId, algorithm, eventSaltSize, outcome);
+    }
   }
 
-  private byte[] sha(CharSequence rawPassword, byte[] salt) {
-    final MessageDigest md = md();
-    if (md == null) {
-      return null;
+  private void digest(MessageDigest md, byte[] buf, int off) {
+    try {
+      md.digest(buf, off, hashSize);
+    } catch (DigestException e) {
+      throw new IllegalStateException(e.getMessage(), e);
     }
+  }
 
-    md.update(EncoderSupport.encode(rawPassword, StandardCharsets.UTF_8));
-    md.update(salt);
+  private EPParser newParser() {
+    return new EPParser(supportedIdentifiers, hashSize);
+  }
 
-    return md.digest();
+  private MessageDigest newDigest() {
+    try {
+      return (MessageDigest) prototype.clone();
+    } catch (CloneNotSupportedException e) {
+      try {
+        return MessageDigest.getInstance(algorithm, prototype.getProvider());
+      } catch (NoSuchAlgorithmException ex) {
+        throw new IllegalStateException(ex.getMessage(), ex);
+      }
+    }
   }
 
-  private byte[] salt() {
-    byte[] salt = new byte[saltSize];
-    rnd().nextBytes(salt);
-    return salt;
+  /* the encode id without braces, e.g.: SSHA512, derived from the algorithm for an empty identifier */
+  private static String encodeId(String identifier, String algorithm) {
+    if (identifier == null || identifier.length() <= 2) {
+      return "S" + algorithm.replace("-", "");
+    }
+    return identifier.startsWith("{") && identifier.endsWith("}")
+        ? identifier.substring(1, identifier.length() - 1)
+        : identifier;
   }
 
-  private MessageDigest md() {
+  private static MessageDigest prototype(String algorithm) {
     try {
       return MessageDigest.getInstance(algorithm);
     } catch (NoSuchAlgorithmException e) {
-      LOG.error(e.getMessage(), e);
-      return null;
+      throw new IllegalArgumentException("Unsupported MessageDigest algorithm: " + algorithm, e);
     }
   }
 
-  private SecureRandom rnd() {
-    return new SecureRandom();
+  /* the per thread MessageDigest, parser, salt, password scratch and codec buffer */
+  private static final class Context {
+    private final MessageDigest md;
+    private final EPParser parser;
+    private final byte[] salt;
+    private final byte[] scratch = new byte[256];
+    private byte[] buffer = new byte[128];
+
+    Context(MessageDigest md, EPParser parser, int saltSize) {
+      this.md = md;
+      this.parser = parser;
+      this.salt = new byte[saltSize];
+    }
+
+    MessageDigest md() {
+      md.reset();
+      return md;
+    }
+
+    byte[] buffer(int len) {
+      if (buffer.length < len) {
+        buffer = new byte[Math.max(len, buffer.length << 1)];
+      }
+      return buffer;
+    }
   }
 }
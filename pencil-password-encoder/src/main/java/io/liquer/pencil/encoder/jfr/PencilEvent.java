@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.encoder.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * The common fields of the Pencil JFR events.
+ * The events cost nothing when they are disabled: the static {@code start()}
+ * factories return null without allocating unless the Flight Recorder is initialized
+ * and the cached event type is enabled, {@link #complete(PencilEvent, String, String, int, String)}
+ * accepts null events.
+ *
+ * @author sius
+ */
+@Category({"Pencil", "Password Encoder"})
+@StackTrace(false)
+public abstract class PencilEvent extends Event {
+
+  public static final String OK = "ok";
+  public static final String MATCH = "match";
+  public static final String MISMATCH = "mismatch";
+  public static final String MALFORMED = "malformed";
+  public static final String ERROR = "error";
+
+  /* superclass fields must not be private to be recorded by JFR */
+  @Label("Encode Id")
+  String encodeId;
+
+  @Label("Algorithm")
+  String algorithm;
+
+  @Label("Salt Size")
+  @DataAmount(DataAmount.BYTES)
+  int saltSize;
+
+  @Label("Outcome")
+  String outcome;
+
+  /**
+   * Commit a started event if it exceeds the configured threshold.
+   * @param event the started event or null if the event is disabled
+   * @param encodeId the encode id, e.g.: SSHA512
+   * @param algorithm the hash algorithm or cipher
+   * @param saltSize the salt size in bytes, -1 if unknown
+   * @param outcome the outcome, e.g.: {@link #MATCH}
+   */
+  public static void complete(
+      PencilEvent event, String encodeId, String algorithm, int saltSize, String outcome) {
+    if (event != null && event.shouldCommit()) {
+      event.encodeId = encodeId;
+      event.algorithm = algorithm;
+      event.saltSize = saltSize;
+      event.outcome = outcome;
+      event.commit();
+    }
+  }
+
+  /* events are only allocated after the Flight Recorder has been initialized */
+  static boolean isRecording() {
+    return FlightRecorder.isInitialized();
+  }
+
+  public String getEncodeId() {
+    return encodeId;
+  }
+
+  public String getAlgorithm() {
+    return algorithm;
+  }
+
+  public int getSaltSize() {
+    return saltSize;
+  }
+
+  public String getOutcome() {
+    return outcome;
+  }
+}
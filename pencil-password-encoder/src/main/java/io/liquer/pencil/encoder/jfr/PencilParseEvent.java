@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.encoder.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Parsing and decoding of an encoded password.
+ *
+ * @author sius
+ */
+@Name(PencilParseEvent.NAME)
+@Label("Pencil Parse")
+@Description("Parsing and decoding of an encoded password")
+public final class PencilParseEvent extends PencilEvent {
+
+  public static final String NAME = "io.liquer.pencil.Parse";
+
+  /**
+   * Create and begin the event if it is enabled.
+   * @return the started event or null if the event is disabled
+   */
+  public static PencilParseEvent start() {
+    if (!isRecording() || !Type.EVENT_TYPE.isEnabled()) {
+      return null;
+    }
+    final PencilParseEvent ret = new PencilParseEvent();
+    ret.begin();
+    return ret;
+  }
+
+  /* resolved on the first start() after the Flight Recorder has been initialized */
+  private static final class Type {
+    private static final EventType EVENT_TYPE = EventType.getEventType(PencilParseEvent.class);
+  }
+}
@@ -20,22 +20,29 @@ package io.liquer.pencil.encoder.legacy;
 
 import static io.liquer.pencil.encoder.support.EncoderSupport.isNullOrEmpty;
 
+import io.liquer.pencil.encoder.jfr.PencilEncodeEvent;
+import io.liquer.pencil.encoder.jfr.PencilEvent;
+import io.liquer.pencil.encoder.jfr.PencilMatchEvent;
+import io.liquer.pencil.encoder.jfr.PencilParseEvent;
 import io.liquer.pencil.encoder.support.Base64Support;
-import io.liquer.pencil.encoder.support.EPSplit;
+import io.liquer.pencil.encoder.support.BatchPasswordEncoder;
+import io.liquer.pencil.encoder.support.EPParser;
+import io.liquer.pencil.encoder.support.EncodedPasswordValidator;
+import io.liquer.pencil.encoder.support.EncoderSupport;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
-import io.liquer.pencil.encoder.support.EncoderSupport;
-import org.springframework.security.crypto.password.PasswordEncoder;
-
 /**
  * The additive XOR Cipher to support legacy environments
  * (e.g. WebSphere, Liberty).
+ * The key bytes are calculated once per encoder instance,
+ * the XOR Cipher is reversible, see {@link #decode(String)}.
  */
-public final class XORPasswordEncoder implements PasswordEncoder {
+public final class XORPasswordEncoder implements BatchPasswordEncoder, EncodedPasswordValidator {
 
   public static final String DEFAULT_IDENTIFIER = "{xor}";
 
@@ -44,14 +51,17 @@ public final class XORPasswordEncoder implements PasswordEncoder {
    */
   public static final String DEFAULT_UNREPEATED_KEY = "_";
 
+  private static final String ALGORITHM = "XOR";
+
   private final Set<String> supportedIdentifiers;
 
   private final String identifier;
-  private final int unrepeatedKeySize;
-  private final CharSequence unrepeatedKey;
+  private final String encodeId;
+  private final byte[] keyBytes;
   private final Charset charset;
   private final boolean ufSafe;
   private final boolean noPadding;
+  private final ThreadLocal<EPParser> parsers;
 
   /**
    * Create an additive XOR Cipher PasswordEncoder
@@ -88,6 +98,8 @@ public final class XORPasswordEncoder implements PasswordEncoder {
    * @param charset custom Charset (default: ISO 8859-1)
    * @param ufSafe url and file safe encoding if true
    * @param noPadding drop trailing base64 padding ('=') if true
+   * @throws IllegalArgumentException if the unrepeated key is empty
+   *     or not encodable with the Charset
    */
   public XORPasswordEncoder(
       Set<String> supportedIdentifiers,
@@ -98,11 +110,16 @@ public final class XORPasswordEncoder implements PasswordEncoder {
       boolean noPadding) {
     this.supportedIdentifiers = supportedIdentifiers;
     this.identifier = identifier == null ? DEFAULT_IDENTIFIER : identifier;
-    this.unrepeatedKey = unrepeatedKey == null ? DEFAULT_UNREPEATED_KEY : unrepeatedKey;
-    this.unrepeatedKeySize = unrepeatedKey.length();
+    this.encodeId = this.identifier.replace("{", "").replace("}", "");
     this.charset = charset == null ? StandardCharsets.ISO_8859_1 : charset;
+    this.keyBytes = EncoderSupport.encode(
+        unrepeatedKey == null ? DEFAULT_UNREPEATED_KEY : unrepeatedKey, this.charset);
+    if (keyBytes.length == 0) {
+      throw new IllegalArgumentException("Empty unrepeated key!");
+    }
     this.ufSafe = ufSafe;
     this.noPadding = noPadding;
+    this.parsers = ThreadLocal.withInitial(() -> new EPParser(this.supportedIdentifiers, 0));
   }
 
   @Override
@@ -110,12 +127,26 @@ public final class XORPasswordEncoder implements PasswordEncoder {
     if (rawPassword == null) {
       return null;
     }
-    return identifier + b64(xor(EncoderSupport.encode(rawPassword, charset), EncoderSupport.encode(unrepeatedKey, charset)));
+    final PencilEncodeEvent event = PencilEncodeEvent.start();
+    String outcome = PencilEvent.ERROR;
+    try {
+      final byte[] val = EncoderSupport.encode(rawPassword, charset);
+      try {
+        xor(val);
+        final String ret = Base64Support.base64Encode(identifier, val, 0, val.length, ufSafe, noPadding);
+        outcome = PencilEvent.OK;
+        return ret;
+      } finally {
+        Arrays.fill(val, (byte) 0);
+      }
+    } finally {
+      PencilEvent.complete(event, encodeId, ALGORITHM, 0, outcome);
+    }
   }
 
   @Override
   public boolean matches(CharSequence rawPassword, String encodedPassword) {
-    if (rawPassword == null && encodedPassword == null) {
+    if (rawPassword == null) {
       return false;
     }
 
@@ -123,25 +154,103 @@ public final class XORPasswordEncoder implements PasswordEncoder {
       return false;
     }
 
-    final EPSplit split = new EPSplit(encodedPassword, supportedIdentifiers, 0);
-    if (!split.isIdentifierSupported()) {
+    final PencilMatchEvent event = PencilMatchEvent.start();
+    String outcome = PencilEvent.ERROR;
+    try {
+      final byte[] stored = decodePayload(encodedPassword);
+      if (stored == null) {
+        outcome = PencilEvent.MALFORMED;
+        return false;
+      }
+      final byte[] val = EncoderSupport.encode(rawPassword, charset);
+      try {
+        xor(val);
+        final boolean ret = MessageDigest.isEqual(stored, val);
+        outcome = ret ? PencilEvent.MATCH : PencilEvent.MISMATCH;
+        return ret;
+      } finally {
+        Arrays.fill(val, (byte) 0);
+        Arrays.fill(stored, (byte) 0);
+      }
+    } finally {
+      PencilEvent.complete(event, encodeId, ALGORITHM, 0, outcome);
+    }
+  }
+
+  /**
+   * Recover the raw password of an XOR encoded password,
+   * e.g. to migrate WebSphere {xor} secrets to a one-way hash.
+   * @param encodedPassword the encoded password
+   * @return the raw password or null if the encoded password is null
+   * @throws IllegalArgumentException if the identifier is not supported
+   *     or the payload is not valid Base64
+   */
+  public String decode(String encodedPassword) {
+    if (encodedPassword == null) {
+      return null;
+    }
+    final byte[] val = decodePayload(encodedPassword);
+    if (val == null) {
+      throw new IllegalArgumentException("Unsupported or malformed encoded password!");
+    }
+    try {
+      xor(val);
+      return new String(val, charset);
+    } finally {
+      Arrays.fill(val, (byte) 0);
+    }
+  }
+
+  @Override
+  public boolean isWellFormed(String encodedPassword) {
+    if (isNullOrEmpty(encodedPassword)) {
       return false;
     }
+    final byte[] val = decodePayload(encodedPassword);
+    if (val == null) {
+      return false;
+    }
+    Arrays.fill(val, (byte) 0);
+    return true;
+  }
 
-    final String challenge =  split.getIdentifier()
-        + b64(xor(EncoderSupport.encode(rawPassword, charset), EncoderSupport.encode(unrepeatedKey, charset)));
-    return encodedPassword.equals(challenge);
+  /**
+   * The reversible XOR Cipher should always be replaced by a one-way hash.
+   * @param encodedPassword the encoded password
+   * @return true if the encoded password is well formed
+   */
+  @Override
+  public boolean upgradeEncoding(String encodedPassword) {
+    return isWellFormed(encodedPassword);
   }
 
-  private String b64(byte[] val) {
-    return Base64Support.base64Encode(val, ufSafe, noPadding);
+  /* with a hashSize of 0 the whole decoded payload is the XOR encoded password */
+  private byte[] decodePayload(String encodedPassword) {
+    final PencilParseEvent event = PencilParseEvent.start();
+    String outcome = PencilEvent.ERROR;
+    try {
+      final EPParser parser = parsers.get();
+      byte[] ret = null;
+      if (parser.parse(encodedPassword)) {
+        ret = new byte[parser.getDecodedLength()];
+        if (parser.decode(ret, 0) < 0) {
+          ret = null;
+        }
+      }
+      outcome = ret == null ? PencilEvent.MALFORMED : PencilEvent.OK;
+      return ret;
+    } finally {
+      PencilEvent.complete(event, encodeId, ALGORITHM, 0, outcome);
+    }
   }
 
-  private static byte[] xor(byte[] rawPassword, byte[] repeatingKey) {
-    byte[] ret = new byte[rawPassword.length];
-    for (int i = 0; i < ret.length; i++) {
-      ret[i] = (byte) (rawPassword[i] ^ repeatingKey[i % repeatingKey.length]);
+  private void xor(byte[] val) {
+    final byte[] key = keyBytes;
+    for (int i = 0, k = 0; i < val.length; i++) {
+      val[i] ^= key[k];
+      if (++k == key.length) {
+        k = 0;
+      }
     }
-    return ret;
   }
 }
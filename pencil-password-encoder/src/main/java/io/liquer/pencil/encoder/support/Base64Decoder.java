@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.liquer.pencil.encoder.support;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * A stateful streaming Base64 and Base64 UFS decoder (with or without padding)
+ * that keeps incomplete groups and pending output across chunk boundaries and
+ * skips line breaks (CR, LF), so wrapped values are decoded chunk by chunk with bounded memory.
+ * A Base64Decoder is not thread safe.
+ *
+ * @author sius
+ */
+public final class Base64Decoder {
+
+  private final byte[] pending = new byte[3];
+  private int pendingPos;
+  private int pendingLen;
+  private int carry;
+  private int carryLen;
+  private int padding = -1;
+  private long position;
+
+  /**
+   * Decode the remaining ASCII characters of src into dst until
+   * src is consumed or dst is full.
+   * @param src the source ASCII characters
+   * @param dst the destination for the decoded bytes
+   * @throws IllegalArgumentException on an invalid character
+   */
+  public void decode(ByteBuffer src, ByteBuffer dst) {
+    while (drain(dst) && src.hasRemaining()) {
+      accept((char) (src.get() & 0xff));
+    }
+  }
+
+  /**
+   * Decode the remaining characters of src into dst until
+   * src is consumed or dst is full.
+   * @param src the source characters
+   * @param dst the destination for the decoded bytes
+   * @throws IllegalArgumentException on an invalid character
+   */
+  public void decode(CharBuffer src, ByteBuffer dst) {
+    while (drain(dst) && src.hasRemaining()) {
+      accept(src.get());
+    }
+  }
+
+  /**
+   * Write the final unpadded group, call repeatedly until it returns true.
+   * @param dst the destination for the decoded bytes
+   * @return true if all output has been written to dst
+   * @throws IllegalArgumentException if the input ends with an incomplete group
+   */
+  public boolean finish(ByteBuffer dst) {
+    if (drain(dst) && carryLen > 0) {
+      if (carryLen == 1) {
+        throw new IllegalArgumentException(
+            String.format("Incomplete Base64 group at position %1$d!", position));
+      }
+      partial();
+    }
+    return drain(dst);
+  }
+
+  private void accept(char c) {
+    final long pos = position++;
+    if (c == '\r' || c == '\n') {
+      return;
+    }
+    if (c == '=') {
+      if (padding < 0 && carryLen >= 2) {
+        padding = 3 - carryLen;
+        partial();
+        return;
+      }
+      if (padding > 0) {
+        padding--;
+        return;
+      }
+      throw invalid(c, pos);
+    }
+    final int v = Base64Support.b64Value(c);
+    if (v < 0 || padding >= 0) {
+      throw invalid(c, pos);
+    }
+    carry = carry << 6 | v;
+    if (++carryLen == 4) {
+      pending[0] = (byte) (carry >>> 16);
+      pending[1] = (byte) (carry >>> 8);
+      pending[2] = (byte) carry;
+      pendingLen = 3;
+      carry = 0;
+      carryLen = 0;
+    }
+  }
+
+  /* flushes the 2 or 3 characters of an incomplete group */
+  private void partial() {
+    final int k = carry << (carryLen == 2 ? 12 : 6);
+    pending[0] = (byte) (k >>> 16);
+    pending[1] = (byte) (k >>> 8);
+    pendingLen = carryLen - 1;
+    carry = 0;
+    carryLen = 0;
+  }
+
+  private static IllegalArgumentException invalid(char c, long pos) {
+    return new IllegalArgumentException(
+        String.format("Invalid character: '%1$c' at position %2$d!", c, pos));
+  }
+
+  private boolean drain(ByteBuffer dst) {
+    while (pendingPos < pendingLen && dst.hasRemaining()) {
+      dst.put(pending[pendingPos++]);
+    }
+    if (pendingPos < pendingLen) {
+      return false;
+    }
+    pendingPos = 0;
+    pendingLen = 0;
+    return true;
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.liquer.pencil.encoder.support;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * A stateful streaming Base64 encoder that keeps incomplete groups, pending output
+ * and the line position across chunk boundaries, so large values are encoded
+ * chunk by chunk with bounded memory.
+ * A Base64Encoder is not thread safe.
+ *
+ * @author sius
+ */
+public final class Base64Encoder {
+
+  private final byte[] cp;
+  private final boolean noPadding;
+  private final int crPos;
+
+  /* one group of 4 characters with up to one CRLF per character */
+  private final byte[] pending = new byte[12];
+  private int pendingPos;
+  private int pendingLen;
+  private int carry;
+  private int carryLen;
+  private int column;
+  private boolean finished;
+
+  /**
+   * Creates a streaming Base64 encoder.
+   * @param ufSafe url and file safe encoding if true
+   * @param noPadding exclude padding if true
+   * @param crPos the CRLF line break position or 0 to disable line wrapping
+   */
+  public Base64Encoder(boolean ufSafe, boolean noPadding, int crPos) {
+    if (crPos < 0) {
+      throw new IllegalArgumentException(String.format("Invalid CR position: %1$d!", crPos));
+    }
+    this.cp = Base64Support.alphabet(ufSafe);
+    this.noPadding = noPadding;
+    this.crPos = crPos;
+  }
+
+  /**
+   * Encode the remaining bytes of src into dst as ASCII bytes until
+   * src is consumed or dst is full.
+   * @param src the source bytes
+   * @param dst the destination for the ASCII encoded characters
+   */
+  public void encode(ByteBuffer src, ByteBuffer dst) {
+    while (drain(dst) && src.hasRemaining()) {
+      accept(src.get());
+    }
+  }
+
+  /**
+   * Encode the remaining bytes of src into dst until
+   * src is consumed or dst is full.
+   * @param src the source bytes
+   * @param dst the destination for the encoded characters
+   */
+  public void encode(ByteBuffer src, CharBuffer dst) {
+    while (drain(dst) && src.hasRemaining()) {
+      accept(src.get());
+    }
+  }
+
+  /**
+   * Write the final group with optional padding, call repeatedly until it returns true.
+   * @param dst the destination for the ASCII encoded characters
+   * @return true if all output has been written to dst
+   */
+  public boolean finish(ByteBuffer dst) {
+    if (!finished && drain(dst)) {
+      tail();
+    }
+    return finished && drain(dst);
+  }
+
+  /**
+   * Write the final group with optional padding, call repeatedly until it returns true.
+   * @param dst the destination for the encoded characters
+   * @return true if all output has been written to dst
+   */
+  public boolean finish(CharBuffer dst) {
+    if (!finished && drain(dst)) {
+      tail();
+    }
+    return finished && drain(dst);
+  }
+
+  private void accept(byte b) {
+    if (finished) {
+      throw new IllegalStateException("Encoder is finished");
+    }
+    carry = carry << 8 | (b & 0xff);
+    if (++carryLen == 3) {
+      emit(cp[(carry >>> 18) & 0x3f]);
+      emit(cp[(carry >>> 12) & 0x3f]);
+      emit(cp[(carry >>>  6) & 0x3f]);
+      emit(cp[carry          & 0x3f]);
+      carry = 0;
+      carryLen = 0;
+    }
+  }
+
+  private void tail() {
+    if (carryLen > 0) {
+      final int k = carry << (carryLen == 1 ? 16 : 8);
+      emit(cp[(k >>> 18) & 0x3f]);
+      emit(cp[(k >>> 12) & 0x3f]);
+      if (carryLen == 2) {
+        emit(cp[(k >>> 6) & 0x3f]);
+      }
+      if (!noPadding) {
+        emit((byte) '=');
+        if (carryLen == 1) {
+          emit((byte) '=');
+        }
+      }
+      carry = 0;
+      carryLen = 0;
+    }
+    finished = true;
+  }
+
+  private void emit(byte c) {
+    if (crPos > 0 && column == crPos) {
+      pending[pendingLen++] = '\r';
+      pending[pendingLen++] = '\n';
+      column = 0;
+    }
+    pending[pendingLen++] = c;
+    column++;
+  }
+
+  private boolean drain(ByteBuffer dst) {
+    while (pendingPos < pendingLen && dst.hasRemaining()) {
+      dst.put(pending[pendingPos++]);
+    }
+    return reset();
+  }
+
+  private boolean drain(CharBuffer dst) {
+    while (pendingPos < pendingLen && dst.hasRemaining()) {
+      dst.put((char) pending[pendingPos++]);
+    }
+    return reset();
+  }
+
+  private boolean reset() {
+    if (pendingPos < pendingLen) {
+      return false;
+    }
+    pendingPos = 0;
+    pendingLen = 0;
+    return true;
+  }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.liquer.pencil.encoder.support;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Internal stream and channel adapters of the streaming Base64 codec,
+ * see the factory methods of {@link Base64Support}.
+ *
+ * @author sius
+ */
+final class Base64Streams {
+
+  static final int BUFFER_SIZE = 8192;
+
+  private Base64Streams() { }
+
+  /* encodes the bytes written and writes the ASCII characters to the target stream */
+  static final class EncodingOutputStream extends FilterOutputStream {
+    private final Base64Encoder encoder;
+    private final ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+    private boolean closed;
+
+    EncodingOutputStream(OutputStream out, Base64Encoder encoder) {
+      super(out);
+      this.encoder = encoder;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      final ByteBuffer src = ByteBuffer.wrap(b, off, len);
+      while (src.hasRemaining()) {
+        encoder.encode(src, buf);
+        if (!buf.hasRemaining()) {
+          flushBuffer();
+        }
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      flushBuffer();
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        while (!encoder.finish(buf)) {
+          flushBuffer();
+        }
+        flushBuffer();
+      } finally {
+        out.close();
+      }
+    }
+
+    private void flushBuffer() throws IOException {
+      if (buf.position() > 0) {
+        out.write(buf.array(), 0, buf.position());
+        buf.clear();
+      }
+    }
+  }
+
+  /* reads ASCII characters from the source stream and returns the decoded bytes */
+  static final class DecodingInputStream extends FilterInputStream {
+    private final Base64Decoder decoder;
+    private final ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE).flip();
+    private boolean eof;
+
+    DecodingInputStream(InputStream in, Base64Decoder decoder) {
+      super(in);
+      this.decoder = decoder;
+    }
+
+    @Override
+    public int read() throws IOException {
+      final byte[] b = new byte[1];
+      return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      final ByteBuffer dst = ByteBuffer.wrap(b, off, len);
+      while (dst.position() == off) {
+        if (buf.hasRemaining()) {
+          decoder.decode(buf, dst);
+        } else if (eof) {
+          return decoder.finish(dst) && dst.position() == off ? -1 : dst.position() - off;
+        } else {
+          buf.clear();
+          final int n = in.read(buf.array(), 0, buf.capacity());
+          buf.limit(Math.max(n, 0));
+          eof = n < 0;
+        }
+      }
+      return dst.position() - off;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      final byte[] b = new byte[(int) Math.min(n, BUFFER_SIZE)];
+      long ret = 0;
+      int r;
+      while (ret < n && (r = read(b, 0, (int) Math.min(n - ret, b.length))) > 0) {
+        ret += r;
+      }
+      return ret;
+    }
+
+    @Override
+    public int available() {
+      return 0;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+  }
+
+  /* encodes the bytes written and writes the ASCII characters to the target channel */
+  static final class EncodingChannel implements WritableByteChannel {
+    private final WritableByteChannel out;
+    private final Base64Encoder encoder;
+    private final ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+
+    EncodingChannel(WritableByteChannel out, Base64Encoder encoder) {
+      this.out = out;
+      this.encoder = encoder;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+      final int ret = src.remaining();
+      while (src.hasRemaining()) {
+        encoder.encode(src, buf);
+        if (!buf.hasRemaining()) {
+          flushBuffer();
+        }
+      }
+      return ret;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return out.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!out.isOpen()) {
+        return;
+      }
+      try {
+        while (!encoder.finish(buf)) {
+          flushBuffer();
+        }
+        flushBuffer();
+      } finally {
+        out.close();
+      }
+    }
+
+    private void flushBuffer() throws IOException {
+      buf.flip();
+      while (buf.hasRemaining()) {
+        out.write(buf);
+      }
+      buf.clear();
+    }
+  }
+
+  /* reads ASCII characters from the source channel and returns the decoded bytes */
+  static final class DecodingChannel implements ReadableByteChannel {
+    private final ReadableByteChannel in;
+    private final Base64Decoder decoder;
+    private final ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE).flip();
+    private boolean eof;
+
+    DecodingChannel(ReadableByteChannel in, Base64Decoder decoder) {
+      this.in = in;
+      this.decoder = decoder;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+      final int start = dst.position();
+      while (dst.hasRemaining() && dst.position() == start) {
+        if (buf.hasRemaining()) {
+          decoder.decode(buf, dst);
+        } else if (eof) {
+          return decoder.finish(dst) && dst.position() == start ? -1 : dst.position() - start;
+        } else {
+          buf.clear();
+          final int n = in.read(buf);
+          buf.flip();
+          eof = n < 0;
+          if (n == 0) {
+            break;
+          }
+        }
+      }
+      return dst.position() - start;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return in.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+}
@@ -18,6 +18,14 @@
 
 package io.liquer.pencil.encoder.support;
 
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
 /**
@@ -28,7 +36,7 @@ import java.util.Arrays;
 public final class Base64Support {
 
   private static final int BASE64_CR_POS = 76;
-  private static final String REPLACE_ALL_REGEX = "(\r?\n|\r)";
+  private static final String CRLF = "\r\n";
 
   private static final char[] BASE64_ALPHABET = {
     /*        0   1   2   3   4   5   6   7   8   9   A   B   C   D   E   F */
@@ -48,6 +56,13 @@ public final class Base64Support {
     /* (pad) = */
   };
 
+  private static final byte[] BASE64_BYTES = latin1(BASE64_ALPHABET);
+  private static final byte[] BASE64UFS_BYTES = latin1(BASE64UFS_ALPHABET);
+  private static final byte PAD = '=';
+
+  /* the reverse LOOKUP_TABLE of both alphabets, -1 for invalid characters */
+  private static final byte[] BASE64_REVERSE = reverse(BASE64_ALPHABET, BASE64UFS_ALPHABET);
+
   private Base64Support() { }
 
   /**
@@ -70,30 +85,55 @@ public final class Base64Support {
 
   /**
    * Create a wrapped base64 String with the specified CR position.
+   * A CRLF line break is inserted after every crPos characters
+   * that are followed by further characters.
    * @param b64Val base64 String
    * @param crPos CR Position
    * @return the wrapped base 4 String
    */
   public static String wrap(String b64Val, int crPos) {
-    int len = b64Val.length();
-    char[] ret = new char[len];
-    System.arraycopy(b64Val.toCharArray(), 0, ret, 0, len);
-    int pos = 0;
-    while ((pos += crPos) < len) {
-      char[] tmp = new char[ret.length + 2];
-      int r = pos;
-      System.arraycopy(ret, 0, tmp, 0, r);
-      int n = ++pos;
-      System.arraycopy(ret, r, tmp, ++pos, ret.length - r);
-      tmp[r] = '\r';
-      tmp[n] = '\n';
-      ret = tmp;
+    if (b64Val == null) {
+      return null;
+    }
+    checkCrPos(crPos);
+    final int len = b64Val.length();
+    if (len <= crPos) {
+      return b64Val;
+    }
+    final char[] ret = new char[len + 2 * ((len - 1) / crPos)];
+    int j = 0;
+    for (int i = 0; i < len; i += crPos) {
+      if (i > 0) {
+        ret[j++] = '\r';
+        ret[j++] = '\n';
+      }
+      final int end = Math.min(i + crPos, len);
+      b64Val.getChars(i, end, ret, j);
+      j += end - i;
     }
     return String.valueOf(ret);
   }
 
   /**
-   * Remove all whitespaces from base64 String.
+   * Append the wrapped base64 value with the specified CR position.
+   * @param b64Val base64 value
+   * @param crPos CR Position
+   * @param out the target, e.g. a Writer or StringBuilder
+   * @throws IOException if the target fails
+   */
+  public static void wrap(CharSequence b64Val, int crPos, Appendable out) throws IOException {
+    checkCrPos(crPos);
+    final int len = b64Val.length();
+    for (int i = 0; i < len; i += crPos) {
+      if (i > 0) {
+        out.append(CRLF);
+      }
+      out.append(b64Val, i, Math.min(i + crPos, len));
+    }
+  }
+
+  /**
+   * Remove all line breaks (CR, LF) from base64 String.
    * @param b64val the base64 String
    * @return the unwrapped base64 String
    */
@@ -101,7 +141,119 @@ public final class Base64Support {
     if (b64val == null) {
       return null;
     }
-    return b64val.replaceAll(REPLACE_ALL_REGEX, "");
+    final int len = b64val.length();
+    int i = 0;
+    while (i < len && !isLineBreak(b64val.charAt(i))) {
+      i++;
+    }
+    if (i == len) {
+      return b64val;
+    }
+    final char[] ret = new char[len - 1];
+    b64val.getChars(0, i, ret, 0);
+    int j = i;
+    while (++i < len) {
+      final char c = b64val.charAt(i);
+      if (!isLineBreak(c)) {
+        ret[j++] = c;
+      }
+    }
+    return String.valueOf(ret, 0, j);
+  }
+
+  /**
+   * Append the base64 value without line breaks (CR, LF).
+   * @param b64val the base64 value
+   * @param out the target, e.g. a Writer or StringBuilder
+   * @throws IOException if the target fails
+   */
+  public static void unwrap(CharSequence b64val, Appendable out) throws IOException {
+    final int len = b64val.length();
+    int start = 0;
+    for (int i = 0; i < len; i++) {
+      if (isLineBreak(b64val.charAt(i))) {
+        if (i > start) {
+          out.append(b64val, start, i);
+        }
+        start = i + 1;
+      }
+    }
+    if (len > start) {
+      out.append(b64val, start, len);
+    }
+  }
+
+  /**
+   * Create a Writer that wraps everything written with CRLF line breaks
+   * at the specified CR position while writing to the target.
+   * Closing the wrapping Writer closes the target.
+   * @param out the target Writer
+   * @param crPos CR Position
+   * @return the wrapping Writer
+   */
+  public static Writer wrappingWriter(Writer out, int crPos) {
+    checkCrPos(crPos);
+    return new WrappingWriter(out, crPos);
+  }
+
+  /**
+   * Create a Writer that drops all line breaks (CR, LF) while writing to the target.
+   * Closing the unwrapping Writer closes the target.
+   * @param out the target Writer
+   * @return the unwrapping Writer
+   */
+  public static Writer unwrappingWriter(Writer out) {
+    return new UnwrappingWriter(out);
+  }
+
+  /**
+   * Create an OutputStream that Base64 encodes all bytes written and
+   * writes the ASCII encoded characters to the target stream.
+   * Closing the encoding stream writes the final group and closes the target.
+   * @param out the target OutputStream
+   * @param ufSafe url and file safe encoding if true
+   * @param noPadding exclude padding if true
+   * @param crPos the CRLF line break position or 0 to disable line wrapping
+   * @return the encoding OutputStream
+   */
+  public static OutputStream encodingStream(
+      OutputStream out, boolean ufSafe, boolean noPadding, int crPos) {
+    return new Base64Streams.EncodingOutputStream(out, new Base64Encoder(ufSafe, noPadding, crPos));
+  }
+
+  /**
+   * Create an InputStream that reads Base64 or Base64 UFS encoded ASCII characters
+   * (with or without padding and line breaks) from the source stream and returns the decoded bytes.
+   * @param in the source InputStream
+   * @return the decoding InputStream
+   */
+  public static InputStream decodingStream(InputStream in) {
+    return new Base64Streams.DecodingInputStream(in, new Base64Decoder());
+  }
+
+  /**
+   * Create a WritableByteChannel that Base64 encodes all bytes written and
+   * writes the ASCII encoded characters to the target channel.
+   * Closing the encoding channel writes the final group and closes the target.
+   * @param out the target WritableByteChannel
+   * @param ufSafe url and file safe encoding if true
+   * @param noPadding exclude padding if true
+   * @param crPos the CRLF line break position or 0 to disable line wrapping
+   * @return the encoding WritableByteChannel
+   */
+  public static WritableByteChannel encodingChannel(
+      WritableByteChannel out, boolean ufSafe, boolean noPadding, int crPos) {
+    return new Base64Streams.EncodingChannel(out, new Base64Encoder(ufSafe, noPadding, crPos));
+  }
+
+  /**
+   * Create a ReadableByteChannel that reads Base64 or Base64 UFS encoded ASCII characters
+   * (with or without padding and line breaks) from the source channel and returns the decoded bytes.
+   * @param in the source ReadableByteChannel
+   * @return the decoding ReadableByteChannel
+   */
+  public static ReadableByteChannel decodingChannel(ReadableByteChannel in) {
+    return new Base64Streams.DecodingChannel(in, new Base64Decoder());
   }
 
   /**
@@ -111,7 +263,7 @@ public final class Base64Support {
    * @return a standard Base64 String from the byte array
    */
   public static String base64Encode(byte[] val) {
-    return base64Encode(BASE64_ALPHABET, val, false);
+    return base64Encode(val, false, false);
   }
 
   /**
@@ -122,7 +274,72 @@ public final class Base64Support {
    * @return the bas64 encoded bytes
    */
   public static String base64Encode(byte[] val, boolean ufSafe, boolean noPadding) {
-    return base64Encode((ufSafe ? BASE64UFS_ALPHABET : BASE64_ALPHABET), val, noPadding);
+    if (val == null) {
+      return null;
+    }
+    return base64Encode(null, val, 0, val.length, ufSafe, noPadding);
+  }
+
+  /**
+   * Encodes the byte array range in a single pass into a Latin-1 String
+   * that starts with the optional prefix, e.g. the {IDENTIFIER}.
+   * The output is sized exactly once and the tail is encoded without a padded copy.
+   * @param prefix the optional prefix or null
+   * @param val a byte array to encode
+   * @param off the range offset
+   * @param len the range length
+   * @param ufSafe url and file safe encoding if true
+   * @param noPadding exclude padding if true
+   * @return prefix + the base64 encoded byte array range
+   */
+  public static String base64Encode(
+      String prefix, byte[] val, int off, int len, boolean ufSafe, boolean noPadding) {
+    final int pLen = prefix == null ? 0 : prefix.length();
+    final byte[] ret = new byte[pLen + b64Len(len, noPadding)];
+    for (int i = 0; i < pLen; i++) {
+      final char c = prefix.charAt(i);
+      if (c > 0xff) {
+        return prefix + base64Encode(null, val, off, len, ufSafe, noPadding);
+      }
+      ret[i] = (byte) c;
+    }
+    encode(ufSafe ? BASE64UFS_BYTES : BASE64_BYTES, val, off, len, ret, pLen, noPadding);
+    return new String(ret, StandardCharsets.ISO_8859_1);
+  }
+
+  /*
+   * Encodes the byte array range into dst and returns the number of written bytes.
+   */
+  private static int encode(
+      byte[] cp, byte[] val, int off, int len, byte[] dst, int dstOff, boolean noPadding) {
+    final int end = off + len - len % 3;
+    int i = off;
+    int j = dstOff;
+    while (i < end) {
+      final int k = (val[i] & 0xff) << 16 | (val[i + 1] & 0xff) << 8 | (val[i + 2] & 0xff);
+      dst[j]     = cp[(k >>> 18) & 0x3f];
+      dst[j + 1] = cp[(k >>> 12) & 0x3f];
+      dst[j + 2] = cp[(k >>>  6) & 0x3f];
+      dst[j + 3] = cp[k          & 0x3f];
+      i += 3;
+      j += 4;
+    }
+    final int rem = len % 3;
+    if (rem > 0) {
+      final int k = (val[i] & 0xff) << 16 | (rem == 2 ? (val[i + 1] & 0xff) << 8 : 0);
+      dst[j++] = cp[(k >>> 18) & 0x3f];
+      dst[j++] = cp[(k >>> 12) & 0x3f];
+      if (rem == 2) {
+        dst[j++] = cp[(k >>> 6) & 0x3f];
+      }
+      if (!noPadding) {
+        dst[j++] = PAD;
+        if (rem == 1) {
+          dst[j++] = PAD;
+        }
+      }
+    }
+    return j - dstOff;
   }
 
   /**
@@ -136,25 +353,36 @@ public final class Base64Support {
     if (val == null) {
       return null;
     }
-    int pLen = b64PadLen(val);
-    int len = b64Len(val);
-    byte[] tmp = new byte[val.length + pLen];
-    System.arraycopy(val, 0, tmp, 0, val.length);
-    char[] ret = new char[len];
-    for (int i = 0, j = 0; i < tmp.length; i += 3, j += 4) {
-      int k      = ((tmp[i] & 0xff) << 16) | ((tmp[i + 1] & 0xff) << 8) | (tmp[i + 2] & 0xff);
-      ret[j]     = cp[((k >>> 18) & 0x3f)];
-      ret[j + 1] = cp[((k >>> 12) & 0x3f)];
-      ret[j + 2] = cp[((k >>>  6) & 0x3f)];
-      ret[j + 3] = cp[(k          & 0x3f)];
+    final int len = val.length;
+    final char[] ret = new char[b64Len(len, noPadding)];
+    final int end = len - len % 3;
+    int i = 0;
+    int j = 0;
+    while (i < end) {
+      final int k = (val[i] & 0xff) << 16 | (val[i + 1] & 0xff) << 8 | (val[i + 2] & 0xff);
+      ret[j]     = cp[(k >>> 18) & 0x3f];
+      ret[j + 1] = cp[(k >>> 12) & 0x3f];
+      ret[j + 2] = cp[(k >>>  6) & 0x3f];
+      ret[j + 3] = cp[k          & 0x3f];
+      i += 3;
+      j += 4;
     }
-
-    for (int l = len - pLen; l < len; l++) {
-      ret[l] = '=';
+    final int rem = len % 3;
+    if (rem > 0) {
+      final int k = (val[i] & 0xff) << 16 | (rem == 2 ? (val[i + 1] & 0xff) << 8 : 0);
+      ret[j++] = cp[(k >>> 18) & 0x3f];
+      ret[j++] = cp[(k >>> 12) & 0x3f];
+      if (rem == 2) {
+        ret[j++] = cp[(k >>> 6) & 0x3f];
+      }
+      if (!noPadding) {
+        ret[j++] = '=';
+        if (rem == 1) {
+          ret[j] = '=';
+        }
+      }
     }
-    return String.valueOf((noPadding)
-        ? Arrays.copyOfRange(ret, 0, len - pLen)
-        : ret);
+    return String.valueOf(ret);
   }
 
   /**
@@ -165,7 +393,7 @@ public final class Base64Support {
    * @return an URL and file save Base64 String
    */
   public static String base64UfsEncode(byte[] val) {
-    return base64Encode(BASE64UFS_ALPHABET, val, false);
+    return base64Encode(val, true, false);
   }
 
   /**
@@ -176,50 +404,111 @@ public final class Base64Support {
    * @return an URL encoded Base64 String without padding
    */
   public static String base64UrlEncode(byte[] val) {
-    return base64Encode(BASE64UFS_ALPHABET, val, true);
+    return base64Encode(val, true, true);
   }
 
   /**
    * Parses Base64 and Base64 UFS (URL and file save Base64 with or without padding).
    * @param val a String value
    * @return the parsed byte array or an empty byte array
+   * @throws IllegalArgumentException on an invalid Base64 length or character
    */
   public static byte[] base64Decode(String val) {
     if (val == null) {
       return new byte[0];
     }
-    char[] arr = val.toCharArray();
-    int padLen = b64PadLen(arr);
-    int cPadLen = b64SkippedPadLen(arr, padLen);
-    if (cPadLen != padLen) {
-      char[] tmp = new char[arr.length + cPadLen];
-      System.arraycopy(arr, 0, tmp, 0, arr.length);
-      for (int i = arr.length; i < tmp.length; i++) {
-        tmp[i] = '=';
-      }
-      padLen = cPadLen;
-      arr = tmp;
-    }
-    int len = (3 * arr.length / 4);
-    int rLen = len - padLen;
-    byte[] tmp = new byte[len];
-    byte[] ret = new byte[rLen];
-    for (int i = 0, j = 0; i < arr.length; i += 4, j += 3) {
-      int l = i + 1;
-      int m = i + 2;
-      int n = i + 3;
-      int o = ((b64CpIndexOf(arr[i], i, rLen) & 0x3f) << 18)
-          |   ((b64CpIndexOf(arr[l], l, rLen) & 0x3f) << 12)
-          |   ((b64CpIndexOf(arr[m], m, rLen) & 0x3f) << 6)
-          |    (b64CpIndexOf(arr[n], n, rLen) & 0x3f);
-      tmp[j]     = (byte)((o >>> 16) & 0xff);
-      tmp[j + 1] = (byte)((o >>>  8) & 0xff);
-      tmp[j + 2] = (byte)(o          & 0xff);
-    }
-    System.arraycopy(tmp, 0, ret, 0, rLen);
+    final int len = val.length();
+    final int dLen = base64DecodedLength(val, 0, len);
+    if (dLen < 0) {
+      throw new IllegalArgumentException(String.format("Invalid Base64 length: %1$d!", len));
+    }
+    final byte[] ret = new byte[dLen];
+    decode(val, 0, len, ret, 0);
+    return ret;
+  }
+
+  /**
+   * Decodes a Base64 or Base64 UFS character range (with or without padding)
+   * into the destination buffer without intermediate arrays.
+   * @param src the source characters
+   * @param off the offset of the Base64 range
+   * @param len the length of the Base64 range
+   * @param dst the destination buffer with at least base64DecodedLength bytes from dstOff
+   * @param dstOff the destination offset
+   * @return the number of decoded bytes
+   * @throws IllegalArgumentException on an invalid Base64 length or character
+   */
+  public static int decode(CharSequence src, int off, int len, byte[] dst, int dstOff) {
+    final int ret = tryDecode(src, off, len, dst, dstOff);
+    if (ret < 0) {
+      final int pos = -ret - 1;
+      throw new IllegalArgumentException(
+          String.format("Invalid character: '%1$c' at position %2$d!", src.charAt(pos), pos));
+    }
     return ret;
   }
 
+  /**
+   * Calculates the decoded length of a Base64 or Base64 UFS character range
+   * with or without padding.
+   * @param src the source characters
+   * @param off the offset of the Base64 range
+   * @param len the length of the Base64 range
+   * @return the decoded length or -1 if the range length is not a valid Base64 length
+   */
+  public static int base64DecodedLength(CharSequence src, int off, int len) {
+    final int n = len - b64PadLen(src, off, len);
+    final int rem = n & 3;
+    if (rem == 1 || (rem == 0 && n != len)) {
+      return -1;
+    }
+    return (n >>> 2) * 3 + (rem == 0 ? 0 : rem - 1);
+  }
+
+  /*
+   * Decodes a Base64 or Base64 UFS character range into dst without intermediate arrays.
+   * Returns the number of decoded bytes or -(position + 1) of the first invalid character.
+   */
+  static int tryDecode(CharSequence src, int off, int len, byte[] dst, int dstOff) {
+    final int n = len - b64PadLen(src, off, len);
+    final int end = off + n;
+    int i = off;
+    int j = dstOff;
+    while (end - i >= 4) {
+      final int a = b64Value(src.charAt(i));
+      final int b = b64Value(src.charAt(i + 1));
+      final int c = b64Value(src.charAt(i + 2));
+      final int d = b64Value(src.charAt(i + 3));
+      if ((a | b | c | d) < 0) {
+        return -(invalidPos(src, i, 4) + 1);
+      }
+      final int k = a << 18 | b << 12 | c << 6 | d;
+      dst[j]     = (byte) (k >>> 16);
+      dst[j + 1] = (byte) (k >>> 8);
+      dst[j + 2] = (byte) k;
+      i += 4;
+      j += 3;
+    }
+    final int rem = end - i;
+    if (rem == 1) {
+      return -(i + 1);
+    }
+    if (rem > 1) {
+      final int a = b64Value(src.charAt(i));
+      final int b = b64Value(src.charAt(i + 1));
+      final int c = rem == 3 ? b64Value(src.charAt(i + 2)) : 0;
+      if ((a | b | c) < 0) {
+        return -(invalidPos(src, i, rem) + 1);
+      }
+      final int k = a << 18 | b << 12 | c << 6;
+      dst[j++] = (byte) (k >>> 16);
+      if (rem == 3) {
+        dst[j++] = (byte) (k >>> 8);
+      }
+    }
+    return j - dstOff;
+  }
+
   /*
    * Calculates the required Base64 String length.
    * @param val a byte array
@@ -229,46 +518,164 @@ public final class Base64Support {
     return (4 * (val.length + 2 - ((val.length + 2) % 3))) / 3;
   }
 
-  private static int b64PadLen(byte[] val) {
-    return (3 - (val.length  % 3)) % 3;
+  private static int b64Len(int len, boolean noPadding) {
+    final int rem = len % 3;
+    return (len / 3) * 4 + (rem == 0 ? 0 : (noPadding ? rem + 1 : 4));
   }
 
-  private static int b64PadLen(char[] val) {
-    int ret = 0;
-    if (val[val.length - 1] == '=') {
-      ret++;
+  /* returns the Latin-1 LOOKUP_TABLE */
+  static byte[] alphabet(boolean ufSafe) {
+    return ufSafe ? BASE64UFS_BYTES : BASE64_BYTES;
+  }
+
+  private static boolean isLineBreak(char c) {
+    return c == '\r' || c == '\n';
+  }
+
+  private static void checkCrPos(int crPos) {
+    if (crPos <= 0) {
+      throw new IllegalArgumentException(String.format("Invalid CR position: %1$d!", crPos));
     }
-    if (val[val.length - 2] == '=') {
-      ret++;
+  }
+
+  private static byte[] reverse(char[]... alphabets) {
+    final byte[] ret = new byte[0x100];
+    Arrays.fill(ret, (byte) -1);
+    for (char[] cp : alphabets) {
+      for (int i = 0; i < cp.length; i++) {
+        ret[cp[i]] = (byte) i;
+      }
     }
     return ret;
   }
 
-  /* returns the Code Point index or throws an InvalidArgumentException if not found */
-  private static int b64CpIndexOf(char val, int pos, int rLen) {
-    final int i = val;
-    if (i == 0x2b || i == 0x2d) {
-      return 0x3e;
+  private static byte[] latin1(char[] cp) {
+    final byte[] ret = new byte[cp.length];
+    for (int i = 0; i < cp.length; i++) {
+      ret[i] = (byte) cp[i];
     }
-    if (i == 0x2f || i == 0x5f) {
-      return 0x3f;
+    return ret;
+  }
+
+  private static int b64PadLen(CharSequence src, int off, int len) {
+    int ret = 0;
+    while (ret < 2 && ret < len && src.charAt(off + len - 1 - ret) == '=') {
+      ret++;
     }
-    if (i > 0x2f && i < 0x3a)   {
-      return 0x34 + i - 0x30;
+    return ret;
+  }
+
+  /* returns the strict Code Point index of both alphabets or -1 */
+  static int b64Value(char c) {
+    return c < 0x100 ? BASE64_REVERSE[c] : -1;
+  }
+
+  private static int invalidPos(CharSequence src, int off, int len) {
+    for (int i = off; i < off + len; i++) {
+      if (b64Value(src.charAt(i)) < 0) {
+        return i;
+      }
     }
-    if (i > 0x40 && i < 0x5b)   {
-      return i - 0x41;
+    return off;
+  }
+
+  /* inserts CRLF before the next character once crPos characters of a line are written */
+  private static final class WrappingWriter extends FilterWriter {
+    private final int crPos;
+    private int column;
+
+    WrappingWriter(Writer out, int crPos) {
+      super(out);
+      this.crPos = crPos;
     }
-    if (i > 0x60 && i < 0x7b)   {
-      return 0x1a + i - 0x61;
+
+    @Override
+    public void write(int c) throws IOException {
+      if (column == crPos) {
+        out.write(CRLF);
+        column = 0;
+      }
+      out.write(c);
+      column++;
     }
-    if (i == '"' && i <= rLen)  {
-      throw new IllegalArgumentException(String.format("Invalid character: '%1$c' at position %2$d!", val, pos));
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+      final int end = off + len;
+      while (off < end) {
+        if (column == crPos) {
+          out.write(CRLF);
+          column = 0;
+        }
+        final int n = Math.min(crPos - column, end - off);
+        out.write(cbuf, off, n);
+        column += n;
+        off += n;
+      }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+      final int end = off + len;
+      while (off < end) {
+        if (column == crPos) {
+          out.write(CRLF);
+          column = 0;
+        }
+        final int n = Math.min(crPos - column, end - off);
+        out.write(str, off, n);
+        column += n;
+        off += n;
+      }
     }
-    return 0;
   }
 
-  private static int b64SkippedPadLen(char[] val, int padLen) {
-    return (padLen > 0) ? padLen : (4 - val.length % 4) % 4;
+  /* forwards everything except CR and LF */
+  private static final class UnwrappingWriter extends FilterWriter {
+
+    UnwrappingWriter(Writer out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+      if (!isLineBreak((char) c)) {
+        out.write(c);
+      }
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+      final int end = off + len;
+      int start = off;
+      for (int i = off; i < end; i++) {
+        if (isLineBreak(cbuf[i])) {
+          if (i > start) {
+            out.write(cbuf, start, i - start);
+          }
+          start = i + 1;
+        }
+      }
+      if (end > start) {
+        out.write(cbuf, start, end - start);
+      }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+      final int end = off + len;
+      int start = off;
+      for (int i = off; i < end; i++) {
+        if (isLineBreak(str.charAt(i))) {
+          if (i > start) {
+            out.write(str, start, i - start);
+          }
+          start = i + 1;
+        }
+      }
+      if (end > start) {
+        out.write(str, start, end - start);
+      }
+    }
   }
 }
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.liquer.pencil.encoder.support;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * A PasswordEncoder that encodes and matches lists of passwords, e.g. for bulk imports or migrations.
+ * The lists are split into contiguous ranges, each range is processed by one thread
+ * with the per thread state of the encoder, so that implementations can generate the
+ * salt values of a range at once and reuse their digest and buffer state across the items.
+ * The ranges run in the calling thread or fan out over a supplied Executor,
+ * a ForkJoinPool (e.g. the common pool of the parallel streams) is a suitable Executor.
+ * The results are returned in input order.
+ *
+ * @author sius
+ */
+public interface BatchPasswordEncoder extends PasswordEncoder {
+
+  /**
+   * Encode the raw passwords in the calling thread.
+   * @param rawPasswords the plain text passwords, null elements are encoded as null
+   * @return the unmodifiable list of encoded passwords in input order
+   * @throws IllegalArgumentException if the list is null
+   */
+  default List<String> encodeAll(List<? extends CharSequence> rawPasswords) {
+    return encodeAll(rawPasswords, null);
+  }
+
+  /**
+   * Encode the raw passwords, ranges of the list are encoded concurrently by the executor.
+   * @param rawPasswords the plain text passwords, null elements are encoded as null
+   * @param executor the Executor or null to encode in the calling thread
+   * @return the unmodifiable list of encoded passwords in input order
+   * @throws IllegalArgumentException if the list is null
+   */
+  default List<String> encodeAll(List<? extends CharSequence> rawPasswords, Executor executor) {
+    if (rawPasswords == null) {
+      throw new IllegalArgumentException("Null raw passwords!");
+    }
+    final String[] ret = new String[rawPasswords.size()];
+    fanOut(ret.length, executor, (from, to) -> encodeRange(rawPasswords, from, to, ret));
+    return Collections.unmodifiableList(Arrays.asList(ret));
+  }
+
+  /**
+   * Match the password pairs in the calling thread.
+   * @param passwords the raw and encoded password pairs, null elements do not match
+   * @return the unmodifiable list of the match results in input order
+   * @throws IllegalArgumentException if the list is null
+   */
+  default List<Boolean> matchesAll(List<PasswordPair> passwords) {
+    return matchesAll(passwords, null);
+  }
+
+  /**
+   * Match the password pairs, ranges of the list are matched concurrently by the executor.
+   * @param passwords the raw and encoded password pairs, null elements do not match
+   * @param executor the Executor or null to match in the calling thread
+   * @return the unmodifiable list of the match results in input order
+   * @throws IllegalArgumentException if the list is null
+   */
+  default List<Boolean> matchesAll(List<PasswordPair> passwords, Executor executor) {
+    if (passwords == null) {
+      throw new IllegalArgumentException("Null passwords!");
+    }
+    final boolean[] matches = new boolean[passwords.size()];
+    fanOut(matches.length, executor, (from, to) -> matchesRange(passwords, from, to, matches));
+    final Boolean[] ret = new Boolean[matches.length];
+    for (int i = 0; i < ret.length; i++) {
+      ret[i] = matches[i];
+    }
+    return Collections.unmodifiableList(Arrays.asList(ret));
+  }
+
+  /**
+   * Encode the raw passwords of the range [from, to) into the same positions of the result array.
+   * Disjoint ranges of a batch may be encoded concurrently, a range is encoded by one thread.
+   * @param rawPasswords the plain text passwords
+   * @param from the first index (inclusive)
+   * @param to the last index (exclusive)
+   * @param ret the result array of the batch
+   */
+  default void encodeRange(List<? extends CharSequence> rawPasswords, int from, int to, String[] ret) {
+    for (int i = from; i < to; i++) {
+      ret[i] = encode(rawPasswords.get(i));
+    }
+  }
+
+  /**
+   * Match the password pairs of the range [from, to) into the same positions of the result array.
+   * Disjoint ranges of a batch may be matched concurrently, a range is matched by one thread.
+   * @param passwords the raw and encoded password pairs
+   * @param from the first index (inclusive)
+   * @param to the last index (exclusive)
+   * @param ret the result array of the batch
+   */
+  default void matchesRange(List<PasswordPair> passwords, int from, int to, boolean[] ret) {
+    for (int i = from; i < to; i++) {
+      final PasswordPair pair = passwords.get(i);
+      ret[i] = pair != null && matches(pair.getRawPassword(), pair.getEncodedPassword());
+    }
+  }
+
+  /* runs the range task in the calling thread or up to 4 ranges per processor on the executor */
+  private static void fanOut(int size, Executor executor, BiConsumer<Integer, Integer> task) {
+    final int ranges = executor == null
+        ? Math.min(size, 1)
+        : Math.min(size, Runtime.getRuntime().availableProcessors() * 4);
+    if (ranges <= 1) {
+      task.accept(0, size);
+      return;
+    }
+    final CompletableFuture<?>[] futures = new CompletableFuture<?>[ranges];
+    for (int i = 0; i < ranges; i++) {
+      final int from = (int) ((long) size * i / ranges);
+      final int to = (int) ((long) size * (i + 1) / ranges);
+      futures[i] = CompletableFuture.runAsync(() -> task.accept(from, to), executor);
+    }
+    try {
+      CompletableFuture.allOf(futures).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+}
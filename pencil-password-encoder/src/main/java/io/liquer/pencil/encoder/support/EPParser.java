@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.liquer.pencil.encoder.support;
+
+import java.util.Set;
+
+/**
+ * An allocation free flyweight parser for encoded passwords
+ * (identifier/encodeId, hash, salt) that works on offsets into the
+ * encoded CharSequence and decodes into caller provided buffers.
+ * Malformed or foreign encoded passwords are rejected structurally,
+ * before anything is decoded or hashed.
+ * An EPParser is not thread safe, reuse one instance per thread.
+ *
+ * @author sius
+ */
+public final class EPParser {
+
+  private final String[] supportedIdentifiers;
+  private final int hashSize;
+
+  private CharSequence encodedPassword;
+  private int identifierEnd;
+  private int payloadStart;
+  private int decodedLength;
+
+  /**
+   * Creates a reusable parser.
+   * @param supportedIdentifiers a set with case sensitive encode identifiers
+   * @param hashSize the algorithm specific hashSize (0 to accept any payload length)
+   */
+  public EPParser(Set<String> supportedIdentifiers, int hashSize) {
+    this.supportedIdentifiers = supportedIdentifiers == null
+        ? new String[0]
+        : supportedIdentifiers.toArray(new String[0]);
+    this.hashSize = Math.max(hashSize, 0);
+  }
+
+  /**
+   * Parse the encoded password with the same identifier rules as {@link EPSplit}.
+   * @param encodedPassword the encoded password
+   * @return true if the identifier is supported and the payload
+   *     has a valid Base64 length of at least hashSize bytes
+   */
+  public boolean parse(CharSequence encodedPassword) {
+    this.encodedPassword = null;
+    if (encodedPassword == null || supportedIdentifiers.length == 0) {
+      return false;
+    }
+    final int len = encodedPassword.length();
+    final int start = indexOf(encodedPassword, '{');
+    final int end = indexOf(encodedPassword, '}');
+    if (start == 0 && end >= 1) {
+      if (!isSupported(encodedPassword, end + 1)) {
+        return false;
+      }
+      identifierEnd = end + 1;
+    } else if ((start + end) != -1) {
+      identifierEnd = 0;
+    } else {
+      return false;
+    }
+    payloadStart = end + 1;
+    decodedLength = Base64Support.base64DecodedLength(encodedPassword, payloadStart, len - payloadStart);
+    if (decodedLength < hashSize) {
+      return false;
+    }
+    this.encodedPassword = encodedPassword;
+    return true;
+  }
+
+  /**
+   * Decode the payload (hash followed by salt) of the last parsed encoded password.
+   * @param dst the destination buffer with at least decodedLength bytes from dstOff
+   * @param dstOff the destination offset
+   * @return the decoded length or -1 if the payload contains a non Base64 character
+   */
+  public int decode(byte[] dst, int dstOff) {
+    if (encodedPassword == null) {
+      return -1;
+    }
+    final int ret = Base64Support.tryDecode(
+        encodedPassword, payloadStart, encodedPassword.length() - payloadStart, dst, dstOff);
+    return ret < 0 ? -1 : ret;
+  }
+
+  /**
+   * The end of the identifier span, the identifier span always starts at 0.
+   * @return the exclusive end index of the identifier, 0 for an empty identifier
+   */
+  public int getIdentifierEnd() {
+    return identifierEnd;
+  }
+
+  /**
+   * The start of the Base64 payload span, the payload span ends with the encoded password.
+   * @return the start index of the payload
+   */
+  public int getPayloadStart() {
+    return payloadStart;
+  }
+
+  /**
+   * The decoded payload length of the last parsed encoded password.
+   * @return the decoded payload length (hashSize + saltSize)
+   */
+  public int getDecodedLength() {
+    return decodedLength;
+  }
+
+  /**
+   * The algorithm specific hash size.
+   * @return the hash size
+   */
+  public int getHashSize() {
+    return hashSize;
+  }
+
+  /**
+   * The salt size of the last parsed encoded password.
+   * @return the salt size
+   */
+  public int getSaltSize() {
+    return decodedLength - hashSize;
+  }
+
+  private boolean isSupported(CharSequence seq, int len) {
+    for (String identifier : supportedIdentifiers) {
+      if (regionEquals(identifier, seq, len)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean regionEquals(String identifier, CharSequence seq, int len) {
+    if (identifier.length() != len) {
+      return false;
+    }
+    for (int i = 0; i < len; i++) {
+      if (identifier.charAt(i) != seq.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int indexOf(CharSequence seq, char c) {
+    for (int i = 0, len = seq.length(); i < len; i++) {
+      if (seq.charAt(i) == c) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
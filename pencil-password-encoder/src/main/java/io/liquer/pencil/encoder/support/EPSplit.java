@@ -18,6 +18,7 @@
 
 package io.liquer.pencil.encoder.support;
 
+import java.util.Arrays;
 import java.util.Set;
 
 public final class EPSplit {
@@ -62,9 +63,8 @@ public final class EPSplit {
         final byte[] raw = Base64Support
             .base64Decode(encodedPassword.substring(end + 1));
         final int saltSize = raw.length - hashSize;
-        hash = new byte[hashSize];
+        hash = Arrays.copyOf(raw, Math.min(raw.length, hashSize));
         salt = new byte[Math.max(saltSize, 0)];
-        System.arraycopy(raw, 0, hash, 0, hashSize);
         if (saltSize > 0) {
           System.arraycopy(raw, hashSize, salt, 0, saltSize);
         }
@@ -95,6 +95,21 @@ public final class EPSplit {
     return prefixedSalt;
   }
 
+  /**
+   * Get the hash part.
+   * The hash part is shorter than the algorithm specific hashSize
+   * if the encoded password is truncated.
+   * @return the hash part
+   */
+  public byte[] getHash() {
+    byte[] ret = null;
+    if (hash != null) {
+      ret = new byte[hash.length];
+      System.arraycopy(hash, 0, ret, 0, ret.length);
+    }
+    return ret;
+  }
+
   /**
    * Get the salt part.
    * @return the salt part
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.encoder.support;
+
+/**
+ * Structural validation of encoded passwords without matching a raw password,
+ * e.g. to tell malformed or foreign stored hashes apart from wrong passwords.
+ *
+ * @author sius
+ */
+@FunctionalInterface
+public interface EncodedPasswordValidator {
+
+  /**
+   * Test whether the encoded password could have been produced by this encoder.
+   * @param encodedPassword the encoded password
+   * @return true if identifier and payload are well formed
+   */
+  boolean isWellFormed(String encodedPassword);
+}
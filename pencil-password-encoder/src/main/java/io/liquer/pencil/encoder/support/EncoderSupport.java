@@ -22,6 +22,9 @@ import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
 
 /**
  * Internal support class with common helper methods.
@@ -31,19 +34,141 @@ public final class EncoderSupport {
   /**
    * Convert a CharSequence to a byte array
    * with charset specific code points.
+   * UTF-8, ISO-8859-1 and US-ASCII are converted in a single pass
+   * into an exactly sized array, any intermediate buffer is zeroed.
    * @param seq the CharSequence
    * @param charset the Charset
    * @return the byte array representation
+   * @throws IllegalArgumentException if the CharSequence is not encodable with the Charset
    */
   public static byte[] encode(CharSequence seq, Charset charset) {
+    if (StandardCharsets.UTF_8.equals(charset)) {
+      final byte[] ret = new byte[utf8Length(seq)];
+      utf8(seq, 0, seq.length(), ret, 0);
+      return ret;
+    }
+    if (StandardCharsets.ISO_8859_1.equals(charset)) {
+      return singleByte(seq, 0xff);
+    }
+    if (StandardCharsets.US_ASCII.equals(charset)) {
+      return singleByte(seq, 0x7f);
+    }
+    ByteBuffer bytes = null;
     try {
-      final ByteBuffer bytes = charset.newEncoder().encode(CharBuffer.wrap(seq));
+      bytes = charset.newEncoder().encode(CharBuffer.wrap(seq));
       byte[] copy = new byte[bytes.limit()];
       System.arraycopy(bytes.array(), 0, copy, 0, bytes.limit());
       return copy;
     } catch (CharacterCodingException e) {
       throw new IllegalArgumentException("Encoding failed", e);
+    } finally {
+      if (bytes != null) {
+        Arrays.fill(bytes.array(), (byte) 0);
+      }
+    }
+  }
+
+  /**
+   * Feed the UTF-8 representation of a CharSequence into a MessageDigest
+   * without materializing it, the scratch buffer is zeroed afterwards.
+   * @param md the MessageDigest
+   * @param seq the CharSequence
+   * @param scratch a reusable scratch buffer with a minimum size of 4 bytes
+   * @throws IllegalArgumentException on unpaired surrogates
+   */
+  public static void updateUtf8(MessageDigest md, CharSequence seq, byte[] scratch) {
+    final int len = seq.length();
+    // every char is encoded with at most 3 bytes, a surrogate pair with 4
+    final int chunk = Math.max(scratch.length / 3 - 1, 1);
+    try {
+      int i = 0;
+      while (i < len) {
+        int end = Math.min(i + chunk, len);
+        if (end < len && Character.isHighSurrogate(seq.charAt(end - 1))) {
+          end++;
+        }
+        md.update(scratch, 0, utf8(seq, i, end, scratch, 0));
+        i = end;
+      }
+    } finally {
+      Arrays.fill(scratch, (byte) 0);
+    }
+  }
+
+  /**
+   * Calculate the UTF-8 byte length of a CharSequence.
+   * @param seq the CharSequence
+   * @return the UTF-8 byte length
+   * @throws IllegalArgumentException on unpaired surrogates
+   */
+  public static int utf8Length(CharSequence seq) {
+    final int len = seq.length();
+    int ret = len;
+    for (int i = 0; i < len; i++) {
+      final char c = seq.charAt(i);
+      if (c >= 0x80) {
+        if (c < 0x800) {
+          ret++;
+        } else if (Character.isSurrogate(c)) {
+          checkSurrogatePair(seq, i, len);
+          ret += 2;
+          i++;
+        } else {
+          ret += 2;
+        }
+      }
     }
+    return ret;
+  }
+
+  /* encodes seq[start, end) as UTF-8 into dst and returns the number of bytes written */
+  private static int utf8(CharSequence seq, int start, int end, byte[] dst, int off) {
+    int j = off;
+    for (int i = start; i < end; i++) {
+      final char c = seq.charAt(i);
+      if (c < 0x80) {
+        dst[j++] = (byte) c;
+      } else if (c < 0x800) {
+        dst[j++] = (byte) (0xc0 | c >> 6);
+        dst[j++] = (byte) (0x80 | c & 0x3f);
+      } else if (Character.isSurrogate(c)) {
+        checkSurrogatePair(seq, i, end);
+        final int cp = Character.toCodePoint(c, seq.charAt(++i));
+        dst[j++] = (byte) (0xf0 | cp >> 18);
+        dst[j++] = (byte) (0x80 | cp >> 12 & 0x3f);
+        dst[j++] = (byte) (0x80 | cp >> 6 & 0x3f);
+        dst[j++] = (byte) (0x80 | cp & 0x3f);
+      } else {
+        dst[j++] = (byte) (0xe0 | c >> 12);
+        dst[j++] = (byte) (0x80 | c >> 6 & 0x3f);
+        dst[j++] = (byte) (0x80 | c & 0x3f);
+      }
+    }
+    return j - off;
+  }
+
+  private static void checkSurrogatePair(CharSequence seq, int i, int end) {
+    if (!Character.isHighSurrogate(seq.charAt(i))
+        || i + 1 >= end
+        || !Character.isLowSurrogate(seq.charAt(i + 1))) {
+      throw new IllegalArgumentException(
+          String.format("Encoding failed: unpaired surrogate at position %1$d", i));
+    }
+  }
+
+  private static byte[] singleByte(CharSequence seq, int max) {
+    final int len = seq.length();
+    final byte[] ret = new byte[len];
+    for (int i = 0; i < len; i++) {
+      final char c = seq.charAt(i);
+      if (c > max) {
+        Arrays.fill(ret, (byte) 0);
+        throw new IllegalArgumentException(
+            String.format("Encoding failed: unmappable character at position %1$d", i));
+      }
+      ret[i] = (byte) c;
+    }
+    return ret;
   }
 
   /**
@@ -59,6 +184,23 @@ public final class EncoderSupport {
     return c;
   }
 
+  /**
+   * Compare two byte array ranges in constant time.
+   * @param a first byte array
+   * @param aOff first byte array offset
+   * @param b second byte array
+   * @param bOff second byte array offset
+   * @param len the range length
+   * @return true if both ranges are equal
+   */
+  public static boolean isEqual(byte[] a, int aOff, byte[] b, int bOff, int len) {
+    int diff = 0;
+    for (int i = 0; i < len; i++) {
+      diff |= a[aOff + i] ^ b[bOff + i];
+    }
+    return diff == 0;
+  }
+
   /**
    * Test a CharSequence for null an empty.
    * @param s the tested CharSequence
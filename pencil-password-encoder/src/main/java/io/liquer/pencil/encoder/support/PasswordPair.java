@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.liquer.pencil.encoder.support;
+
+/**
+ * A raw password and the encoded password it should match,
+ * see {@link BatchPasswordEncoder#matchesAll(java.util.List)}.
+ *
+ * @author sius
+ */
+public final class PasswordPair {
+
+  private final CharSequence rawPassword;
+  private final String encodedPassword;
+
+  /**
+   * Creates a raw and encoded password pair.
+   * @param rawPassword plain text password
+   * @param encodedPassword the encoded password
+   */
+  public PasswordPair(CharSequence rawPassword, String encodedPassword) {
+    this.rawPassword = rawPassword;
+    this.encodedPassword = encodedPassword;
+  }
+
+  public CharSequence getRawPassword() {
+    return rawPassword;
+  }
+
+  public String getEncodedPassword() {
+    return encodedPassword;
+  }
+}
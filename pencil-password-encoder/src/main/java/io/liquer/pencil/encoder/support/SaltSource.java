@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.liquer.pencil.encoder.support;
+
+/**
+ * A source of random salt values.
+ * Implementations must be safe for concurrent use by multiple threads.
+ *
+ * @author sius
+ */
+@FunctionalInterface
+public interface SaltSource {
+
+  /**
+   * Fill the salt byte array with random bytes.
+   * @param salt the salt byte array to fill
+   */
+  void nextSalt(byte[] salt);
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.liquer.pencil.encoder.support;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Internal support class with the shared SaltSource strategies.
+ *
+ * @author sius
+ */
+public final class SaltSources {
+
+  /**
+   * The available SaltSource strategies.
+   */
+  public enum Type {
+
+    /**
+     * One SecureRandom shared by all threads, all callers are serialized on its lock.
+     */
+    SHARED,
+
+    /**
+     * One SecureRandom per thread, seeded once per thread.
+     */
+    THREAD_LOCAL,
+
+    /**
+     * Salts are sliced lock-free from random blocks that are filled in bulk
+     * by a background thread, the best choice for many (virtual) threads.
+     */
+    PREFETCH
+  }
+
+  private static final String DRBG_ALGORITHM = "DRBG";
+
+  private SaltSources() { }
+
+  /**
+   * Get the SaltSource for the specified strategy.
+   * @param type the SaltSource strategy (default: THREAD_LOCAL)
+   * @return the shared SaltSource
+   */
+  public static SaltSource of(Type type) {
+    if (type == null) {
+      return defaultSource();
+    }
+    switch (type) {
+      case SHARED:
+        return shared();
+      case PREFETCH:
+        return prefetch();
+      default:
+        return threadLocal();
+    }
+  }
+
+  /**
+   * The default SaltSource.
+   * @return the thread local SaltSource
+   */
+  public static SaltSource defaultSource() {
+    return threadLocal();
+  }
+
+  /**
+   * A SaltSource backed by one SecureRandom shared by all threads.
+   * @return the shared SaltSource
+   */
+  public static SaltSource shared() {
+    return SharedHolder.INSTANCE;
+  }
+
+  /**
+   * A SaltSource backed by one SecureRandom per thread.
+   * @return the thread local SaltSource
+   */
+  public static SaltSource threadLocal() {
+    return ThreadLocalHolder.INSTANCE;
+  }
+
+  /**
+   * A SaltSource that slices salts from prefetched random blocks.
+   * @return the prefetching SaltSource
+   */
+  public static SaltSource prefetch() {
+    return PrefetchHolder.INSTANCE;
+  }
+
+  /*
+   * Prefers the DRBG on Java 9+, it is thread safe, but nextBytes is synchronized,
+   * so a shared instance still serializes its callers.
+   */
+  static SecureRandom newSecureRandom() {
+    try {
+      return SecureRandom.getInstance(DRBG_ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      return new SecureRandom();
+    }
+  }
+
+  private static final class SharedHolder {
+    private static final SecureRandom RANDOM = newSecureRandom();
+    private static final SaltSource INSTANCE = salt -> {
+      if (salt.length > 0) {
+        RANDOM.nextBytes(salt);
+      }
+    };
+  }
+
+  private static final class ThreadLocalHolder {
+    private static final ThreadLocal<SecureRandom> RANDOM =
+        ThreadLocal.withInitial(SaltSources::newSecureRandom);
+    private static final SaltSource INSTANCE = salt -> {
+      if (salt.length > 0) {
+        RANDOM.get().nextBytes(salt);
+      }
+    };
+  }
+
+  private static final class PrefetchHolder {
+    private static final SaltSource INSTANCE = new PrefetchSaltSource(4096, 4);
+  }
+
+  /**
+   * Slices salts from random blocks with a lock-free claim on the current block.
+   * Exhausted blocks are replaced from a queue that is refilled by a single daemon thread,
+   * an empty queue falls back to the thread local SaltSource instead of waiting.
+   */
+  static final class PrefetchSaltSource implements SaltSource {
+
+    private final int blockSize;
+    private final int readyBlocks;
+    private final SecureRandom random = newSecureRandom();
+    private final AtomicReference<Block> current;
+    private final ConcurrentLinkedQueue<byte[]> ready = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger readyCount = new AtomicInteger();
+    private final AtomicBoolean refilling = new AtomicBoolean();
+    private final ExecutorService refiller = Executors.newSingleThreadExecutor(r -> {
+      final Thread t = new Thread(r, "pencil-salt-prefetch");
+      t.setDaemon(true);
+      return t;
+    });
+
+    PrefetchSaltSource(int blockSize, int readyBlocks) {
+      this.blockSize = blockSize;
+      this.readyBlocks = readyBlocks;
+      this.current = new AtomicReference<>(new Block(fill()));
+      refill();
+    }
+
+    @Override
+    public void nextSalt(byte[] salt) {
+      final int len = salt.length;
+      if (len == 0) {
+        return;
+      }
+      if (len > blockSize) {
+        threadLocal().nextSalt(salt);
+        return;
+      }
+      for (;;) {
+        final Block block = current.get();
+        final int off = block.claim(len);
+        if (off >= 0) {
+          System.arraycopy(block.data, off, salt, 0, len);
+          return;
+        }
+        final byte[] next = ready.poll();
+        if (next == null) {
+          refill();
+          threadLocal().nextSalt(salt);
+          return;
+        }
+        readyCount.decrementAndGet();
+        if (!current.compareAndSet(block, new Block(next))) {
+          offer(next);
+        }
+        refill();
+      }
+    }
+
+    private void refill() {
+      if (readyCount.get() < readyBlocks && refilling.compareAndSet(false, true)) {
+        refiller.execute(() -> {
+          try {
+            while (readyCount.get() < readyBlocks) {
+              offer(fill());
+            }
+          } finally {
+            refilling.set(false);
+          }
+        });
+      }
+    }
+
+    private void offer(byte[] block) {
+      ready.offer(block);
+      readyCount.incrementAndGet();
+    }
+
+    private byte[] fill() {
+      final byte[] block = new byte[blockSize];
+      random.nextBytes(block);
+      return block;
+    }
+  }
+
+  private static final class Block {
+    private final byte[] data;
+    private final AtomicInteger offset = new AtomicInteger();
+
+    Block(byte[] data) {
+      this.data = data;
+    }
+
+    /* returns the claimed offset or -1 if the block is exhausted */
+    int claim(int len) {
+      final int off = offset.getAndAdd(len);
+      return off + len <= data.length ? off : -1;
+    }
+  }
+}
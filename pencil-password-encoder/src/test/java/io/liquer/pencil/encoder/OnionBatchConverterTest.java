@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.encoder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author sius
+ */
+public class OnionBatchConverterTest {
+
+  private final OnionBatchConverter converter = new OnionBatchConverter(4);
+
+  @Test
+  void legacy_hashes_should_be_converted_in_input_order() {
+    final PasswordEncoder[] encoders = {
+        new SSHAPasswordEncoder(), new SSHA224PasswordEncoder(), new SSHA256PasswordEncoder("{SSHA-256}", 8),
+        new SSHA384PasswordEncoder(), new SSHA512PasswordEncoder()
+    };
+    final String[] ids = {"SSHA", "SSHA224", "SSHA256", "SSHA384", "SSHA512"};
+    final List<String> legacy = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      legacy.add(i % 10 == 9 ? "{bcrypt}$2a$04$" + i : encoders[i % 5].encode("password-" + i));
+    }
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    final List<String> onions;
+    try {
+      onions = converter.convertAll(legacy, pool);
+    } finally {
+      pool.shutdown();
+    }
+
+    assertThat(onions).hasSameSizeAs(legacy);
+    for (int i = 0; i < onions.size(); i++) {
+      if (i % 10 == 9) {
+        assertThat(onions.get(i)).isNull();
+        continue;
+      }
+      final OnionPasswordEncoder verifier = new OnionPasswordEncoder(ids[i % 5]);
+      assertThat(onions.get(i)).startsWith("{bcrypt+" + ids[i % 5] + "}");
+      assertThat(verifier.matches("password-" + i, onions.get(i))).isTrue();
+      assertThat(verifier.matches("password-" + (i + 1), onions.get(i))).isFalse();
+    }
+  }
+
+  @Test
+  void other_values_should_not_be_converted() {
+    assertThat(converter.convertAll(Arrays.asList(null, "", "secret", "{SHA}abc", "{SSHA512}!!!")))
+        .containsExactly(null, null, null, null, null);
+  }
+
+  @Test
+  void illegal_strength_should_throw() {
+    assertThatThrownBy(() -> new OnionBatchConverter(-1)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new OnionBatchConverter(32)).isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.encoder;
+
+import io.liquer.pencil.encoder.support.PasswordPair;
+import io.liquer.pencil.encoder.support.SaltSources;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author sius
+ */
+public class OnionPasswordEncoderTest {
+
+  private static final String RAW_PASSWORD = "Xx3vuFMXVGSQS413";
+  private static final String SSHA512 =
+      "{SSHA512}/I5AfKcK9Nl0sMXDVF8pM8KkmZRrvUEwnI4oUAI1EKikMbgzw+ykujnOgeza3FGuYtBq32XZJ306DPQHR5avuTAwOGRiMGVi";
+
+  @Test
+  void encoded_passwords_should_match() {
+    for (String id : new String[] {"SSHA", "SSHA224", "SSHA256", "SSHA384", "SSHA512"}) {
+      final OnionPasswordEncoder encoder = encoder(id, null);
+      final String encoded = encoder.encode(RAW_PASSWORD);
+      assertThat(encoded).startsWith("{bcrypt+" + id + "}");
+      assertThat(encoder.matches(RAW_PASSWORD, encoded)).isTrue();
+      assertThat(encoder.matches("wrong", encoded)).isFalse();
+    }
+  }
+
+  @Test
+  void wrapped_legacy_hashes_should_match() {
+    final OnionPasswordEncoder encoder = encoder("SSHA512", null);
+    final String onion = encoder.wrap(SSHA512);
+    assertThat(onion).startsWith("{bcrypt+SSHA512}MDA4ZGIwZWI=$2a$04$");
+    assertThat(encoder.matches(RAW_PASSWORD, onion)).isTrue();
+    assertThat(encoder.matches("wrong", onion)).isFalse();
+    assertThat(encoder.matches(RAW_PASSWORD, onion.replace("{bcrypt+SSHA512}", "{bcrypt+SSHA-512}"))).isTrue();
+    assertThat(encoder.wrap(new SSHA512PasswordEncoder("{SSHA-512}", 8).encode(RAW_PASSWORD))).isNotNull();
+  }
+
+  @Test
+  void empty_identifier_should_match_the_payload() {
+    final OnionPasswordEncoder encoder = encoder("SSHA-256", "");
+    final String encoded = encoder.encode(RAW_PASSWORD);
+    assertThat(encoded).doesNotStartWith("{");
+    assertThat(encoder.matches(RAW_PASSWORD, encoded)).isTrue();
+  }
+
+  @Test
+  void other_values_should_not_match_or_wrap() {
+    final OnionPasswordEncoder encoder = encoder("SSHA512", null);
+    assertThat(encoder.matches(null, SSHA512)).isFalse();
+    assertThat(encoder.matches(RAW_PASSWORD, null)).isFalse();
+    assertThat(encoder.matches(RAW_PASSWORD, SSHA512)).isFalse();
+    assertThat(encoder.matches(RAW_PASSWORD, "{bcrypt+SSHA512}no-bcrypt")).isFalse();
+    assertThat(encoder.matches(RAW_PASSWORD, "{bcrypt+SSHA512}!$2a$04$")).isFalse();
+    assertThat(encoder.encode(null)).isNull();
+    assertThat(encoder.wrap(null)).isNull();
+    assertThat(encoder.wrap("secret")).isNull();
+    assertThat(encoder.wrap(new SSHA256PasswordEncoder().encode(RAW_PASSWORD))).isNull();
+    assertThat(encoder.wrap(new SSHA512PasswordEncoder("{SSHA512}", 0).encode(RAW_PASSWORD))).isNull();
+    assertThat(encoder.wrap("{SSHA512}dG9vIHNob3J0")).isNull();
+    assertThat(encoder.wrap("{SSHA512}!!!")).isNull();
+  }
+
+  @Test
+  void batch_encoded_passwords_should_match() {
+    final OnionPasswordEncoder encoder = encoder("SSHA512", null);
+    final List<String> raw = Arrays.asList("a", null, "b", "c", "d");
+    final List<String> encoded = encoder.encodeAll(raw, ForkJoinPool.commonPool());
+    assertThat(encoded.get(1)).isNull();
+    final List<PasswordPair> pairs = new ArrayList<>();
+    for (int i = 0; i < raw.size(); i++) {
+      pairs.add(new PasswordPair(i == 2 ? "wrong" : raw.get(i), encoded.get(i)));
+    }
+    assertThat(encoder.matchesAll(pairs)).containsExactly(true, false, false, true, true);
+    assertThat(encoded.get(0).substring(0, 28)).isNotEqualTo(encoded.get(3).substring(0, 28));
+  }
+
+  @Test
+  void weaker_bcrypt_should_be_upgraded() {
+    final String weak = encoder("SSHA512", null).encode(RAW_PASSWORD);
+    final OnionPasswordEncoder strong = new OnionPasswordEncoder("SSHA512", null, 8, 5, null);
+    assertThat(strong.upgradeEncoding(weak)).isTrue();
+    assertThat(strong.upgradeEncoding(null)).isFalse();
+    assertThat(strong.upgradeEncoding("{SSHA512}abc")).isFalse();
+    assertThat(strong.upgradeEncoding(strong.encode(RAW_PASSWORD))).isFalse();
+  }
+
+  @Test
+  void unsupported_arguments_should_throw() {
+    assertThatThrownBy(() -> new OnionPasswordEncoder("MD5")).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new OnionPasswordEncoder(null)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> encoder("SSHA", null, 32)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> encoder("SSHA", null, 3)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> encoder("SSHA", null, -1)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static OnionPasswordEncoder encoder(String id, String identifier) {
+    return encoder(id, identifier, 4);
+  }
+
+  private static OnionPasswordEncoder encoder(String id, String identifier, int strength) {
+    return new OnionPasswordEncoder(id, identifier, 8, strength, SaltSources.shared());
+  }
+}
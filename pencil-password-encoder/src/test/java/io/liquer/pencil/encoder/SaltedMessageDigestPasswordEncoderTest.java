@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.liquer.pencil.encoder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.liquer.pencil.encoder.support.PasswordPair;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author sius
+ */
+public class SaltedMessageDigestPasswordEncoderTest {
+
+  @Test
+  void unsupportedAlgorithmFailsOnConstruction() {
+    assertThrows(IllegalArgumentException.class, () ->
+        new SaltedMessageDigestPasswordEncoder(
+            "SHA-0", 20, Collections.singleton("{SHA0}"), "{SHA0}", 8, false, false, null) { });
+  }
+
+  @Test
+  void concurrentEncodeAndMatch() throws Exception {
+    final SSHA512PasswordEncoder encoder = new SSHA512PasswordEncoder();
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Callable<Boolean>> tasks = new ArrayList<>();
+      for (int i = 0; i < 64; i++) {
+        final String rawPassword = "test" + i;
+        tasks.add(() -> encoder.matches(rawPassword, encoder.encode(rawPassword)));
+      }
+      for (Future<Boolean> result : executor.invokeAll(tasks)) {
+        assertTrue(result.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void batchEncodeAndMatchKeepInputOrder() {
+    final SSHA512PasswordEncoder encoder = new SSHA512PasswordEncoder();
+    final List<String> rawPasswords = new ArrayList<>();
+    for (int i = 0; i < 3 * SaltedMessageDigestPasswordEncoder.SALT_BLOCK + 5; i++) {
+      rawPasswords.add(i == 7 ? null : "test" + i);
+    }
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      for (List<String> encoded : Arrays.asList(
+          encoder.encodeAll(rawPasswords), encoder.encodeAll(rawPasswords, executor))) {
+        assertEquals(rawPasswords.size(), encoded.size());
+        assertNull(encoded.get(7));
+        assertEquals(encoded.size(), new HashSet<>(encoded).size());
+        final List<PasswordPair> pairs = new ArrayList<>();
+        for (int i = 0; i < encoded.size(); i++) {
+          pairs.add(new PasswordPair(rawPasswords.get(i), encoded.get(i)));
+          assertTrue(i == 7 || encoder.matches(rawPasswords.get(i), encoded.get(i)));
+        }
+        pairs.set(3, new PasswordPair("tesT3", encoded.get(3)));
+        final List<Boolean> matches = encoder.matchesAll(pairs, executor);
+        for (int i = 0; i < matches.size(); i++) {
+          assertEquals(i != 3 && i != 7, matches.get(i));
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void wrongPasswordDoesNotMatch() {
+    final SSHA256PasswordEncoder encoder = new SSHA256PasswordEncoder();
+    assertFalse(encoder.matches("tesT", encoder.encode("test")));
+  }
+
+  @Test
+  void truncatedHashDoesNotMatch() {
+    final SSHA256PasswordEncoder encoder = new SSHA256PasswordEncoder();
+    final String encoded = encoder.encode("test");
+    assertFalse(encoder.matches("test", encoded.substring(0, 20)));
+    assertFalse(encoder.matches("test", SSHA256PasswordEncoder.SSHA256_SHORT_IDENTIFIER));
+  }
+
+  @Test
+  void unpaddedHashMatches() {
+    final SSHA224PasswordEncoder padded = new SSHA224PasswordEncoder(
+        SSHA224PasswordEncoder.SSHA224_SHORT_IDENTIFIER, 9, false, false);
+    final SSHA224PasswordEncoder unpadded = new SSHA224PasswordEncoder(
+        SSHA224PasswordEncoder.SSHA224_SHORT_IDENTIFIER, 9, true, true);
+    assertTrue(unpadded.matches("test", padded.encode("test")));
+    assertTrue(padded.matches("test", unpadded.encode("test")));
+  }
+
+  @Test
+  void wellFormedHashIsDetectedWithoutMatching() {
+    final SSHA256PasswordEncoder encoder = new SSHA256PasswordEncoder();
+    final String encoded = encoder.encode("test");
+    assertTrue(encoder.isWellFormed(encoded));
+    assertFalse(encoder.isWellFormed(encoded.substring(0, 20)));
+    assertFalse(encoder.isWellFormed("{SSHA512}" + encoded.substring(9)));
+    assertFalse(encoder.isWellFormed(encoded.substring(0, 12) + "*" + encoded.substring(13)));
+    assertFalse(encoder.isWellFormed(null));
+  }
+
+  @Test
+  void shorterSaltsShouldBeUpgraded() {
+    final SSHA256PasswordEncoder encoder = new SSHA256PasswordEncoder("{SSHA256}", 8);
+    final SSHA256PasswordEncoder weak = new SSHA256PasswordEncoder("{SSHA256}", 4);
+    assertFalse(encoder.upgradeEncoding(encoder.encode("test")));
+    assertTrue(encoder.upgradeEncoding(weak.encode("test")));
+    assertFalse(weak.upgradeEncoding(encoder.encode("test")));
+    assertFalse(encoder.upgradeEncoding("{SSHA256}!!!"));
+    assertFalse(encoder.upgradeEncoding(null));
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.encoder.jfr;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.liquer.pencil.encoder.SSHA512PasswordEncoder;
+import io.liquer.pencil.encoder.legacy.XORPasswordEncoder;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author sius
+ */
+public class PencilEventTest {
+
+  @Test
+  void disabled_events_should_not_be_created() {
+    assertThat(PencilEncodeEvent.start()).isNull();
+    assertThat(PencilMatchEvent.start()).isNull();
+    assertThat(PencilParseEvent.start()).isNull();
+    PencilEvent.complete(null, "SSHA512", "SHA-512", 8, PencilEvent.OK);
+  }
+
+  @Test
+  void encoders_should_emit_enabled_events() throws IOException {
+    final Path file = Files.createTempFile("pencil", ".jfr");
+    try {
+      try (Recording recording = new Recording()) {
+        recording.enable(PencilEncodeEvent.NAME).withThreshold(Duration.ZERO);
+        recording.enable(PencilMatchEvent.NAME).withThreshold(Duration.ZERO);
+        recording.enable(PencilParseEvent.NAME).withThreshold(Duration.ZERO);
+        recording.start();
+        final SSHA512PasswordEncoder ssha512 = new SSHA512PasswordEncoder();
+        final String encodedPassword = ssha512.encode("test");
+        ssha512.matches("test", encodedPassword);
+        ssha512.matches("tesT", encodedPassword);
+        ssha512.matches("test", "{SSHA512}!!!");
+        new XORPasswordEncoder().matches("Test", "{xor}CzosKw==");
+        recording.stop();
+        recording.dump(file);
+      }
+      final List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+
+      assertThat(outcomes(events, PencilEncodeEvent.NAME, "SHA-512")).containsExactly("ok");
+      assertThat(outcomes(events, PencilMatchEvent.NAME, "SHA-512"))
+          .containsExactly("match", "mismatch", "malformed");
+      assertThat(outcomes(events, PencilParseEvent.NAME, "SHA-512"))
+          .containsExactly("ok", "ok", "malformed");
+      assertThat(outcomes(events, PencilMatchEvent.NAME, "XOR")).containsExactly("match");
+
+      final RecordedEvent encode = events.stream()
+          .filter(e -> e.getEventType().getName().equals(PencilEncodeEvent.NAME))
+          .findFirst()
+          .orElseThrow(AssertionError::new);
+      assertThat(encode.getString("encodeId")).isEqualTo("SSHA512");
+      assertThat(encode.getInt("saltSize")).isEqualTo(8);
+      assertThat(encode.getDuration().isNegative()).isFalse();
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  void disabled_events_should_not_be_created_while_recording() {
+    try (Recording recording = new Recording()) {
+      recording.enable(PencilEncodeEvent.NAME).withThreshold(Duration.ZERO);
+      recording.start();
+      assertThat(PencilEncodeEvent.start()).isNotNull();
+      assertThat(PencilMatchEvent.start()).isNull();
+      assertThat(PencilParseEvent.start()).isNull();
+      recording.stop();
+    }
+  }
+
+  @Test
+  void failing_operations_should_emit_error_events() throws IOException {
+    final CharSequence failing = new FailingCharSequence();
+    final Path file = Files.createTempFile("pencil", ".jfr");
+    try {
+      try (Recording recording = new Recording()) {
+        recording.enable(PencilEncodeEvent.NAME).withThreshold(Duration.ZERO);
+        recording.enable(PencilMatchEvent.NAME).withThreshold(Duration.ZERO);
+        recording.start();
+        final SSHA512PasswordEncoder ssha512 = new SSHA512PasswordEncoder();
+        final String encodedPassword = ssha512.encode("test");
+        assertThatThrownBy(() -> ssha512.encode(failing)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> ssha512.matches(failing, encodedPassword))
+            .isInstanceOf(IllegalStateException.class);
+        final XORPasswordEncoder xor = new XORPasswordEncoder();
+        assertThatThrownBy(() -> xor.encode(failing)).isInstanceOf(IllegalStateException.class);
+        recording.stop();
+        recording.dump(file);
+      }
+      final List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+
+      assertThat(outcomes(events, PencilEncodeEvent.NAME, "SHA-512")).containsExactly("ok", "error");
+      assertThat(outcomes(events, PencilMatchEvent.NAME, "SHA-512")).containsExactly("error");
+      assertThat(outcomes(events, PencilEncodeEvent.NAME, "XOR")).containsExactly("error");
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private static List<String> outcomes(List<RecordedEvent> events, String name, String algorithm) {
+    return events.stream()
+        .filter(e -> e.getEventType().getName().equals(name))
+        .filter(e -> algorithm.equals(e.getString("algorithm")))
+        .sorted((a, b) -> a.getStartTime().compareTo(b.getStartTime()))
+        .map(e -> e.getString("outcome"))
+        .collect(Collectors.toList());
+  }
+
+  private static final class FailingCharSequence implements CharSequence {
+    @Override
+    public int length() {
+      return 4;
+    }
+
+    @Override
+    public char charAt(int index) {
+      throw new IllegalStateException("failing");
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      throw new IllegalStateException("failing");
+    }
+
+    @Override
+    public String toString() {
+      throw new IllegalStateException("failing");
+    }
+  }
+}
@@ -63,4 +63,67 @@ public class XORPasswordEncoderTest {
     final String encodedPassword = enc.encode(emptyPassword);
     Assertions.assertTrue(enc.matches(emptyPassword, encodedPassword));
   }
+
+  @Test
+  void wrong_password_should_not_match_encoded_password() {
+    final XORPasswordEncoder enc = new XORPasswordEncoder();
+    Assertions.assertFalse(enc.matches("Tesd", "{xor}CzosKw=="));
+    Assertions.assertFalse(enc.matches("Tes", "{xor}CzosKw=="));
+    Assertions.assertFalse(enc.matches(null, "{xor}CzosKw=="));
+  }
+
+  @ParameterizedTest(name = "encoded password {1} should decode to {0}")
+  @CsvSource({
+      "T         , {xor}Cw==            ",
+      "Test      , {xor}CzosKw==        ",
+      "Test:äöüß#, {xor}CzosK2W7qaOAfA==",
+  })
+  void encoded_password_should_decode_to_raw_password(String rawPassword, String encodedPassword) {
+    final XORPasswordEncoder enc = new XORPasswordEncoder();
+    Assertions.assertEquals(rawPassword, enc.decode(encodedPassword));
+    Assertions.assertEquals(rawPassword, enc.decode(enc.encode(rawPassword)));
+  }
+
+  @Test
+  void multi_byte_key_should_round_trip() {
+    final XORPasswordEncoder enc = new XORPasswordEncoder("secret", StandardCharsets.UTF_8);
+    final String encodedPassword = enc.encode("Test:äöüß#-longer-than-the-key");
+    Assertions.assertTrue(enc.matches("Test:äöüß#-longer-than-the-key", encodedPassword));
+    Assertions.assertEquals("Test:äöüß#-longer-than-the-key", enc.decode(encodedPassword));
+  }
+
+  @Test
+  void decode_should_reject_unsupported_or_malformed_encoded_password() {
+    final XORPasswordEncoder enc = new XORPasswordEncoder();
+    Assertions.assertNull(enc.decode(null));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> enc.decode("{sha}CzosKw=="));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> enc.decode("{xor}Czo*Kw=="));
+    Assertions.assertFalse(enc.matches("Test", "{xor}Czo*Kw=="));
+  }
+
+  @Test
+  void null_key_should_fall_back_to_default_key() {
+    final XORPasswordEncoder enc = new XORPasswordEncoder(null, null);
+    Assertions.assertTrue(enc.matches("Test", "{xor}CzosKw=="));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> new XORPasswordEncoder("", StandardCharsets.ISO_8859_1));
+  }
+
+  @Test
+  void well_formed_encoded_password_should_be_detected_without_matching() {
+    final XORPasswordEncoder enc = new XORPasswordEncoder();
+    Assertions.assertTrue(enc.isWellFormed("{xor}CzosKw=="));
+    Assertions.assertTrue(enc.isWellFormed("{xor}"));
+    Assertions.assertFalse(enc.isWellFormed("{xor}Czo*Kw=="));
+    Assertions.assertFalse(enc.isWellFormed("{sha}CzosKw=="));
+    Assertions.assertFalse(enc.isWellFormed(""));
+  }
+
+  @Test
+  void well_formed_encoded_password_should_be_upgraded() {
+    final XORPasswordEncoder enc = new XORPasswordEncoder();
+    Assertions.assertTrue(enc.upgradeEncoding("{xor}CzosKw=="));
+    Assertions.assertFalse(enc.upgradeEncoding("{sha}CzosKw=="));
+    Assertions.assertFalse(enc.upgradeEncoding(null));
+  }
 }
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.liquer.pencil.encoder.support;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+/**
+ * @author sius
+ */
+public class Base64StreamsTest {
+
+  private static byte[] random(int len) {
+    final byte[] ret = new byte[len];
+    new Random(len).nextBytes(ret);
+    return ret;
+  }
+
+  @ParameterizedTest(name = "chunked encoding with ufSafe={0}, noPadding={1}, crPos={2}")
+  @CsvSource({
+      "false, false, 0 ",
+      "true , true , 0 ",
+      "false, false, 76",
+      "true , false, 5 ",
+      "false, true , 1 ",
+  })
+  void encoder_should_equal_base64Encode(boolean ufSafe, boolean noPadding, int crPos) {
+    for (int len = 0; len < 50; len++) {
+      final byte[] val = random(len);
+      final String b64 = Base64Support.base64Encode(val, ufSafe, noPadding);
+      final String expected = crPos > 0 ? Base64Support.wrap(b64, crPos) : b64;
+
+      final Base64Encoder encoder = new Base64Encoder(ufSafe, noPadding, crPos);
+      final ByteBuffer src = ByteBuffer.wrap(val);
+      final CharBuffer dst = CharBuffer.allocate(expected.length());
+      final CharBuffer chunk = CharBuffer.allocate(3);
+      while (src.hasRemaining()) {
+        encoder.encode(src, chunk);
+        dst.put(chunk.flip());
+        chunk.clear();
+      }
+      while (!encoder.finish(chunk)) {
+        dst.put(chunk.flip());
+        chunk.clear();
+      }
+      dst.put(chunk.flip());
+      assertEquals(expected, dst.flip().toString());
+    }
+  }
+
+  @Test
+  void decoder_should_decode_wrapped_chunks() {
+    for (int len = 0; len < 50; len++) {
+      final byte[] val = random(len);
+      final String wrapped = Base64Support.wrap(Base64Support.base64UrlEncode(val), 7);
+      final Base64Decoder decoder = new Base64Decoder();
+      final CharBuffer src = CharBuffer.wrap(wrapped);
+      final ByteBuffer dst = ByteBuffer.allocate(len);
+      final ByteBuffer chunk = ByteBuffer.allocate(2);
+      while (src.hasRemaining()) {
+        decoder.decode(src, chunk);
+        dst.put(chunk.flip());
+        chunk.clear();
+      }
+      while (!decoder.finish(chunk)) {
+        dst.put(chunk.flip());
+        chunk.clear();
+      }
+      dst.put(chunk.flip());
+      assertArrayEquals(val, dst.array());
+    }
+  }
+
+  @Test
+  void decoder_should_reject_invalid_characters() {
+    final Base64Decoder decoder = new Base64Decoder();
+    final ByteBuffer dst = ByteBuffer.allocate(16);
+    final IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+        () -> decoder.decode(CharBuffer.wrap("Zm9v\r\nY*Fy"), dst));
+    assertEquals("Invalid character: '*' at position 7!", e.getMessage());
+    assertThrows(IllegalArgumentException.class,
+        () -> new Base64Decoder().decode(CharBuffer.wrap("Zg==Zg=="), dst));
+    final Base64Decoder incomplete = new Base64Decoder();
+    incomplete.decode(CharBuffer.wrap("Zm9vY"), ByteBuffer.allocate(16));
+    assertThrows(IllegalArgumentException.class, () -> incomplete.finish(ByteBuffer.allocate(16)));
+  }
+
+  @Test
+  void streams_should_round_trip_like_the_mime_codec() throws IOException {
+    final byte[] val = random(100_000);
+    final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    try (OutputStream out = Base64Support.encodingStream(encoded, false, false, 76)) {
+      for (int i = 0; i < val.length; i += 1000) {
+        out.write(val, i, 1000);
+      }
+    }
+    assertArrayEquals(Base64.getMimeEncoder().encode(val), encoded.toByteArray());
+
+    final ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+    try (InputStream in = Base64Support.decodingStream(new ByteArrayInputStream(encoded.toByteArray()))) {
+      final byte[] b = new byte[333];
+      int n;
+      while ((n = in.read(b)) >= 0) {
+        decoded.write(b, 0, n);
+      }
+    }
+    assertArrayEquals(val, decoded.toByteArray());
+  }
+
+  @Test
+  void channels_should_round_trip() throws IOException {
+    final byte[] val = random(50_000);
+    final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    try (WritableByteChannel out = Base64Support.encodingChannel(Channels.newChannel(encoded), true, true, 0)) {
+      out.write(ByteBuffer.wrap(val));
+    }
+    assertEquals(Base64.getUrlEncoder().withoutPadding().encodeToString(val),
+        new String(encoded.toByteArray(), StandardCharsets.US_ASCII));
+
+    final ByteBuffer decoded = ByteBuffer.allocate(val.length + 1);
+    try (ReadableByteChannel in = Base64Support.decodingChannel(
+        Channels.newChannel(new ByteArrayInputStream(encoded.toByteArray())))) {
+      while (in.read(decoded) >= 0) {
+        assertTrue(decoded.position() <= val.length);
+      }
+    }
+    assertEquals(val.length, decoded.position());
+    assertArrayEquals(val, Arrays.copyOf(decoded.array(), val.length));
+  }
+}
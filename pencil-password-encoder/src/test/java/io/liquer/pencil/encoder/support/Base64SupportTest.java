@@ -22,15 +22,27 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * @author sius
  */
 public class Base64SupportTest {
 
+  private static final char[] ALPHABET =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
   @Test
   public void test64Encode() {
     assertEquals("", Base64Support.base64Encode(new byte[0]));
@@ -84,4 +96,135 @@ public class Base64SupportTest {
     final String actual = new String(Base64Support.base64Decode(encoded), StandardCharsets.UTF_8);
     assertEquals(expected, actual);
   }
+
+  @ParameterizedTest(name = "base64 range {0} has decoded length {1}")
+  @CsvSource({
+      "''      , 0 ",
+      "Zg==    , 1 ",
+      "Zg      , 1 ",
+      "Zm8=    , 2 ",
+      "Zm9v    , 3 ",
+      "Zm9vY   , -1",
+      "Zm9v=   , -1",
+  })
+  public void base64DecodedLength(String encoded, int expected) {
+    assertEquals(expected, Base64Support.base64DecodedLength(encoded, 0, encoded.length()));
+  }
+
+  @Test
+  public void decode_should_report_invalid_position() {
+    assertEquals(-6, Base64Support.tryDecode("Zm9vY*Fy", 0, 8, new byte[6], 0));
+  }
+
+  @Test
+  public void base64Encode_should_be_identical_for_all_alphabets_and_padding_modes() {
+    final Random random = new Random(42);
+    for (int len = 0; len < 100; len++) {
+      final byte[] val = new byte[len];
+      random.nextBytes(val);
+      assertEquals(Base64.getEncoder().encodeToString(val), Base64Support.base64Encode(val));
+      assertEquals(Base64.getEncoder().withoutPadding().encodeToString(val),
+          Base64Support.base64Encode(val, false, true));
+      assertEquals(Base64.getUrlEncoder().encodeToString(val), Base64Support.base64UfsEncode(val));
+      assertEquals(Base64.getUrlEncoder().withoutPadding().encodeToString(val),
+          Base64Support.base64UrlEncode(val));
+      assertEquals(Base64.getEncoder().withoutPadding().encodeToString(val),
+          Base64Support.base64Encode(ALPHABET, val, true));
+    }
+  }
+
+  @Test
+  public void base64Encode_should_prepend_the_prefix() {
+    final byte[] val = "foobar".getBytes(StandardCharsets.US_ASCII);
+    assertEquals("{SSHA}Zm9vYg==", Base64Support.base64Encode("{SSHA}", val, 0, 4, false, false));
+    assertEquals("{SSHA}b29iYXI", Base64Support.base64Encode("{SSHA}", val, 1, 5, true, true));
+    assertEquals("{\u0416}Zm9v", Base64Support.base64Encode("{\u0416}", val, 0, 3, false, false));
+    assertEquals("Zm9v", Base64Support.base64Encode(null, val, 0, 3, false, false));
+  }
+
+  @Test
+  public void decode_should_accept_both_alphabets_into_buffer() {
+    final Random random = new Random(7);
+    for (int len = 0; len < 100; len++) {
+      final byte[] val = new byte[len];
+      random.nextBytes(val);
+      final String std = "{x}" + Base64.getEncoder().encodeToString(val);
+      final String ufs = Base64.getUrlEncoder().withoutPadding().encodeToString(val);
+      final byte[] dst = new byte[len + 2];
+      assertEquals(len, Base64Support.decode(std, 3, std.length() - 3, dst, 2));
+      assertArrayEquals(val, Arrays.copyOfRange(dst, 2, len + 2));
+      assertArrayEquals(val, Base64Support.base64Decode(ufs));
+    }
+  }
+
+  @ParameterizedTest(name = "invalid base64 value {0} should be rejected")
+  @CsvSource({
+      "Zm9v\"mFy",
+      "Zm9v mFy",
+      "Zm9vYmF\u00e4",
+      "Zm9vY",
+      "Zm9v=",
+  })
+  public void base64Decode_should_reject_invalid_values(String encoded) {
+    assertThrows(IllegalArgumentException.class, () -> Base64Support.base64Decode(encoded));
+  }
+
+  @Test
+  public void decode_should_report_the_invalid_position() {
+    final IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+        () -> Base64Support.decode("Zm9vYm*y", 0, 8, new byte[6], 0));
+    assertEquals("Invalid character: '*' at position 6!", e.getMessage());
+  }
+
+  @Test
+  public void wrap_should_break_every_crPos_characters() {
+    assertEquals("", Base64Support.wrap("", 4));
+    assertEquals("Zm9v", Base64Support.wrap("Zm9v", 4));
+    assertEquals("Zm9v\r\nYmFy", Base64Support.wrap("Zm9vYmFy", 4));
+    assertEquals("Zm9v\r\nYmFy\r\nYg", Base64Support.wrap("Zm9vYmFyYg", 4));
+    final String b64 = Base64Support.base64Encode(new byte[172]);
+    final String wrapped = Base64Support.b64Wrap(b64);
+    assertEquals(b64.length() + 6, wrapped.length());
+    for (String line : wrapped.split("\r\n")) {
+      assertTrue(line.length() <= 76);
+    }
+    assertEquals(b64, Base64Support.unwrap(wrapped));
+  }
+
+  @Test
+  public void unwrap_should_remove_all_line_breaks() {
+    assertEquals("Zm9vYmFy", Base64Support.unwrap("Zm9vYmFy"));
+    assertEquals("Zm9vYmFy", Base64Support.unwrap("\nZm9v\r\nYm\rFy\n"));
+  }
+
+  @Test
+  public void streaming_wrap_should_equal_wrap() throws IOException {
+    final String b64 = Base64Support.base64Encode(new byte[1000]);
+    final String wrapped = Base64Support.wrap(b64, 64);
+
+    final StringBuilder sb = new StringBuilder();
+    Base64Support.wrap(b64, 64, sb);
+    assertEquals(wrapped, sb.toString());
+
+    final StringWriter sw = new StringWriter();
+    try (Writer w = Base64Support.wrappingWriter(sw, 64)) {
+      for (int i = 0; i < b64.length(); i += 37) {
+        w.write(b64, i, Math.min(37, b64.length() - i));
+      }
+    }
+    assertEquals(wrapped, sw.toString());
+
+    final StringBuilder unwrapped = new StringBuilder();
+    Base64Support.unwrap(wrapped, unwrapped);
+    assertEquals(b64, unwrapped.toString());
+
+    final StringWriter uw = new StringWriter();
+    try (Writer w = Base64Support.unwrappingWriter(uw)) {
+      final char[] chars = wrapped.toCharArray();
+      for (int i = 0; i < chars.length; i += 41) {
+        w.write(chars, i, Math.min(41, chars.length - i));
+      }
+    }
+    assertEquals(b64, uw.toString());
+  }
 }
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.liquer.pencil.encoder.support;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author sius
+ */
+public class BatchPasswordEncoderTest {
+
+  /* reverses the raw password and records the encoding threads */
+  private static final class ReverseEncoder implements BatchPasswordEncoder {
+    private final Set<String> threads = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+      threads.add(Thread.currentThread().getName());
+      if ("crash".contentEquals(rawPassword)) {
+        throw new IllegalStateException("crash");
+      }
+      return new StringBuilder(rawPassword).reverse().toString();
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+      return encode(rawPassword).equals(encodedPassword);
+    }
+  }
+
+  @Test
+  void results_should_be_in_input_order() {
+    final ReverseEncoder encoder = new ReverseEncoder();
+    final List<String> raw = passwords(1000);
+    final List<String> encoded = encoder.encodeAll(raw, ForkJoinPool.commonPool());
+    assertThat(encoded).hasSize(raw.size());
+    for (int i = 0; i < raw.size(); i++) {
+      assertThat(encoded.get(i)).isEqualTo(new StringBuilder(raw.get(i)).reverse().toString());
+    }
+
+    final List<PasswordPair> pairs = new ArrayList<>();
+    for (int i = 0; i < raw.size(); i++) {
+      pairs.add(new PasswordPair(raw.get(i), i % 3 == 0 ? "wrong" : encoded.get(i)));
+    }
+    final List<Boolean> matches = encoder.matchesAll(pairs, ForkJoinPool.commonPool());
+    for (int i = 0; i < raw.size(); i++) {
+      assertThat(matches.get(i)).isEqualTo(i % 3 != 0);
+    }
+  }
+
+  @Test
+  void executor_should_encode_the_ranges() {
+    final ReverseEncoder encoder = new ReverseEncoder();
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      assertThat(encoder.encodeAll(passwords(64), executor)).hasSize(64);
+      assertThat(encoder.threads).doesNotContain(Thread.currentThread().getName());
+
+      encoder.threads.clear();
+      assertThat(encoder.encodeAll(passwords(64))).hasSize(64);
+      assertThat(encoder.threads).containsExactly(Thread.currentThread().getName());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void null_elements_and_empty_lists_should_be_accepted() {
+    final ReverseEncoder encoder = new ReverseEncoder();
+    assertThat(encoder.encodeAll(new ArrayList<>(), ForkJoinPool.commonPool())).isEmpty();
+    assertThat(encoder.matchesAll(new ArrayList<>())).isEmpty();
+    assertThat(encoder.matchesAll(Arrays.asList(null, new PasswordPair("ab", "ba"))))
+        .containsExactly(false, true);
+  }
+
+  @Test
+  void failures_should_be_rethrown() {
+    final ReverseEncoder encoder = new ReverseEncoder();
+    final List<String> raw = passwords(100);
+    raw.set(42, "crash");
+    assertThatThrownBy(() -> encoder.encodeAll(raw, ForkJoinPool.commonPool()))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessage("crash");
+    assertThatThrownBy(() -> encoder.encodeAll(null)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> encoder.matchesAll(null)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> encoder.encodeAll(raw))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  private static List<String> passwords(int size) {
+    final List<String> ret = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      ret.add("password-" + i);
+    }
+    return ret;
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.liquer.pencil.encoder.support;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * @author sius
+ */
+public class EPParserTest {
+
+  private static final Set<String> IDENTIFIERS = new HashSet<>(Arrays.asList("{SSHA}", "{SSHA1}", "{}"));
+
+  @Test
+  void parse_should_split_identifier_and_payload() {
+    final EPParser parser = new EPParser(IDENTIFIERS, 3);
+    assertTrue(parser.parse("{SSHA1}Zm9vYmFy"));
+    assertEquals(7, parser.getIdentifierEnd());
+    assertEquals(7, parser.getPayloadStart());
+    assertEquals(6, parser.getDecodedLength());
+    assertEquals(3, parser.getSaltSize());
+    final byte[] dst = new byte[8];
+    assertEquals(6, parser.decode(dst, 2));
+    assertArrayEquals("foobar".getBytes(StandardCharsets.US_ASCII), Arrays.copyOfRange(dst, 2, 8));
+  }
+
+  @Test
+  void parse_should_accept_empty_identifiers() {
+    final EPParser parser = new EPParser(IDENTIFIERS, 0);
+    assertTrue(parser.parse("Zm9vYg=="));
+    assertEquals(0, parser.getIdentifierEnd());
+    assertEquals(4, parser.getDecodedLength());
+    assertTrue(parser.parse("{}Zm9vYg"));
+    assertEquals(2, parser.getIdentifierEnd());
+    assertEquals(4, parser.getDecodedLength());
+  }
+
+  @ParameterizedTest(name = "{0} should be rejected before decoding")
+  @ValueSource(strings = {
+      "{SSHA256}Zm9vYmFy",
+      "{SSHA}Zm9vY",
+      "{SSHA}Zm9vYmFy=",
+      "{SSHA}Zg==",
+      "{SSHA",
+      "}Zm9vYmFy",
+  })
+  void parse_should_reject_malformed_or_foreign(String encodedPassword) {
+    final EPParser parser = new EPParser(IDENTIFIERS, 3);
+    assertFalse(parser.parse(encodedPassword));
+    assertEquals(-1, parser.decode(new byte[8], 0));
+  }
+
+  @Test
+  void decode_should_reject_invalid_characters() {
+    final EPParser parser = new EPParser(IDENTIFIERS, 3);
+    assertTrue(parser.parse("{SSHA}Zm9v\"mFy"));
+    assertEquals(-1, parser.decode(new byte[6], 0));
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.liquer.pencil.encoder.support;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * @author sius
+ */
+public class EncoderSupportTest {
+
+  private static final String[] PASSWORDS = {
+      "",
+      "Test",
+      "Test:äöüß#",
+      "!newPass1234",
+      "€Жé",
+      "🔑key🔒",
+      "0123456789abcdefghijklmnopqrstuvwxyzäöü€".repeat(20) + "🔑",
+  };
+
+  @ParameterizedTest(name = "{0} encoding should equal String.getBytes")
+  @ValueSource(strings = {"UTF-8", "ISO-8859-1", "US-ASCII", "UTF-16"})
+  void encode_should_equal_getBytes(String charsetName) {
+    final Charset charset = Charset.forName(charsetName);
+    for (String password : PASSWORDS) {
+      if (charset.newEncoder().canEncode(password)) {
+        assertArrayEquals(password.getBytes(charset), EncoderSupport.encode(password, charset));
+      } else {
+        assertThrows(IllegalArgumentException.class, () -> EncoderSupport.encode(password, charset));
+      }
+    }
+  }
+
+  @ParameterizedTest(name = "updateUtf8 with a {0} byte scratch buffer should equal the digest of getBytes")
+  @ValueSource(ints = {4, 7, 256})
+  void updateUtf8_should_equal_digest_of_getBytes(int scratchSize) throws NoSuchAlgorithmException {
+    final MessageDigest md = MessageDigest.getInstance("SHA-256");
+    final byte[] scratch = new byte[scratchSize];
+    for (String password : PASSWORDS) {
+      final byte[] expected = md.digest(password.getBytes(StandardCharsets.UTF_8));
+      EncoderSupport.updateUtf8(md, password, scratch);
+      assertArrayEquals(expected, md.digest());
+      assertArrayEquals(new byte[scratchSize], scratch);
+      assertEquals(password.getBytes(StandardCharsets.UTF_8).length, EncoderSupport.utf8Length(password));
+    }
+  }
+
+  @ParameterizedTest(name = "unpaired surrogates in {0} should fail")
+  @ValueSource(strings = {"a\ud83d", "\udd11a", "a\ud83db"})
+  void unpaired_surrogates_should_fail(String password) {
+    assertThrows(IllegalArgumentException.class,
+        () -> EncoderSupport.encode(password, StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.liquer.pencil.encoder.support;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/**
+ * @author sius
+ */
+public class SaltSourcesTest {
+
+  @ParameterizedTest(name = "{0} salt source should fill distinct salts")
+  @EnumSource(SaltSources.Type.class)
+  void salts_should_be_distinct(SaltSources.Type type) throws Exception {
+    final SaltSource saltSource = SaltSources.of(type);
+    final Set<ByteBuffer> salts = ConcurrentHashMap.newKeySet();
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Callable<Boolean>> tasks = new ArrayList<>();
+      for (int i = 0; i < 2000; i++) {
+        tasks.add(() -> {
+          final byte[] salt = new byte[16];
+          saltSource.nextSalt(salt);
+          return salts.add(ByteBuffer.wrap(salt));
+        });
+      }
+      for (Future<Boolean> result : executor.invokeAll(tasks)) {
+        assertTrue(result.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(2000, salts.size());
+  }
+
+  @Test
+  void prefetch_should_serve_salts_larger_than_a_block() {
+    final SaltSource saltSource = new SaltSources.PrefetchSaltSource(16, 1);
+    final byte[] salt = new byte[64];
+    saltSource.nextSalt(salt);
+    assertFalse(ByteBuffer.wrap(salt).equals(ByteBuffer.wrap(new byte[64])));
+  }
+
+  @Test
+  void null_type_should_be_the_default_source() {
+    assertSame(SaltSources.defaultSource(), SaltSources.of(null));
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.liquer.pencil.autoconfigure;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit that adapts to the measured latency (AIMD with a latency gradient).
+ * The baseline is the minimum latency that slowly drifts towards the current latency,
+ * samples within the tolerated multiple of the baseline increase the limit by one
+ * if at least half of the limit is in use, slower samples decrease the limit by the
+ * latency gradient (baseline * tolerance / latency), bounded by the backoff ratio and 0.5.
+ * Acquiring is a single CAS, samples are dropped while another thread updates the limit.
+ *
+ * @author sius
+ */
+final class AdaptiveLimiter {
+
+  private static final double BASELINE_DRIFT = 0.001;
+  private static final double MIN_DECREASE = 0.5;
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final double tolerance;
+  private final double backoffRatio;
+  private final AtomicInteger inflight = new AtomicInteger();
+  private final ReentrantLock lock = new ReentrantLock();
+  private volatile int limit;
+
+  /* guarded by lock */
+  private double estimatedLimit;
+  private double baselineNanos = Double.MAX_VALUE;
+
+  AdaptiveLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance, double backoffRatio) {
+    if (minLimit < 1 || maxLimit < minLimit) {
+      throw new IllegalArgumentException("Invalid limit bounds!");
+    }
+    if (tolerance < 1.0) {
+      throw new IllegalArgumentException("Tolerance must not be less than 1!");
+    }
+    if (backoffRatio <= 0.0 || backoffRatio >= 1.0) {
+      throw new IllegalArgumentException("Backoff ratio must be between 0 and 1 (exclusive)!");
+    }
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.tolerance = tolerance;
+    this.backoffRatio = backoffRatio;
+    this.estimatedLimit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    this.limit = (int) estimatedLimit;
+  }
+
+  /**
+   * Acquire a permit without waiting.
+   * @return the number of in-flight operations including this one or 0 if the limit is exceeded
+   */
+  int tryAcquire() {
+    for (;;) {
+      final int current = inflight.get();
+      if (current >= limit) {
+        return 0;
+      }
+      if (inflight.compareAndSet(current, current + 1)) {
+        return current + 1;
+      }
+    }
+  }
+
+  /**
+   * Release a permit and sample the latency.
+   * @param latencyNanos the latency of the operation
+   * @param inflightAtStart the in-flight operations returned by {@link #tryAcquire()}
+   */
+  void release(long latencyNanos, int inflightAtStart) {
+    inflight.decrementAndGet();
+    if (lock.tryLock()) {
+      try {
+        update(latencyNanos, inflightAtStart);
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Release a permit without sampling, e.g. if the operation failed.
+   */
+  void release() {
+    inflight.decrementAndGet();
+  }
+
+  int getLimit() {
+    return limit;
+  }
+
+  int getInflight() {
+    return inflight.get();
+  }
+
+  private void update(long latencyNanos, int inflightAtStart) {
+    final double latency = Math.max(latencyNanos, 1L);
+    if (latency < baselineNanos) {
+      baselineNanos = latency;
+    } else {
+      baselineNanos += (latency - baselineNanos) * BASELINE_DRIFT;
+    }
+    final double gradient = baselineNanos * tolerance / latency;
+    if (gradient < 1.0) {
+      estimatedLimit = Math.max(
+          minLimit, estimatedLimit * Math.max(MIN_DECREASE, Math.min(backoffRatio, gradient)));
+    } else if (inflightAtStart * 2 >= estimatedLimit) {
+      estimatedLimit = Math.min(maxLimit, estimatedLimit + 1.0);
+    }
+    limit = (int) estimatedLimit;
+  }
+}
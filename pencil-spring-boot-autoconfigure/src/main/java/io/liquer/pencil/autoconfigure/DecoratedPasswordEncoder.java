@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.liquer.pencil.autoconfigure;
+
+import io.liquer.pencil.encoder.support.BatchPasswordEncoder;
+import io.liquer.pencil.encoder.support.PasswordPair;
+import java.util.List;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * A PasswordEncoder wrapped by a {@link PencilPasswordEncoderDecorator},
+ * so that later decorators can still tell the cost class of the undecorated PasswordEncoder.
+ * Ranges are forwarded to a {@link BatchPasswordEncoder} delegate,
+ * decorators that record operations override the range methods to record once per range,
+ * the ranges of other delegates are encoded and matched one by one.
+ *
+ * @author sius
+ */
+interface DecoratedPasswordEncoder extends BatchPasswordEncoder {
+
+  /**
+   * The wrapped PasswordEncoder.
+   * @return the delegate, possibly decorated itself
+   */
+  PasswordEncoder getDelegate();
+
+  @Override
+  default void encodeRange(List<? extends CharSequence> rawPasswords, int from, int to, String[] ret) {
+    if (isBatch(getDelegate())) {
+      ((BatchPasswordEncoder) getDelegate()).encodeRange(rawPasswords, from, to, ret);
+    } else {
+      BatchPasswordEncoder.super.encodeRange(rawPasswords, from, to, ret);
+    }
+  }
+
+  @Override
+  default void matchesRange(List<PasswordPair> passwords, int from, int to, boolean[] ret) {
+    if (isBatch(getDelegate())) {
+      ((BatchPasswordEncoder) getDelegate()).matchesRange(passwords, from, to, ret);
+    } else {
+      BatchPasswordEncoder.super.matchesRange(passwords, from, to, ret);
+    }
+  }
+
+  /**
+   * Whether the ranges are passed on to the undecorated PasswordEncoder.
+   * @param passwordEncoder a possibly decorated PasswordEncoder
+   * @return true if the undecorated PasswordEncoder is a {@link BatchPasswordEncoder}
+   */
+  static boolean isBatch(PasswordEncoder passwordEncoder) {
+    return unwrap(passwordEncoder) instanceof BatchPasswordEncoder;
+  }
+
+  /**
+   * The undecorated PasswordEncoder of all decorator layers.
+   * @param passwordEncoder a possibly decorated PasswordEncoder
+   * @return the undecorated PasswordEncoder
+   */
+  static PasswordEncoder unwrap(PasswordEncoder passwordEncoder) {
+    PasswordEncoder ret = passwordEncoder;
+    while (ret instanceof DecoratedPasswordEncoder) {
+      ret = ((DecoratedPasswordEncoder) ret).getDelegate();
+    }
+    return ret;
+  }
+}
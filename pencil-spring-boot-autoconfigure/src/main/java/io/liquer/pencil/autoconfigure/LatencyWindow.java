@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.liquer.pencil.autoconfigure;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rolling sample of {@link #SIZE} recent latencies in nanoseconds.
+ * Every sample replaces a random slot, so that concurrent recordings spread over
+ * the cache lines of the window instead of contending on one cursor, the count is a striped {@link LongAdder}.
+ * Older samples decay exponentially, i.e. the window keeps mostly the latest few thousand samples,
+ * a snapshot may miss samples that are recorded concurrently.
+ *
+ * @author sius
+ */
+final class LatencyWindow {
+
+  static final int SIZE = 1024;
+
+  private static final long EMPTY = -1L;
+
+  private final AtomicLongArray samples = new AtomicLongArray(SIZE);
+  private final LongAdder count = new LongAdder();
+
+  LatencyWindow() {
+    for (int i = 0; i < SIZE; i++) {
+      samples.lazySet(i, EMPTY);
+    }
+  }
+
+  void record(long nanos) {
+    samples.lazySet(ThreadLocalRandom.current().nextInt(SIZE), Math.max(nanos, 0L));
+    count.increment();
+  }
+
+  long count() {
+    return count.sum();
+  }
+
+  /**
+   * The sorted samples of the window.
+   * @return the sorted samples, empty if nothing has been recorded
+   */
+  long[] snapshot() {
+    final long[] ret = new long[SIZE];
+    int len = 0;
+    for (int i = 0; i < SIZE; i++) {
+      final long sample = samples.get(i);
+      if (sample != EMPTY) {
+        ret[len++] = sample;
+      }
+    }
+    final long[] sorted = Arrays.copyOf(ret, len);
+    Arrays.sort(sorted);
+    return sorted;
+  }
+
+  /**
+   * The nearest-rank percentile of sorted samples.
+   * @param sorted the sorted samples
+   * @param percentile the percentile between 0 (exclusive) and 1 (inclusive)
+   * @return the percentile or 0 if there are no samples
+   */
+  static long percentile(long[] sorted, double percentile) {
+    if (sorted.length == 0) {
+      return 0L;
+    }
+    final int rank = (int) Math.ceil(percentile * sorted.length);
+    return sorted[Math.max(rank, 1) - 1];
+  }
+}
@@ -18,10 +18,14 @@
 
 package io.liquer.pencil.autoconfigure;
 
+import java.util.stream.Collectors;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 /**
@@ -29,16 +33,74 @@ import org.springframework.security.crypto.password.PasswordEncoder;
  * @author sius
  */
 @Configuration
-@ComponentScan(basePackageClasses= { PencilProperties.class })
+@ComponentScan(
+    basePackageClasses= { PencilProperties.class },
+    excludeFilters = @ComponentScan.Filter(type = FilterType.ANNOTATION, classes = Configuration.class))
 @ConditionalOnExpression("${liquer.pencil.enabled:true}")
 public class PencilAutoConfiguration {
 
   /**
    * Custom DelegatingPasswordEncoder Bean.
+   * @param properties the PencilProperties
+   * @param decorators the ordered PencilPasswordEncoderDecorator beans
    * @return the custom DelegatingPasswordEncoder
    */
   @Bean
-  public PasswordEncoder passwordEncoder(PencilProperties properties) {
-    return PencilPasswordEncoderFactory.passwordEncoder(properties);
+  public PasswordEncoder passwordEncoder(
+      PencilProperties properties,
+      ObjectProvider<PencilPasswordEncoderDecorator> decorators) {
+    return PencilPasswordEncoderFactory.passwordEncoder(
+        properties,
+        decorators.orderedStream().collect(Collectors.toList()));
+  }
+
+  /**
+   * JFR events for the PasswordEncoders without built-in events.
+   * @return the PencilJfrDecorator
+   */
+  @Bean
+  @ConditionalOnProperty(prefix = "liquer.pencil.jfr", name = "enabled", matchIfMissing = true)
+  public PencilJfrDecorator pencilJfrDecorator() {
+    return new PencilJfrDecorator();
+  }
+
+  /**
+   * Opt-in adaptive concurrency limits for matches.
+   * @param properties the PencilProperties
+   * @return the PencilLimiterDecorator
+   */
+  @Bean
+  @ConditionalOnProperty(prefix = "liquer.pencil.limiter", name = "enabled")
+  public PencilLimiterDecorator pencilLimiterDecorator(PencilProperties properties) {
+    return new PencilLimiterDecorator(properties.getLimiter());
+  }
+
+  /**
+   * Opt-in single-flight matches for the adaptive hashes.
+   * @return the PencilCoalescingDecorator
+   */
+  @Bean
+  @ConditionalOnProperty(prefix = "liquer.pencil.coalescing", name = "enabled")
+  public PencilCoalescingDecorator pencilCoalescingDecorator() {
+    return new PencilCoalescingDecorator();
+  }
+
+  /**
+   * Opt-in bounded executor for encode and matches off the request threads.
+   * @param properties the PencilProperties
+   * @param passwordEncoder the custom DelegatingPasswordEncoder
+   * @return the PencilHashingExecutor
+   */
+  @Bean
+  @ConditionalOnProperty(prefix = "liquer.pencil.executor", name = "enabled")
+  public PencilHashingExecutor pencilHashingExecutor(
+      PencilProperties properties,
+      PasswordEncoder passwordEncoder) {
+    final PencilProperties.Executor executor = properties.getExecutor();
+    return new PencilHashingExecutor(
+        passwordEncoder,
+        executor.getPoolSize(),
+        executor.getQueueCapacity(),
+        executor.getMaxQueueTime());
   }
 }
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.liquer.pencil.autoconfigure;
+
+import io.liquer.pencil.encoder.support.EncodedPasswordValidator;
+import io.liquer.pencil.encoder.support.EncoderSupport;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.springframework.core.Ordered;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Single-flight matches for the adaptive bcrypt, scrypt and pbkdf2 hashes:
+ * concurrent identical verifications share one hash computation and its result.
+ * Verifications are keyed by an HMAC-SHA256 of the encode id, the encoded and the raw password
+ * with a random in-memory key, the raw password is never kept.
+ * The cheap salted SHA and XOR PasswordEncoders are not worth coalescing and stay undecorated.
+ *
+ * @author sius
+ */
+public final class PencilCoalescingDecorator implements PencilPasswordEncoderDecorator, Ordered {
+
+  private static final String ALGORITHM = "HmacSHA256";
+
+  private final Map<Key, CompletableFuture<Boolean>> inflight = new ConcurrentHashMap<>();
+  private final LongAdder coalesced = new LongAdder();
+  private final ThreadLocal<Mac> macs;
+
+  /**
+   * Creates the coalescing decorator with a random HMAC key.
+   * @throws IllegalStateException if HmacSHA256 is not available
+   */
+  public PencilCoalescingDecorator() {
+    final byte[] key = new byte[32];
+    new SecureRandom().nextBytes(key);
+    final SecretKeySpec secretKey = new SecretKeySpec(key, ALGORITHM);
+    Arrays.fill(key, (byte) 0);
+    mac(secretKey);
+    this.macs = ThreadLocal.withInitial(() -> mac(secretKey));
+  }
+
+  private static Mac mac(SecretKeySpec secretKey) {
+    try {
+      final Mac ret = Mac.getInstance(ALGORITHM);
+      ret.init(secretKey);
+      return ret;
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(ALGORITHM + " is not available", e);
+    }
+  }
+
+  @Override
+  public PasswordEncoder decorate(String encodeId, PasswordEncoder passwordEncoder) {
+    if (DecoratedPasswordEncoder.unwrap(passwordEncoder) instanceof EncodedPasswordValidator) {
+      return passwordEncoder;
+    }
+    return new CoalescingPasswordEncoder(passwordEncoder, encodeId);
+  }
+
+  /* right after the limiter, so that coalesced verifications do not take limiter permits */
+  @Override
+  public int getOrder() {
+    return Ordered.HIGHEST_PRECEDENCE + 2;
+  }
+
+  /**
+   * The number of verifications that shared the hash computation of another one.
+   * @return the coalesced count
+   */
+  public long getCoalescedCount() {
+    return coalesced.sum();
+  }
+
+  int getInflightCount() {
+    return inflight.size();
+  }
+
+  private Key key(String encodeId, CharSequence rawPassword, String encodedPassword) {
+    final Mac mac = macs.get();
+    update(mac, EncoderSupport.encode(encodeId, StandardCharsets.UTF_8));
+    update(mac, EncoderSupport.encode(encodedPassword, StandardCharsets.UTF_8));
+    update(mac, EncoderSupport.encode(rawPassword, StandardCharsets.UTF_8));
+    return new Key(mac.doFinal());
+  }
+
+  /* length prefixed, so that the concatenation is unambiguous, the bytes are zeroed */
+  private static void update(Mac mac, byte[] bytes) {
+    final int len = bytes.length;
+    mac.update((byte) (len >>> 24));
+    mac.update((byte) (len >>> 16));
+    mac.update((byte) (len >>> 8));
+    mac.update((byte) len);
+    mac.update(bytes);
+    Arrays.fill(bytes, (byte) 0);
+  }
+
+  private final class CoalescingPasswordEncoder implements DecoratedPasswordEncoder {
+    private final PasswordEncoder delegate;
+    private final String encodeId;
+
+    CoalescingPasswordEncoder(PasswordEncoder delegate, String encodeId) {
+      this.delegate = delegate;
+      this.encodeId = encodeId;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+      return delegate.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+      if (rawPassword == null || encodedPassword == null) {
+        return delegate.matches(rawPassword, encodedPassword);
+      }
+      final Key key = key(encodeId, rawPassword, encodedPassword);
+      final CompletableFuture<Boolean> flight = new CompletableFuture<>();
+      final CompletableFuture<Boolean> leader = inflight.putIfAbsent(key, flight);
+      if (leader != null) {
+        coalesced.increment();
+        return join(leader);
+      }
+      try {
+        final boolean ret = delegate.matches(rawPassword, encodedPassword);
+        flight.complete(ret);
+        return ret;
+      } catch (Throwable e) {
+        flight.completeExceptionally(e);
+        throw e;
+      } finally {
+        inflight.remove(key, flight);
+      }
+    }
+
+    @Override
+    public PasswordEncoder getDelegate() {
+      return delegate;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+      return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private boolean join(CompletableFuture<Boolean> leader) {
+      try {
+        return leader.join();
+      } catch (CompletionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        if (e.getCause() instanceof Error) {
+          throw (Error) e.getCause();
+        }
+        throw e;
+      }
+    }
+  }
+
+  private static final class Key {
+    private final byte[] mac;
+    private final int hash;
+
+    Key(byte[] mac) {
+      this.mac = mac;
+      this.hash = Arrays.hashCode(mac);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Key && Arrays.equals(mac, ((Key) o).mac);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
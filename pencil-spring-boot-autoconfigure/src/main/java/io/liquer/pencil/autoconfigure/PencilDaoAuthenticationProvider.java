@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.liquer.pencil.autoconfigure;
+
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+
+/**
+ * DaoAuthenticationProvider that upgrades the password hash of a successful login
+ * asynchronously with the {@link PencilPasswordUpgrader}, if the PasswordEncoder
+ * reports the stored hash as outdated (e.g. {SSHA} with a bcrypt default encode id).
+ * Do not set a UserDetailsPasswordService, it would upgrade the hash synchronously as well.
+ *
+ * @author sius
+ */
+public class PencilDaoAuthenticationProvider extends DaoAuthenticationProvider {
+
+  private final PencilPasswordUpgrader upgrader;
+
+  /**
+   * Creates the authentication provider.
+   * @param upgrader the PencilPasswordUpgrader
+   */
+  public PencilDaoAuthenticationProvider(PencilPasswordUpgrader upgrader) {
+    this.upgrader = upgrader;
+  }
+
+  @Override
+  protected Authentication createSuccessAuthentication(
+      Object principal, Authentication authentication, UserDetails user) {
+    final Object credentials = authentication.getCredentials();
+    if (credentials != null && getPasswordEncoder().upgradeEncoding(user.getPassword())) {
+      upgrader.submit(user, credentials.toString());
+    }
+    return super.createSuccessAuthentication(principal, authentication, user);
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.liquer.pencil.autoconfigure;
+
+import io.liquer.pencil.encoder.support.BatchPasswordEncoder;
+import io.liquer.pencil.encoder.support.PasswordPair;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * The DelegatingPasswordEncoder with the batch API of {@link BatchPasswordEncoder}.
+ * Batches of the encode id and of matched encode ids with a {@link BatchPasswordEncoder}
+ * (e.g. the salted SHA encoders) are passed on as ranges, also through the decorators
+ * that record a range at once, all other passwords are encoded and matched one by one,
+ * so that decorated encoders still record every password.
+ *
+ * @author sius
+ */
+final class PencilDelegatingPasswordEncoder extends DelegatingPasswordEncoder
+    implements BatchPasswordEncoder {
+
+  private static final String PREFIX = "{";
+  private static final String SUFFIX = "}";
+
+  private final String idForEncode;
+  private final Map<String, PasswordEncoder> encoders;
+
+  PencilDelegatingPasswordEncoder(String idForEncode, Map<String, PasswordEncoder> encoders) {
+    super(idForEncode, encoders);
+    this.idForEncode = idForEncode;
+    this.encoders = encoders;
+  }
+
+  /**
+   * The decorated PasswordEncoders by encode id.
+   * @return an unmodifiable map of the PasswordEncoders by encode id in registration order
+   */
+  Map<String, PasswordEncoder> getEncoders() {
+    return Collections.unmodifiableMap(encoders);
+  }
+
+  @Override
+  public void encodeRange(List<? extends CharSequence> rawPasswords, int from, int to, String[] ret) {
+    final PasswordEncoder encoder = encoders.get(idForEncode);
+    if (!DecoratedPasswordEncoder.isBatch(encoder)) {
+      for (int i = from; i < to; i++) {
+        ret[i] = rawPasswords.get(i) == null ? null : encode(rawPasswords.get(i));
+      }
+      return;
+    }
+    ((BatchPasswordEncoder) encoder).encodeRange(rawPasswords, from, to, ret);
+    final String prefix = PREFIX + idForEncode + SUFFIX;
+    for (int i = from; i < to; i++) {
+      if (ret[i] != null) {
+        ret[i] = prefix + ret[i];
+      }
+    }
+  }
+
+  /**
+   * The pairs of a range are grouped by the BatchPasswordEncoder of their encode id,
+   * each group is matched as one range with the encode id prefix removed.
+   */
+  @Override
+  public void matchesRange(List<PasswordPair> passwords, int from, int to, boolean[] ret) {
+    final Map<BatchPasswordEncoder, Group> groups = new IdentityHashMap<>();
+    for (int i = from; i < to; i++) {
+      final PasswordPair pair = passwords.get(i);
+      final PasswordEncoder encoder = pair == null ? null : encoders.get(extractId(pair.getEncodedPassword()));
+      if (DecoratedPasswordEncoder.isBatch(encoder)) {
+        final String encodedPassword = pair.getEncodedPassword();
+        groups.computeIfAbsent((BatchPasswordEncoder) encoder, e -> new Group()).add(i,
+            new PasswordPair(pair.getRawPassword(),
+                encodedPassword.substring(encodedPassword.indexOf(SUFFIX) + 1)));
+      } else {
+        ret[i] = pair != null && matches(pair.getRawPassword(), pair.getEncodedPassword());
+      }
+    }
+    groups.forEach((encoder, group) -> {
+      final boolean[] matches = new boolean[group.pairs.size()];
+      encoder.matchesRange(group.pairs, 0, matches.length, matches);
+      for (int j = 0; j < matches.length; j++) {
+        ret[group.indexes.get(j)] = matches[j];
+      }
+    });
+  }
+
+  /* the encode id of {id}encodedPassword as extracted by the DelegatingPasswordEncoder */
+  private static String extractId(String encodedPassword) {
+    if (encodedPassword == null || !encodedPassword.startsWith(PREFIX)) {
+      return null;
+    }
+    final int end = encodedPassword.indexOf(SUFFIX);
+    return end < 0 ? null : encodedPassword.substring(PREFIX.length(), end);
+  }
+
+  /* the pairs of one BatchPasswordEncoder and their indexes in the batch */
+  private static final class Group {
+    private final List<Integer> indexes = new ArrayList<>();
+    private final List<PasswordPair> pairs = new ArrayList<>();
+
+    void add(int index, PasswordPair pair) {
+      indexes.add(index);
+      pairs.add(pair);
+    }
+  }
+}
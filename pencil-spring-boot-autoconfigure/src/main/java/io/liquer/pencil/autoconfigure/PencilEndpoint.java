@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.liquer.pencil.autoconfigure;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+/**
+ * The {@code pencil} actuator endpoint with the effective PencilProperties,
+ * the encode ids with their aliases and rolling latency percentiles
+ * and the distribution of the stored hash schemes seen in matches.
+ *
+ * @author sius
+ */
+@Endpoint(id = "pencil")
+public class PencilEndpoint {
+
+  private final PencilProperties properties;
+  private final PencilStatisticsDecorator statistics;
+
+  /**
+   * Creates the endpoint.
+   * @param properties the PencilProperties
+   * @param statistics the statistics of the custom DelegatingPasswordEncoder
+   */
+  public PencilEndpoint(PencilProperties properties, PencilStatisticsDecorator statistics) {
+    this.properties = properties;
+    this.statistics = statistics;
+  }
+
+  @ReadOperation
+  public PencilDescriptor pencil() {
+    final Map<String, EncoderDescriptor> encoders = new LinkedHashMap<>();
+    statistics.getAliases().forEach((id, aliases) -> encoders.put(id, encoder(id, aliases)));
+    encoders.put(
+        PencilPasswordEncoderDecorator.UNKNOWN_ENCODE_ID,
+        encoder(PencilPasswordEncoderDecorator.UNKNOWN_ENCODE_ID, Collections.emptyList()));
+    return new PencilDescriptor(properties, encoders, statistics.getSchemes());
+  }
+
+  private EncoderDescriptor encoder(String encodeId, List<String> aliases) {
+    return new EncoderDescriptor(
+        aliases,
+        LatencyDescriptor.of(statistics.encodeLatencies(encodeId)),
+        LatencyDescriptor.of(statistics.matchesLatencies(encodeId)));
+  }
+
+  /**
+   * Description of the custom DelegatingPasswordEncoder.
+   */
+  public static final class PencilDescriptor {
+
+    private final PencilProperties properties;
+    private final Map<String, EncoderDescriptor> encoders;
+    private final Map<String, Long> schemes;
+
+    PencilDescriptor(
+        PencilProperties properties,
+        Map<String, EncoderDescriptor> encoders,
+        Map<String, Long> schemes) {
+      this.properties = properties;
+      this.encoders = encoders;
+      this.schemes = schemes;
+    }
+
+    public PencilProperties getProperties() {
+      return properties;
+    }
+
+    public Map<String, EncoderDescriptor> getEncoders() {
+      return encoders;
+    }
+
+    public Map<String, Long> getSchemes() {
+      return schemes;
+    }
+  }
+
+  /**
+   * Description of a PasswordEncoder by encode id.
+   */
+  public static final class EncoderDescriptor {
+
+    private final List<String> aliases;
+    private final LatencyDescriptor encode;
+    private final LatencyDescriptor matches;
+
+    EncoderDescriptor(List<String> aliases, LatencyDescriptor encode, LatencyDescriptor matches) {
+      this.aliases = aliases;
+      this.encode = encode;
+      this.matches = matches;
+    }
+
+    public List<String> getAliases() {
+      return aliases;
+    }
+
+    public LatencyDescriptor getEncode() {
+      return encode;
+    }
+
+    public LatencyDescriptor getMatches() {
+      return matches;
+    }
+  }
+
+  /**
+   * Latency percentiles in milliseconds of a rolling sample of
+   * {@value LatencyWindow#SIZE} recent operations.
+   */
+  public static final class LatencyDescriptor {
+
+    private static final LatencyDescriptor EMPTY = new LatencyDescriptor(0L, new long[0]);
+
+    private final long count;
+    private final double p50;
+    private final double p90;
+    private final double p99;
+    private final double max;
+
+    private LatencyDescriptor(long count, long[] sorted) {
+      this.count = count;
+      this.p50 = millis(LatencyWindow.percentile(sorted, 0.5));
+      this.p90 = millis(LatencyWindow.percentile(sorted, 0.9));
+      this.p99 = millis(LatencyWindow.percentile(sorted, 0.99));
+      this.max = millis(LatencyWindow.percentile(sorted, 1.0));
+    }
+
+    static LatencyDescriptor of(LatencyWindow window) {
+      return window == null ? EMPTY : new LatencyDescriptor(window.count(), window.snapshot());
+    }
+
+    private static double millis(long nanos) {
+      return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public double getP50() {
+      return p50;
+    }
+
+    public double getP90() {
+      return p90;
+    }
+
+    public double getP99() {
+      return p99;
+    }
+
+    public double getMax() {
+      return max;
+    }
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.liquer.pencil.autoconfigure;
+
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * The optional auto-configuration of the {@code pencil} actuator endpoint
+ * for the custom PasswordEncoder Bean.
+ * @author sius
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnClass(Endpoint.class)
+@ConditionalOnExpression("${liquer.pencil.enabled:true}")
+@ConditionalOnAvailableEndpoint(endpoint = PencilEndpoint.class)
+public class PencilEndpointAutoConfiguration {
+
+  /**
+   * The statistics decorator for the custom DelegatingPasswordEncoder.
+   * @return the statistics decorator
+   */
+  @Bean
+  public PencilStatisticsDecorator pencilStatisticsDecorator() {
+    return new PencilStatisticsDecorator();
+  }
+
+  /**
+   * The {@code pencil} actuator endpoint.
+   * @param properties the PencilProperties
+   * @param statistics the statistics decorator
+   * @return the endpoint
+   */
+  @Bean
+  public PencilEndpoint pencilEndpoint(
+      PencilProperties properties, PencilStatisticsDecorator statistics) {
+    return new PencilEndpoint(properties, statistics);
+  }
+}
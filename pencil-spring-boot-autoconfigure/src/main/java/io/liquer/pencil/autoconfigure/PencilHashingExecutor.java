@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.liquer.pencil.autoconfigure;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Runs encode and matches of a PasswordEncoder on a dedicated bounded pool,
+ * so that expensive hashes (bcrypt, scrypt, pbkdf2) do not tie up request threads.
+ * The returned futures fail fast with a {@link RejectedExecutionException}
+ * if the queue is full or an operation waited longer than the maximum queue time,
+ * cancelled futures are skipped without hashing.
+ * The raw password must not be modified until the future is completed.
+ *
+ * @author sius
+ */
+public final class PencilHashingExecutor implements AutoCloseable {
+
+  private final PasswordEncoder passwordEncoder;
+  private final ThreadPoolExecutor executor;
+  private final long maxQueueNanos;
+  private final LongSupplier nanoTime;
+  private final LongAdder rejected = new LongAdder();
+
+  /**
+   * Creates the hashing executor.
+   * @param passwordEncoder the PasswordEncoder
+   * @param poolSize the number of hashing threads, 0 for the number of available processors
+   * @param queueCapacity the maximum number of queued operations
+   * @param maxQueueTime the maximum time an operation may wait in the queue
+   * @throws IllegalArgumentException if the pool size is negative, the queue capacity
+   *     is not positive or the maximum queue time is null or negative
+   */
+  public PencilHashingExecutor(
+      PasswordEncoder passwordEncoder, int poolSize, int queueCapacity, Duration maxQueueTime) {
+    this(passwordEncoder, poolSize, queueCapacity, maxQueueTime, System::nanoTime);
+  }
+
+  PencilHashingExecutor(
+      PasswordEncoder passwordEncoder,
+      int poolSize,
+      int queueCapacity,
+      Duration maxQueueTime,
+      LongSupplier nanoTime) {
+    if (poolSize < 0) {
+      throw new IllegalArgumentException("Negative pool size!");
+    }
+    if (queueCapacity < 1) {
+      throw new IllegalArgumentException("Queue capacity must be positive!");
+    }
+    if (maxQueueTime == null || maxQueueTime.isNegative()) {
+      throw new IllegalArgumentException("Invalid maximum queue time!");
+    }
+    final int threads = poolSize == 0 ? Runtime.getRuntime().availableProcessors() : poolSize;
+    this.passwordEncoder = passwordEncoder;
+    this.maxQueueNanos = maxQueueTime.toNanos();
+    this.nanoTime = nanoTime;
+    this.executor = new ThreadPoolExecutor(
+        threads,
+        threads,
+        0L,
+        TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity),
+        new HashingThreadFactory(),
+        new ThreadPoolExecutor.AbortPolicy());
+    executor.prestartAllCoreThreads();
+  }
+
+  /**
+   * Encode the raw password on the hashing pool.
+   * @param rawPassword the raw password
+   * @return the future encoded password
+   */
+  public CompletableFuture<String> encode(CharSequence rawPassword) {
+    return submit(() -> passwordEncoder.encode(rawPassword));
+  }
+
+  /**
+   * Verify the raw password on the hashing pool.
+   * @param rawPassword the raw password
+   * @param encodedPassword the encoded password
+   * @return the future result
+   */
+  public CompletableFuture<Boolean> matches(CharSequence rawPassword, String encodedPassword) {
+    return submit(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+  }
+
+  /**
+   * The number of queued operations.
+   * @return the queue size
+   */
+  public int getQueueSize() {
+    return executor.getQueue().size();
+  }
+
+  /**
+   * The number of operations rejected because of a full queue or the maximum queue time.
+   * @return the rejected count
+   */
+  public long getRejectedCount() {
+    return rejected.sum();
+  }
+
+  /**
+   * Stop accepting operations, queued operations are still completed.
+   */
+  @Override
+  public void close() {
+    executor.shutdown();
+  }
+
+  private <T> CompletableFuture<T> submit(Supplier<T> operation) {
+    final HashingTask<T> task = new HashingTask<>(operation, nanoTime.getAsLong());
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException e) {
+      rejected.increment();
+      task.future.completeExceptionally(e);
+    }
+    return task.future;
+  }
+
+  private final class HashingTask<T> implements Runnable {
+    private final CompletableFuture<T> future = new CompletableFuture<>();
+    private final Supplier<T> operation;
+    private final long enqueued;
+
+    HashingTask(Supplier<T> operation, long enqueued) {
+      this.operation = operation;
+      this.enqueued = enqueued;
+    }
+
+    @Override
+    public void run() {
+      if (future.isDone()) {
+        return;
+      }
+      if (nanoTime.getAsLong() - enqueued > maxQueueNanos) {
+        rejected.increment();
+        future.completeExceptionally(
+            new RejectedExecutionException("Maximum queue time exceeded!"));
+        return;
+      }
+      try {
+        future.complete(operation.get());
+      } catch (Throwable e) {
+        future.completeExceptionally(e);
+        if (e instanceof Error) {
+          throw (Error) e;
+        }
+      }
+    }
+  }
+
+  private static final class HashingThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      final Thread ret = new Thread(runnable, "pencil-hash-" + count.incrementAndGet());
+      ret.setDaemon(true);
+      return ret;
+    }
+  }
+}
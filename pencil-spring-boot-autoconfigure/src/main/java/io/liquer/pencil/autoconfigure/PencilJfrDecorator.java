@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.liquer.pencil.autoconfigure;
+
+import io.liquer.pencil.encoder.jfr.PencilEncodeEvent;
+import io.liquer.pencil.encoder.jfr.PencilEvent;
+import io.liquer.pencil.encoder.jfr.PencilMatchEvent;
+import io.liquer.pencil.encoder.support.BatchPasswordEncoder;
+import io.liquer.pencil.encoder.support.EncodedPasswordValidator;
+import io.liquer.pencil.encoder.support.PasswordPair;
+import java.util.List;
+import org.springframework.core.Ordered;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Emits the Pencil JFR events for the PasswordEncoders that do not emit them on their own,
+ * e.g.: bcrypt, scrypt and pbkdf2, so that the hashing work hidden in
+ * {@code DelegatingPasswordEncoder.matches} shows up in continuous recordings.
+ * The decorator is applied first, the salt size of foreign encoders is recorded as -1,
+ * a range of a batch is recorded as one event with the outcome ok.
+ *
+ * @author sius
+ */
+public final class PencilJfrDecorator implements PencilPasswordEncoderDecorator, Ordered {
+
+  @Override
+  public PasswordEncoder decorate(String encodeId, PasswordEncoder passwordEncoder) {
+    if (passwordEncoder instanceof EncodedPasswordValidator) {
+      return passwordEncoder;
+    }
+    return new RecordedPasswordEncoder(passwordEncoder, encodeId);
+  }
+
+  @Override
+  public int getOrder() {
+    return Ordered.HIGHEST_PRECEDENCE;
+  }
+
+  private static final class RecordedPasswordEncoder implements DecoratedPasswordEncoder {
+    private final PasswordEncoder delegate;
+    private final String encodeId;
+    private final String algorithm;
+
+    RecordedPasswordEncoder(PasswordEncoder delegate, String encodeId) {
+      this.delegate = delegate;
+      this.encodeId = encodeId;
+      this.algorithm = delegate.getClass().getSimpleName();
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+      final PencilEncodeEvent event = PencilEncodeEvent.start();
+      String outcome = PencilEvent.ERROR;
+      try {
+        final String ret = delegate.encode(rawPassword);
+        outcome = PencilEvent.OK;
+        return ret;
+      } finally {
+        PencilEvent.complete(event, encodeId, algorithm, -1, outcome);
+      }
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+      final PencilMatchEvent event = PencilMatchEvent.start();
+      String outcome = PencilEvent.ERROR;
+      try {
+        final boolean ret = delegate.matches(rawPassword, encodedPassword);
+        outcome = ret ? PencilEvent.MATCH : PencilEvent.MISMATCH;
+        return ret;
+      } finally {
+        PencilEvent.complete(event, encodeId, algorithm, -1, outcome);
+      }
+    }
+
+    @Override
+    public void encodeRange(List<? extends CharSequence> rawPasswords, int from, int to, String[] ret) {
+      if (!DecoratedPasswordEncoder.isBatch(delegate)) {
+        DecoratedPasswordEncoder.super.encodeRange(rawPasswords, from, to, ret);
+        return;
+      }
+      final PencilEncodeEvent event = PencilEncodeEvent.start();
+      String outcome = PencilEvent.ERROR;
+      try {
+        ((BatchPasswordEncoder) delegate).encodeRange(rawPasswords, from, to, ret);
+        outcome = PencilEvent.OK;
+      } finally {
+        PencilEvent.complete(event, encodeId, algorithm, -1, outcome);
+      }
+    }
+
+    @Override
+    public void matchesRange(List<PasswordPair> passwords, int from, int to, boolean[] ret) {
+      if (!DecoratedPasswordEncoder.isBatch(delegate)) {
+        DecoratedPasswordEncoder.super.matchesRange(passwords, from, to, ret);
+        return;
+      }
+      final PencilMatchEvent event = PencilMatchEvent.start();
+      String outcome = PencilEvent.ERROR;
+      try {
+        ((BatchPasswordEncoder) delegate).matchesRange(passwords, from, to, ret);
+        outcome = PencilEvent.OK;
+      } finally {
+        PencilEvent.complete(event, encodeId, algorithm, -1, outcome);
+      }
+    }
+
+    @Override
+    public PasswordEncoder getDelegate() {
+      return delegate;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+      return delegate.upgradeEncoding(encodedPassword);
+    }
+  }
+}
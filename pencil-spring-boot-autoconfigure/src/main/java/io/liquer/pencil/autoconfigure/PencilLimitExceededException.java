@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.liquer.pencil.autoconfigure;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+
+/**
+ * Thrown by the matches of the {@link PencilLimiterDecorator} over the concurrency limit
+ * of a cost class, so that the rejected login takes the authentication failure path
+ * of Spring Security instead of escaping as an unhandled error.
+ *
+ * @author sius
+ */
+public class PencilLimitExceededException extends AuthenticationServiceException {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Creates the exception.
+   * @param msg the detail message
+   */
+  public PencilLimitExceededException(String msg) {
+    super(msg);
+  }
+}
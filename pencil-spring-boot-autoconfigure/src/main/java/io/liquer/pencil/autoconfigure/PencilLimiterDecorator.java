@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.liquer.pencil.autoconfigure;
+
+import io.liquer.pencil.encoder.support.BatchPasswordEncoder;
+import io.liquer.pencil.encoder.support.EncodedPasswordValidator;
+import io.liquer.pencil.encoder.support.PasswordPair;
+import java.util.List;
+import org.springframework.core.Ordered;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Limits the concurrent matches per cost class with an adaptive limit,
+ * cheap salted SHA and XOR PasswordEncoders and the adaptive bcrypt, scrypt and pbkdf2
+ * hashes have their own limits. Matches over the limit are rejected immediately
+ * with a {@link PencilLimitExceededException} instead of queueing until a time-out.
+ * The decorator is applied right after the {@link PencilJfrDecorator}, so that
+ * the limits adapt to the hashing latency only.
+ *
+ * @author sius
+ */
+public final class PencilLimiterDecorator implements PencilPasswordEncoderDecorator, Ordered {
+
+  private final AdaptiveLimiter cheap;
+  private final AdaptiveLimiter adaptive;
+
+  /**
+   * Creates the limiter decorator.
+   * @param properties the limiter properties
+   * @throws IllegalArgumentException on invalid limits, tolerance or backoff ratio
+   */
+  public PencilLimiterDecorator(PencilProperties.Limiter properties) {
+    this.cheap = limiter(properties.getCheap(), properties);
+    this.adaptive = limiter(properties.getAdaptive(), properties);
+  }
+
+  private static AdaptiveLimiter limiter(PencilProperties.Limit limit, PencilProperties.Limiter properties) {
+    return new AdaptiveLimiter(
+        limit.getInitialLimit(),
+        limit.getMinLimit(),
+        limit.getMaxLimit(),
+        properties.getTolerance(),
+        properties.getBackoffRatio());
+  }
+
+  @Override
+  public PasswordEncoder decorate(String encodeId, PasswordEncoder passwordEncoder) {
+    return DecoratedPasswordEncoder.unwrap(passwordEncoder) instanceof EncodedPasswordValidator
+        ? new LimitedPasswordEncoder(passwordEncoder, cheap, "cheap")
+        : new LimitedPasswordEncoder(passwordEncoder, adaptive, "adaptive");
+  }
+
+  @Override
+  public int getOrder() {
+    return Ordered.HIGHEST_PRECEDENCE + 1;
+  }
+
+  /**
+   * The current limit of the cheap salted SHA and XOR matches.
+   * @return the limit
+   */
+  public int getCheapLimit() {
+    return cheap.getLimit();
+  }
+
+  /**
+   * The current limit of the adaptive bcrypt, scrypt and pbkdf2 matches.
+   * @return the limit
+   */
+  public int getAdaptiveLimit() {
+    return adaptive.getLimit();
+  }
+
+  private static final class LimitedPasswordEncoder implements DecoratedPasswordEncoder {
+    private final PasswordEncoder delegate;
+    private final AdaptiveLimiter limiter;
+    private final String costClass;
+
+    LimitedPasswordEncoder(PasswordEncoder delegate, AdaptiveLimiter limiter, String costClass) {
+      this.delegate = delegate;
+      this.limiter = limiter;
+      this.costClass = costClass;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+      return delegate.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+      final int inflight = acquire();
+      final long start = System.nanoTime();
+      /* the permit is released on any Throwable, the latency is only sampled on success */
+      boolean sampled = false;
+      try {
+        final boolean ret = delegate.matches(rawPassword, encodedPassword);
+        sampled = true;
+        limiter.release(System.nanoTime() - start, inflight);
+        return ret;
+      } finally {
+        if (!sampled) {
+          limiter.release();
+        }
+      }
+    }
+
+    /* one permit per range, the latency is sampled per password */
+    @Override
+    public void matchesRange(List<PasswordPair> passwords, int from, int to, boolean[] ret) {
+      if (!DecoratedPasswordEncoder.isBatch(delegate)) {
+        DecoratedPasswordEncoder.super.matchesRange(passwords, from, to, ret);
+        return;
+      }
+      final int inflight = acquire();
+      final long start = System.nanoTime();
+      boolean sampled = false;
+      try {
+        ((BatchPasswordEncoder) delegate).matchesRange(passwords, from, to, ret);
+        sampled = true;
+        limiter.release((System.nanoTime() - start) / Math.max(to - from, 1), inflight);
+      } finally {
+        if (!sampled) {
+          limiter.release();
+        }
+      }
+    }
+
+    private int acquire() {
+      final int ret = limiter.tryAcquire();
+      if (ret == 0) {
+        throw new PencilLimitExceededException(
+            String.format("Concurrency limit of the %1$s encode ids exceeded!", costClass));
+      }
+      return ret;
+    }
+
+    @Override
+    public PasswordEncoder getDelegate() {
+      return delegate;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+      return delegate.upgradeEncoding(encodedPassword);
+    }
+  }
+}
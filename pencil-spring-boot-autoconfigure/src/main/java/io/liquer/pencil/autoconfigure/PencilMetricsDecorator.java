@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.autoconfigure;
+
+import io.liquer.pencil.encoder.support.BatchPasswordEncoder;
+import io.liquer.pencil.encoder.support.EncodedPasswordValidator;
+import io.liquer.pencil.encoder.support.PasswordPair;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Records Micrometer metrics per encode id:
+ * <ul>
+ *   <li>{@code pencil.encoder} timer with the tags {@code id} and {@code operation} (encode, matches)</li>
+ *   <li>{@code pencil.encoder.match.failures} wrong passwords per {@code id}</li>
+ *   <li>{@code pencil.encoder.malformed} malformed or foreign encoded passwords per {@code id}</li>
+ *   <li>{@code pencil.encoder.unknown.ids} matches with an unknown or missing encode id</li>
+ *   <li>{@code pencil.encoder.active} gauge of the in-flight encode and matches operations</li>
+ * </ul>
+ * A range of a batch is timed once, its failures and malformed passwords are counted per password.
+ * Counters and the in-flight gauge are backed by striped {@link LongAdder}s,
+ * so that the instrumentation does not add contention to the login path.
+ *
+ * @author sius
+ */
+public final class PencilMetricsDecorator implements PencilPasswordEncoderDecorator {
+
+  public static final String TIMER = "pencil.encoder";
+  public static final String MATCH_FAILURES = "pencil.encoder.match.failures";
+  public static final String MALFORMED = "pencil.encoder.malformed";
+  public static final String UNKNOWN_IDS = "pencil.encoder.unknown.ids";
+  public static final String ACTIVE = "pencil.encoder.active";
+
+  private static final Pattern BCRYPT_PATTERN =
+      Pattern.compile("\\A\\$2(a|y|b)?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}");
+
+  private final MeterRegistry registry;
+  private final LongAdder active = new LongAdder();
+  private final LongAdder unknownIds = new LongAdder();
+  private final Map<String, Meters> meters = new ConcurrentHashMap<>();
+
+  /**
+   * Creates the metrics decorator and registers the encode id independent meters.
+   * @param registry the MeterRegistry
+   */
+  public PencilMetricsDecorator(MeterRegistry registry) {
+    this.registry = registry;
+    Gauge.builder(ACTIVE, active, LongAdder::sum)
+        .description("In-flight password encode and matches operations")
+        .strongReference(true)
+        .register(registry);
+    FunctionCounter.builder(UNKNOWN_IDS, unknownIds, LongAdder::sum)
+        .description("Password matches with an unknown or missing encode id")
+        .register(registry);
+  }
+
+  @Override
+  public PasswordEncoder decorate(String encodeId, PasswordEncoder passwordEncoder) {
+    if (UNKNOWN_ENCODE_ID.equals(encodeId)) {
+      return new UnknownIdPasswordEncoder(passwordEncoder, unknownIds);
+    }
+    return new MeteredPasswordEncoder(
+        passwordEncoder,
+        meters.computeIfAbsent(encodeId, this::meters),
+        active,
+        wellFormed(passwordEncoder));
+  }
+
+  private Meters meters(String encodeId) {
+    final Meters ret = new Meters(
+        Timer.builder(TIMER)
+            .description("Password encode and matches duration")
+            .tags("id", encodeId, "operation", "encode")
+            .register(registry),
+        Timer.builder(TIMER)
+            .description("Password encode and matches duration")
+            .tags("id", encodeId, "operation", "matches")
+            .register(registry));
+    FunctionCounter.builder(MATCH_FAILURES, ret.failures, LongAdder::sum)
+        .description("Password matches with a wrong password")
+        .tags("id", encodeId)
+        .register(registry);
+    FunctionCounter.builder(MALFORMED, ret.malformed, LongAdder::sum)
+        .description("Password matches with a malformed encoded password")
+        .tags("id", encodeId)
+        .register(registry);
+    return ret;
+  }
+
+  /* the structural check to tell malformed encoded passwords apart from wrong passwords */
+  private static Predicate<String> wellFormed(PasswordEncoder decorated) {
+    final PasswordEncoder passwordEncoder = DecoratedPasswordEncoder.unwrap(decorated);
+    if (passwordEncoder instanceof EncodedPasswordValidator) {
+      return ((EncodedPasswordValidator) passwordEncoder)::isWellFormed;
+    }
+    if (passwordEncoder instanceof BCryptPasswordEncoder) {
+      return encodedPassword -> encodedPassword != null
+          && BCRYPT_PATTERN.matcher(encodedPassword).matches();
+    }
+    return encodedPassword -> encodedPassword != null && !encodedPassword.isEmpty();
+  }
+
+  private static final class Meters {
+    private final Timer encode;
+    private final Timer matches;
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder malformed = new LongAdder();
+
+    Meters(Timer encode, Timer matches) {
+      this.encode = encode;
+      this.matches = matches;
+    }
+  }
+
+  private static final class MeteredPasswordEncoder implements DecoratedPasswordEncoder {
+    private final PasswordEncoder delegate;
+    private final Meters meters;
+    private final LongAdder active;
+    private final Predicate<String> wellFormed;
+
+    MeteredPasswordEncoder(
+        PasswordEncoder delegate, Meters meters, LongAdder active, Predicate<String> wellFormed) {
+      this.delegate = delegate;
+      this.meters = meters;
+      this.active = active;
+      this.wellFormed = wellFormed;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+      active.increment();
+      final long start = System.nanoTime();
+      try {
+        return delegate.encode(rawPassword);
+      } finally {
+        meters.encode.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        active.decrement();
+      }
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+      final boolean ret;
+      active.increment();
+      final long start = System.nanoTime();
+      try {
+        ret = delegate.matches(rawPassword, encodedPassword);
+      } catch (PencilLimitExceededException e) {
+        throw e;
+      } catch (RuntimeException e) {
+        meters.malformed.increment();
+        throw e;
+      } finally {
+        meters.matches.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        active.decrement();
+      }
+      if (!ret) {
+        (wellFormed.test(encodedPassword) ? meters.failures : meters.malformed).increment();
+      }
+      return ret;
+    }
+
+    @Override
+    public void encodeRange(List<? extends CharSequence> rawPasswords, int from, int to, String[] ret) {
+      if (!DecoratedPasswordEncoder.isBatch(delegate)) {
+        DecoratedPasswordEncoder.super.encodeRange(rawPasswords, from, to, ret);
+        return;
+      }
+      active.increment();
+      final long start = System.nanoTime();
+      try {
+        ((BatchPasswordEncoder) delegate).encodeRange(rawPasswords, from, to, ret);
+      } finally {
+        meters.encode.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        active.decrement();
+      }
+    }
+
+    @Override
+    public void matchesRange(List<PasswordPair> passwords, int from, int to, boolean[] ret) {
+      if (!DecoratedPasswordEncoder.isBatch(delegate)) {
+        DecoratedPasswordEncoder.super.matchesRange(passwords, from, to, ret);
+        return;
+      }
+      active.increment();
+      final long start = System.nanoTime();
+      try {
+        ((BatchPasswordEncoder) delegate).matchesRange(passwords, from, to, ret);
+      } catch (PencilLimitExceededException e) {
+        throw e;
+      } catch (RuntimeException e) {
+        meters.malformed.increment();
+        throw e;
+      } finally {
+        meters.matches.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        active.decrement();
+      }
+      for (int i = from; i < to; i++) {
+        if (!ret[i]) {
+          final PasswordPair pair = passwords.get(i);
+          final String encodedPassword = pair == null ? null : pair.getEncodedPassword();
+          (wellFormed.test(encodedPassword) ? meters.failures : meters.malformed).increment();
+        }
+      }
+    }
+
+    @Override
+    public PasswordEncoder getDelegate() {
+      return delegate;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+      return delegate.upgradeEncoding(encodedPassword);
+    }
+  }
+
+  private static final class UnknownIdPasswordEncoder implements DecoratedPasswordEncoder {
+    private final PasswordEncoder delegate;
+    private final LongAdder unknownIds;
+
+    UnknownIdPasswordEncoder(PasswordEncoder delegate, LongAdder unknownIds) {
+      this.delegate = delegate;
+      this.unknownIds = unknownIds;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+      return delegate.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+      unknownIds.increment();
+      return delegate.matches(rawPassword, encodedPassword);
+    }
+
+    @Override
+    public void matchesRange(List<PasswordPair> passwords, int from, int to, boolean[] ret) {
+      if (DecoratedPasswordEncoder.isBatch(delegate)) {
+        unknownIds.add(to - from);
+      }
+      DecoratedPasswordEncoder.super.matchesRange(passwords, from, to, ret);
+    }
+
+    @Override
+    public PasswordEncoder getDelegate() {
+      return delegate;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+      return delegate.upgradeEncoding(encodedPassword);
+    }
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.autoconfigure;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Extension point to decorate the PasswordEncoders of the auto-configured
+ * DelegatingPasswordEncoder, e.g. with metrics or tracing.
+ * Every encode id (including the aliases) is decorated on its own,
+ * the fallback for matching passwords with an unknown or missing encode id
+ * is decorated with {@link #UNKNOWN_ENCODE_ID}.
+ * Decorator beans are applied in their {@link org.springframework.core.annotation.Order}.
+ *
+ * @author sius
+ */
+@FunctionalInterface
+public interface PencilPasswordEncoderDecorator {
+
+  /**
+   * The encode id of the fallback PasswordEncoder for matches.
+   */
+  String UNKNOWN_ENCODE_ID = "unknown";
+
+  /**
+   * Decorate the PasswordEncoder of an encode id.
+   * @param encodeId the encode id or {@link #UNKNOWN_ENCODE_ID}
+   * @param passwordEncoder the PasswordEncoder
+   * @return the decorated PasswordEncoder
+   */
+  PasswordEncoder decorate(String encodeId, PasswordEncoder passwordEncoder);
+}
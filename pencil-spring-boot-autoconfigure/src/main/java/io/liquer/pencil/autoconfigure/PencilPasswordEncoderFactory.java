@@ -18,15 +18,24 @@
 
 package io.liquer.pencil.autoconfigure;
 
+import io.liquer.pencil.encoder.OnionPasswordEncoder;
 import io.liquer.pencil.encoder.SSHA224PasswordEncoder;
 import io.liquer.pencil.encoder.SSHA256PasswordEncoder;
 import io.liquer.pencil.encoder.SSHA384PasswordEncoder;
 import io.liquer.pencil.encoder.SSHA512PasswordEncoder;
 import io.liquer.pencil.encoder.SSHAPasswordEncoder;
-import java.util.HashMap;
+import io.liquer.pencil.encoder.support.EncodedPasswordValidator;
+import io.liquer.pencil.encoder.support.SaltSource;
+import io.liquer.pencil.encoder.support.SaltSources;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
 import org.springframework.security.crypto.scrypt.SCryptPasswordEncoder;
@@ -40,7 +49,9 @@ import org.springframework.security.crypto.scrypt.SCryptPasswordEncoder;
  * - SSHA224, SSHA-224
  * - SSHA256, SSHA-256
  * - SSHA384, SSHA-384
- * - SHAA512, SSHA-512.
+ * - SHAA512, SSHA-512
+ * - bcrypt+SSHA, bcrypt+SSHA224, bcrypt+SSHA256, bcrypt+SSHA384, bcrypt+SSHA512 and their long forms
+ *   (`OnionPasswordEncoder`, bcrypt over the salted SHA digest of wrapped legacy hashes).
  *
  * @author sius
  */
@@ -62,9 +73,60 @@ public final class PencilPasswordEncoderFactory {
    * @return t he DelegationPasswordEncoder
    */
   static PasswordEncoder passwordEncoder(final PencilProperties pencilProperties) {
-    final Map<String, PasswordEncoder> encoders = new HashMap<>();
+    return passwordEncoder(pencilProperties, Collections.emptyList());
+  }
+
+  /**
+   * The DelegatingPasswordEncoder with decorated PasswordEncoders,
+   * see {@link PencilPasswordEncoderDecorator}, and the batch API
+   * of {@link io.liquer.pencil.encoder.support.BatchPasswordEncoder}.
+   *
+   * @param pencilProperties  the PencilProperties
+   * @param decorators the decorators in the order of application
+   * @return the DelegationPasswordEncoder
+   */
+  static PasswordEncoder passwordEncoder(
+      final PencilProperties pencilProperties,
+      final List<? extends PencilPasswordEncoderDecorator> decorators) {
+    final Map<String, PasswordEncoder> undecorated = encoders(pencilProperties);
+    final Map<String, PasswordEncoder> encoders = new LinkedHashMap<>();
+    undecorated.forEach((id, encoder) -> encoders.put(id, decorate(id, encoder, decorators)));
+    final boolean containsKey = encoders.containsKey(pencilProperties.getDefaultEncodeId());
+    final String defaultEncodeId = containsKey
+            ? pencilProperties.getDefaultEncodeId()
+            : "bcrypt";
+    final PasswordEncoder defaultPasswordEncoder = decorate(
+        PencilPasswordEncoderDecorator.UNKNOWN_ENCODE_ID,
+        undecorated.get(defaultEncodeId),
+        decorators);
+    final PencilDelegatingPasswordEncoder ret = new PencilDelegatingPasswordEncoder(defaultEncodeId, encoders);
+    ret.setDefaultPasswordEncoderForMatches(defaultPasswordEncoder);
+    return ret;
+  }
+
+  private static PasswordEncoder decorate(
+      String encodeId,
+      PasswordEncoder passwordEncoder,
+      List<? extends PencilPasswordEncoderDecorator> decorators) {
+    PasswordEncoder ret = passwordEncoder;
+    for (PencilPasswordEncoderDecorator decorator : decorators) {
+      ret = decorator.decorate(encodeId, ret);
+    }
+    return ret;
+  }
+
+  /**
+   * The supported PasswordEncoders by encode id in registration order,
+   * aliases share the PasswordEncoder instance of their encode id.
+   *
+   * @param pencilProperties  the PencilProperties
+   * @return an unmodifiable map of the PasswordEncoders by encode id
+   */
+  static Map<String, PasswordEncoder> encoders(final PencilProperties pencilProperties) {
+    final Map<String, PasswordEncoder> encoders = new LinkedHashMap<>();
     final BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder();
     final String EMPTY = "";
+    final SaltSource saltSource = SaltSources.of(pencilProperties.getSaltSource());
     encoders.put("bcrypt", bcrypt);
     encoders.put("scrypt", new SCryptPasswordEncoder());
     encoders.put("pbkdf2", new Pbkdf2PasswordEncoder());
@@ -73,7 +135,8 @@ public final class PencilPasswordEncoderFactory {
     final PasswordEncoder ldap = new SSHAPasswordEncoder(EMPTY,
         0,
         pencilProperties.isUfSafe(),
-        pencilProperties.isNoPadding());
+        pencilProperties.isNoPadding(),
+        saltSource);
     encoders.put("ldap", ldap);
     encoders.put("SHA", ldap);
     encoders.put("SHA1", ldap);
@@ -82,7 +145,8 @@ public final class PencilPasswordEncoderFactory {
     final PasswordEncoder ssha = new SSHAPasswordEncoder(EMPTY,
             pencilProperties.getSaltSize(),
             pencilProperties.isUfSafe(),
-            pencilProperties.isNoPadding());
+            pencilProperties.isNoPadding(),
+            saltSource);
     encoders.put("SSHA", ssha);
     encoders.put("SSHA1", ssha);
     encoders.put("SSHA-1", ssha);
@@ -90,41 +154,96 @@ public final class PencilPasswordEncoderFactory {
     final PasswordEncoder ssha224 = new SSHA224PasswordEncoder(EMPTY,
             pencilProperties.getSaltSize(),
             pencilProperties.isUfSafe(),
-            pencilProperties.isNoPadding());
+            pencilProperties.isNoPadding(),
+            saltSource);
     encoders.put("SSHA224", ssha224);
     encoders.put("SSHA-224", ssha224);
 
     final PasswordEncoder ssha256 = new SSHA256PasswordEncoder(EMPTY,
             pencilProperties.getSaltSize(),
             pencilProperties.isUfSafe(),
-            pencilProperties.isNoPadding());
+            pencilProperties.isNoPadding(),
+            saltSource);
     encoders.put("SSHA256", ssha256);
     encoders.put("SSHA-256", ssha256);
 
     final PasswordEncoder ssha384 = new SSHA384PasswordEncoder(EMPTY,
             pencilProperties.getSaltSize(),
             pencilProperties.isUfSafe(),
-            pencilProperties.isNoPadding());
+            pencilProperties.isNoPadding(),
+            saltSource);
     encoders.put("SSHA384", ssha384);
     encoders.put("SSHA-384", ssha384);
 
     final PasswordEncoder ssha512 = new SSHA512PasswordEncoder(EMPTY,
             pencilProperties.getSaltSize(),
             pencilProperties.isUfSafe(),
-            pencilProperties.isNoPadding());
+            pencilProperties.isNoPadding(),
+            saltSource);
     encoders.put("SSHA512", ssha512);
     encoders.put("SSHA-512", ssha512);
 
-    final boolean containsKey = encoders.containsKey(pencilProperties.getDefaultEncodeId());
-    final PasswordEncoder defaultPasswordEncoder = containsKey
-            ? encoders.get(pencilProperties.getDefaultEncodeId())
-            : bcrypt;
-    final String defaultEncodeId = containsKey
-            ? pencilProperties.getDefaultEncodeId()
-            : "bcrypt";
-    final DelegatingPasswordEncoder ret = new DelegatingPasswordEncoder(defaultEncodeId, encoders);
-    ret.setDefaultPasswordEncoderForMatches(defaultPasswordEncoder);
-    return ret;
+    onion(encoders, pencilProperties, saltSource, "SSHA", "SSHA1", "SSHA-1");
+    onion(encoders, pencilProperties, saltSource, "SSHA224", "SSHA-224");
+    onion(encoders, pencilProperties, saltSource, "SSHA256", "SSHA-256");
+    onion(encoders, pencilProperties, saltSource, "SSHA384", "SSHA-384");
+    onion(encoders, pencilProperties, saltSource, "SSHA512", "SSHA-512");
+    return Collections.unmodifiableMap(encoders);
+  }
+
+  /* the onion PasswordEncoder of a salted SHA encode id, registered as bcrypt+<encode id> and aliases */
+  private static void onion(
+      Map<String, PasswordEncoder> encoders,
+      PencilProperties pencilProperties,
+      SaltSource saltSource,
+      String... legacyEncodeIds) {
+    final PasswordEncoder onion = new OnionPasswordEncoder(legacyEncodeIds[0], "",
+        pencilProperties.getSaltSize(),
+        OnionPasswordEncoder.DEFAULT_STRENGTH,
+        saltSource);
+    for (String legacyEncodeId : legacyEncodeIds) {
+      encoders.put(OnionPasswordEncoder.ONION_PREFIX + legacyEncodeId, onion);
+    }
+  }
+
+  /**
+   * The encode ids grouped by their shared undecorated PasswordEncoder instance,
+   * the first registered encode id of a group is the key.
+   *
+   * @param encoders  the possibly decorated PasswordEncoders by encode id in registration order
+   * @return an unmodifiable map of the aliases by encode id in registration order
+   */
+  static Map<String, List<String>> aliases(final Map<String, PasswordEncoder> encoders) {
+    final Map<PasswordEncoder, String> canonicalIds = new IdentityHashMap<>();
+    final Map<String, List<String>> aliases = new LinkedHashMap<>();
+    encoders.forEach((id, encoder) -> {
+      final String canonicalId = canonicalIds.putIfAbsent(DecoratedPasswordEncoder.unwrap(encoder), id);
+      if (canonicalId == null) {
+        aliases.put(id, new ArrayList<>());
+      } else {
+        aliases.get(canonicalId).add(id);
+      }
+    });
+    aliases.replaceAll((id, ids) -> Collections.unmodifiableList(ids));
+    return Collections.unmodifiableMap(aliases);
+  }
+
+  /**
+   * The encode ids of the single pass salted SHA PasswordEncoders,
+   * which are cheap enough to run inline, unlike the adaptive
+   * bcrypt, scrypt and pbkdf2 hashes.
+   *
+   * @param encoders  the possibly decorated PasswordEncoders by encode id
+   * @return an unmodifiable set of the cheap encode ids
+   */
+  static Set<String> inlineEncodeIds(final Map<String, PasswordEncoder> encoders) {
+    final Set<String> ret = new LinkedHashSet<>();
+    encoders.forEach((id, encoder) -> {
+      if (DecoratedPasswordEncoder.unwrap(encoder) instanceof EncodedPasswordValidator) {
+        ret.add(id);
+      }
+    });
+    return Collections.unmodifiableSet(ret);
   }
 
   private PencilPasswordEncoderFactory() { }
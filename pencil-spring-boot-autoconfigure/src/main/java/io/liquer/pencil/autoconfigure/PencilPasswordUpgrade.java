@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.liquer.pencil.autoconfigure;
+
+import org.springframework.security.core.userdetails.UserDetails;
+
+/**
+ * The re-encoded password of a user, see {@link PencilPasswordUpgradeSink}.
+ *
+ * @author sius
+ */
+public final class PencilPasswordUpgrade {
+
+  private final UserDetails user;
+  private final String encodedPassword;
+
+  /**
+   * Creates a password upgrade.
+   * @param user the user
+   * @param encodedPassword the password encoded with the default encode id
+   */
+  public PencilPasswordUpgrade(UserDetails user, String encodedPassword) {
+    this.user = user;
+    this.encodedPassword = encodedPassword;
+  }
+
+  public UserDetails getUser() {
+    return user;
+  }
+
+  public String getEncodedPassword() {
+    return encodedPassword;
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.liquer.pencil.autoconfigure;
+
+import java.util.List;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+
+/**
+ * Extension point to store batches of upgraded password hashes,
+ * e.g. with a single batch update of the user store.
+ *
+ * @author sius
+ */
+@FunctionalInterface
+public interface PencilPasswordUpgradeSink {
+
+  /**
+   * Store the upgraded password hashes, at most one per user.
+   * @param upgrades the batch of password upgrades
+   */
+  void upgrade(List<PencilPasswordUpgrade> upgrades);
+
+  /**
+   * A sink that updates the passwords one by one with a UserDetailsPasswordService.
+   * @param userDetailsPasswordService the UserDetailsPasswordService
+   * @return the sink
+   */
+  static PencilPasswordUpgradeSink of(UserDetailsPasswordService userDetailsPasswordService) {
+    return upgrades -> upgrades.forEach(upgrade ->
+        userDetailsPasswordService.updatePassword(upgrade.getUser(), upgrade.getEncodedPassword()));
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.liquer.pencil.autoconfigure;
+
+import java.nio.CharBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Re-encodes the passwords of successful legacy logins with the default encode id
+ * in the background, so that the login latency does not pay for the new hash.
+ * Upgrades are coalesced per user name (the first pending raw password wins),
+ * encoded on a single background thread and handed to the {@link PencilPasswordUpgradeSink}
+ * in batches, whenever the batch size is pending or the flush interval elapsed.
+ * The copies of the raw passwords are zeroed after encoding,
+ * upgrades beyond the maximum number of pending users are dropped.
+ *
+ * @author sius
+ */
+public final class PencilPasswordUpgrader implements AutoCloseable {
+
+  private static final Log LOG = LogFactory.getLog(PencilPasswordUpgrader.class);
+
+  private final PasswordEncoder passwordEncoder;
+  private final PencilPasswordUpgradeSink sink;
+  private final int batchSize;
+  private final int maxPending;
+  private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+  private final ScheduledExecutorService executor;
+  private final LongAdder upgraded = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+
+  /**
+   * Creates the password upgrader.
+   * @param passwordEncoder the DelegatingPasswordEncoder that encodes with the default encode id
+   * @param sink the sink for the upgraded password hashes
+   * @param batchSize the maximum number of upgrades per batch
+   * @param flushInterval the maximum delay of pending upgrades
+   * @param maxPending the maximum number of pending users
+   * @throws IllegalArgumentException if the batch size or maximum number of pending users
+   *     is not positive or the flush interval is null or not positive
+   */
+  public PencilPasswordUpgrader(
+      PasswordEncoder passwordEncoder,
+      PencilPasswordUpgradeSink sink,
+      int batchSize,
+      Duration flushInterval,
+      int maxPending) {
+    if (batchSize < 1 || maxPending < 1) {
+      throw new IllegalArgumentException("Batch size and maximum pending users must be positive!");
+    }
+    if (flushInterval == null || flushInterval.isZero() || flushInterval.isNegative()) {
+      throw new IllegalArgumentException("Invalid flush interval!");
+    }
+    this.passwordEncoder = passwordEncoder;
+    this.sink = sink;
+    this.batchSize = batchSize;
+    this.maxPending = maxPending;
+    this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread ret = new Thread(runnable, "pencil-upgrade");
+      ret.setDaemon(true);
+      return ret;
+    });
+    final long interval = flushInterval.toNanos();
+    executor.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Queue the re-encoding of a successfully verified raw password.
+   * @param user the authenticated user
+   * @param rawPassword the verified raw password
+   * @return true if the upgrade is queued, false if the user is already pending,
+   *     the upgrader is full or closed
+   */
+  public boolean submit(UserDetails user, CharSequence rawPassword) {
+    if (user == null || rawPassword == null || executor.isShutdown()) {
+      return false;
+    }
+    if (pending.size() >= maxPending) {
+      dropped.increment();
+      return false;
+    }
+    final Pending candidate = new Pending(user, rawPassword);
+    if (pending.putIfAbsent(user.getUsername(), candidate) != null) {
+      candidate.clear();
+      return false;
+    }
+    if (pending.size() >= batchSize && flushScheduled.compareAndSet(false, true)) {
+      try {
+        executor.execute(() -> {
+          flushScheduled.set(false);
+          flush();
+        });
+      } catch (RejectedExecutionException e) {
+        flushScheduled.set(false);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Encode all pending upgrades and hand them to the sink in batches.
+   */
+  public synchronized void flush() {
+    List<PencilPasswordUpgrade> batch = new ArrayList<>(batchSize);
+    for (String username : pending.keySet()) {
+      final Pending upgrade = pending.remove(username);
+      if (upgrade == null) {
+        continue;
+      }
+      try {
+        batch.add(new PencilPasswordUpgrade(
+            upgrade.user, passwordEncoder.encode(CharBuffer.wrap(upgrade.rawPassword))));
+      } catch (RuntimeException e) {
+        failed.increment();
+        LOG.warn("Password upgrade failed", e);
+      } finally {
+        upgrade.clear();
+      }
+      if (batch.size() == batchSize) {
+        write(batch);
+        batch = new ArrayList<>(batchSize);
+      }
+    }
+    if (!batch.isEmpty()) {
+      write(batch);
+    }
+  }
+
+  public int getPendingCount() {
+    return pending.size();
+  }
+
+  public long getUpgradedCount() {
+    return upgraded.sum();
+  }
+
+  public long getDroppedCount() {
+    return dropped.sum();
+  }
+
+  public long getFailedCount() {
+    return failed.sum();
+  }
+
+  /**
+   * Stop accepting upgrades and flush the pending ones.
+   */
+  @Override
+  public void close() {
+    executor.shutdown();
+    flush();
+  }
+
+  private void write(List<PencilPasswordUpgrade> batch) {
+    try {
+      sink.upgrade(Collections.unmodifiableList(batch));
+      upgraded.add(batch.size());
+    } catch (RuntimeException e) {
+      failed.add(batch.size());
+      LOG.warn(String.format("Password upgrade of %1$d users failed", batch.size()), e);
+    }
+  }
+
+  private static final class Pending {
+    private final UserDetails user;
+    private final char[] rawPassword;
+
+    Pending(UserDetails user, CharSequence rawPassword) {
+      this.user = user;
+      this.rawPassword = new char[rawPassword.length()];
+      for (int i = 0; i < this.rawPassword.length; i++) {
+        this.rawPassword[i] = rawPassword.charAt(i);
+      }
+    }
+
+    void clear() {
+      Arrays.fill(rawPassword, '\0');
+    }
+  }
+}
@@ -18,12 +18,14 @@
 
 package io.liquer.pencil.autoconfigure;
 
+import io.liquer.pencil.encoder.support.SaltSources;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 
 @Component
 @ConfigurationProperties(prefix = "liquer.pencil")
@@ -60,6 +62,26 @@ public class PencilProperties {
    */
   private int saltSize = 8;
 
+  /**
+   * The salt source strategy: shared, thread-local or prefetch.
+   * (default: thread-local)
+   */
+  private SaltSources.Type saltSource = SaltSources.Type.THREAD_LOCAL;
+
+  private final Metrics metrics = new Metrics();
+
+  private final Jfr jfr = new Jfr();
+
+  private final Executor executor = new Executor();
+
+  private final Reactive reactive = new Reactive();
+
+  private final Limiter limiter = new Limiter();
+
+  private final Coalescing coalescing = new Coalescing();
+
+  private final Upgrade upgrade = new Upgrade();
+
   public boolean isEnabled() {
     return enabled;
   }
@@ -92,6 +114,42 @@ public class PencilProperties {
     this.saltSize = saltSize;
   }
 
+  public SaltSources.Type getSaltSource() {
+    return saltSource;
+  }
+
+  public void setSaltSource(SaltSources.Type saltSource) {
+    this.saltSource = saltSource;
+  }
+
+  public Metrics getMetrics() {
+    return metrics;
+  }
+
+  public Jfr getJfr() {
+    return jfr;
+  }
+
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  public Reactive getReactive() {
+    return reactive;
+  }
+
+  public Limiter getLimiter() {
+    return limiter;
+  }
+
+  public Coalescing getCoalescing() {
+    return coalescing;
+  }
+
+  public Upgrade getUpgrade() {
+    return upgrade;
+  }
+
   public String getDefaultEncodeId() {
     return defaultEncodeId;
   }
@@ -99,4 +157,315 @@ public class PencilProperties {
   public void setDefaultEncodeId(String defaultEncodeId) {
     this.defaultEncodeId = defaultEncodeId;
   }
+
+  public static class Metrics {
+
+    /**
+     * Whether to record Micrometer metrics per encode id if a MeterRegistry is available.
+     * (default: true)
+     */
+    private boolean enabled = true;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+  }
+
+  public static class Jfr {
+
+    /**
+     * Whether to emit the Pencil JFR events for bcrypt, scrypt and pbkdf2.
+     * (default: true)
+     */
+    private boolean enabled = true;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+  }
+
+  public static class Executor {
+
+    /**
+     * Whether to provide the bounded PencilHashingExecutor.
+     * (default: false)
+     */
+    private boolean enabled = false;
+
+    /**
+     * The number of hashing threads, 0 for the number of available processors.
+     * (default: 0)
+     */
+    private int poolSize = 0;
+
+    /**
+     * The maximum number of queued encode and matches operations.
+     * (default: 100)
+     */
+    private int queueCapacity = 100;
+
+    /**
+     * The maximum time an operation may wait in the queue before it is rejected.
+     * (default: 1s)
+     */
+    private Duration maxQueueTime = Duration.ofSeconds(1);
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public int getPoolSize() {
+      return poolSize;
+    }
+
+    public void setPoolSize(int poolSize) {
+      this.poolSize = poolSize;
+    }
+
+    public int getQueueCapacity() {
+      return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+      this.queueCapacity = queueCapacity;
+    }
+
+    public Duration getMaxQueueTime() {
+      return maxQueueTime;
+    }
+
+    public void setMaxQueueTime(Duration maxQueueTime) {
+      this.maxQueueTime = maxQueueTime;
+    }
+  }
+
+  public static class Reactive {
+
+    /**
+     * Whether to provide the ReactivePencilPasswordEncoder if Reactor is available.
+     * (default: true)
+     */
+    private boolean enabled = true;
+
+    /**
+     * Whether to run the cheap salted SHA encode ids inline instead of offloading them.
+     * (default: true)
+     */
+    private boolean inline = true;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public boolean isInline() {
+      return inline;
+    }
+
+    public void setInline(boolean inline) {
+      this.inline = inline;
+    }
+  }
+
+  public static class Limiter {
+
+    /**
+     * Whether to limit the concurrent matches with an adaptive limit per cost class.
+     * (default: false)
+     */
+    private boolean enabled = false;
+
+    /**
+     * The tolerated multiple of the baseline latency before the limit is decreased.
+     * (default: 2.0)
+     */
+    private double tolerance = 2.0;
+
+    /**
+     * The minimum multiplicative decrease of the limit on slow matches.
+     * (default: 0.9)
+     */
+    private double backoffRatio = 0.9;
+
+    /**
+     * The limit of the cheap salted SHA and XOR matches.
+     */
+    private final Limit cheap = new Limit(64, 4, 1024);
+
+    /**
+     * The limit of the adaptive bcrypt, scrypt and pbkdf2 matches.
+     */
+    private final Limit adaptive = new Limit(8, 1, 64);
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public double getTolerance() {
+      return tolerance;
+    }
+
+    public void setTolerance(double tolerance) {
+      this.tolerance = tolerance;
+    }
+
+    public double getBackoffRatio() {
+      return backoffRatio;
+    }
+
+    public void setBackoffRatio(double backoffRatio) {
+      this.backoffRatio = backoffRatio;
+    }
+
+    public Limit getCheap() {
+      return cheap;
+    }
+
+    public Limit getAdaptive() {
+      return adaptive;
+    }
+  }
+
+  public static class Limit {
+
+    /**
+     * The initial concurrency limit.
+     */
+    private int initialLimit;
+
+    /**
+     * The lower bound of the concurrency limit.
+     */
+    private int minLimit;
+
+    /**
+     * The upper bound of the concurrency limit.
+     */
+    private int maxLimit;
+
+    Limit(int initialLimit, int minLimit, int maxLimit) {
+      this.initialLimit = initialLimit;
+      this.minLimit = minLimit;
+      this.maxLimit = maxLimit;
+    }
+
+    public int getInitialLimit() {
+      return initialLimit;
+    }
+
+    public void setInitialLimit(int initialLimit) {
+      this.initialLimit = initialLimit;
+    }
+
+    public int getMinLimit() {
+      return minLimit;
+    }
+
+    public void setMinLimit(int minLimit) {
+      this.minLimit = minLimit;
+    }
+
+    public int getMaxLimit() {
+      return maxLimit;
+    }
+
+    public void setMaxLimit(int maxLimit) {
+      this.maxLimit = maxLimit;
+    }
+  }
+
+  public static class Coalescing {
+
+    /**
+     * Whether concurrent identical bcrypt, scrypt and pbkdf2 matches share one hash computation.
+     * (default: false)
+     */
+    private boolean enabled = false;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+  }
+
+  public static class Upgrade {
+
+    /**
+     * Whether to re-encode outdated password hashes of successful logins in the background.
+     * (default: false)
+     */
+    private boolean enabled = false;
+
+    /**
+     * The maximum number of upgraded passwords per sink batch.
+     * (default: 100)
+     */
+    private int batchSize = 100;
+
+    /**
+     * The maximum delay of pending upgrades.
+     * (default: 5s)
+     */
+    private Duration flushInterval = Duration.ofSeconds(5);
+
+    /**
+     * The maximum number of pending users, further upgrades are dropped.
+     * (default: 10000)
+     */
+    private int maxPending = 10000;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public int getBatchSize() {
+      return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+      this.batchSize = batchSize;
+    }
+
+    public Duration getFlushInterval() {
+      return flushInterval;
+    }
+
+    public void setFlushInterval(Duration flushInterval) {
+      this.flushInterval = flushInterval;
+    }
+
+    public int getMaxPending() {
+      return maxPending;
+    }
+
+    public void setMaxPending(int maxPending) {
+      this.maxPending = maxPending;
+    }
+  }
 }
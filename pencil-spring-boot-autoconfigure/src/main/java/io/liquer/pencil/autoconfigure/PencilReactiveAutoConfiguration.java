@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.liquer.pencil.autoconfigure;
+
+import java.util.Collections;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * The optional auto-configuration of the ReactivePencilPasswordEncoder
+ * if Reactor is on the classpath.
+ * The bounded Scheduler is sized by the {@code liquer.pencil.executor} properties.
+ * @author sius
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnClass(Mono.class)
+@ConditionalOnExpression("${liquer.pencil.enabled:true}")
+@ConditionalOnProperty(prefix = "liquer.pencil.reactive", name = "enabled", matchIfMissing = true)
+@AutoConfigureAfter(PencilAutoConfiguration.class)
+public class PencilReactiveAutoConfiguration {
+
+  /**
+   * The reactive counterpart of the custom DelegatingPasswordEncoder,
+   * the inline encode ids are taken from its registered PasswordEncoders.
+   * @param properties the PencilProperties
+   * @param passwordEncoder the custom DelegatingPasswordEncoder
+   * @return the ReactivePencilPasswordEncoder
+   */
+  @Bean(destroyMethod = "dispose")
+  @ConditionalOnBean(PasswordEncoder.class)
+  public ReactivePencilPasswordEncoder reactivePencilPasswordEncoder(
+      PencilProperties properties,
+      PasswordEncoder passwordEncoder) {
+    final PencilProperties.Executor executor = properties.getExecutor();
+    final int threadCap = executor.getPoolSize() == 0
+        ? Runtime.getRuntime().availableProcessors()
+        : executor.getPoolSize();
+    return new ReactivePencilPasswordEncoder(
+        passwordEncoder,
+        Schedulers.newBoundedElastic(threadCap, executor.getQueueCapacity(), "pencil-reactive"),
+        properties.getReactive().isInline() && passwordEncoder instanceof PencilDelegatingPasswordEncoder
+            ? PencilPasswordEncoderFactory.inlineEncodeIds(
+                ((PencilDelegatingPasswordEncoder) passwordEncoder).getEncoders())
+            : Collections.emptySet(),
+        properties.getDefaultEncodeId());
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.liquer.pencil.autoconfigure;
+
+import io.liquer.pencil.encoder.support.BatchPasswordEncoder;
+import io.liquer.pencil.encoder.support.PasswordPair;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Collects the statistics of the {@code pencil} actuator endpoint:
+ * rolling encode and matches latencies per PasswordEncoder (aliases share the statistics
+ * of their encode id) and the distribution of the stored hash schemes seen in matches,
+ * i.e. the encode id prefix of the encoded passwords or {@link #UNKNOWN_ENCODE_ID}.
+ * A range of a batch is recorded as one latency sample.
+ *
+ * @author sius
+ */
+public final class PencilStatisticsDecorator implements PencilPasswordEncoderDecorator {
+
+  private final Map<String, PasswordEncoder> encoders = new LinkedHashMap<>();
+  private final Map<PasswordEncoder, String> canonicalIds = new IdentityHashMap<>();
+  private final Map<String, Statistics> statistics = new ConcurrentHashMap<>();
+  private final Map<String, LongAdder> schemes = new ConcurrentHashMap<>();
+
+  /**
+   * Aliases are decorated after their encode id, so the first encode id decorated
+   * with an undecorated PasswordEncoder instance owns its statistics.
+   */
+  @Override
+  public synchronized PasswordEncoder decorate(String encodeId, PasswordEncoder passwordEncoder) {
+    String canonicalId = encodeId;
+    if (!UNKNOWN_ENCODE_ID.equals(encodeId)) {
+      final PasswordEncoder undecorated = DecoratedPasswordEncoder.unwrap(passwordEncoder);
+      encoders.put(encodeId, undecorated);
+      canonicalId = canonicalIds.computeIfAbsent(undecorated, e -> encodeId);
+    }
+    return new ObservedPasswordEncoder(
+        passwordEncoder,
+        statistics.computeIfAbsent(canonicalId, id -> new Statistics()),
+        schemes.computeIfAbsent(encodeId, id -> new LongAdder()));
+  }
+
+  /**
+   * The decorated encode ids with their aliases.
+   * @return the aliases by encode id in registration order
+   */
+  public synchronized Map<String, List<String>> getAliases() {
+    return PencilPasswordEncoderFactory.aliases(encoders);
+  }
+
+  /**
+   * The stored hash schemes seen in matches.
+   * @return the number of matches by encode id prefix
+   */
+  public Map<String, Long> getSchemes() {
+    final Map<String, Long> ret = new TreeMap<>();
+    schemes.forEach((id, count) -> {
+      final long sum = count.sum();
+      if (sum > 0) {
+        ret.put(id, sum);
+      }
+    });
+    return Collections.unmodifiableMap(ret);
+  }
+
+  LatencyWindow encodeLatencies(String encodeId) {
+    final Statistics ret = statistics.get(encodeId);
+    return ret == null ? null : ret.encode;
+  }
+
+  LatencyWindow matchesLatencies(String encodeId) {
+    final Statistics ret = statistics.get(encodeId);
+    return ret == null ? null : ret.matches;
+  }
+
+  private static final class Statistics {
+    private final LatencyWindow encode = new LatencyWindow();
+    private final LatencyWindow matches = new LatencyWindow();
+  }
+
+  private static final class ObservedPasswordEncoder implements DecoratedPasswordEncoder {
+    private final PasswordEncoder delegate;
+    private final Statistics statistics;
+    private final LongAdder scheme;
+
+    ObservedPasswordEncoder(PasswordEncoder delegate, Statistics statistics, LongAdder scheme) {
+      this.delegate = delegate;
+      this.statistics = statistics;
+      this.scheme = scheme;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+      final long start = System.nanoTime();
+      try {
+        return delegate.encode(rawPassword);
+      } finally {
+        statistics.encode.record(System.nanoTime() - start);
+      }
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+      scheme.increment();
+      final long start = System.nanoTime();
+      try {
+        return delegate.matches(rawPassword, encodedPassword);
+      } finally {
+        statistics.matches.record(System.nanoTime() - start);
+      }
+    }
+
+    @Override
+    public void encodeRange(List<? extends CharSequence> rawPasswords, int from, int to, String[] ret) {
+      if (!DecoratedPasswordEncoder.isBatch(delegate)) {
+        DecoratedPasswordEncoder.super.encodeRange(rawPasswords, from, to, ret);
+        return;
+      }
+      final long start = System.nanoTime();
+      try {
+        ((BatchPasswordEncoder) delegate).encodeRange(rawPasswords, from, to, ret);
+      } finally {
+        statistics.encode.record(System.nanoTime() - start);
+      }
+    }
+
+    @Override
+    public void matchesRange(List<PasswordPair> passwords, int from, int to, boolean[] ret) {
+      if (!DecoratedPasswordEncoder.isBatch(delegate)) {
+        DecoratedPasswordEncoder.super.matchesRange(passwords, from, to, ret);
+        return;
+      }
+      scheme.add(to - from);
+      final long start = System.nanoTime();
+      try {
+        ((BatchPasswordEncoder) delegate).matchesRange(passwords, from, to, ret);
+      } finally {
+        statistics.matches.record(System.nanoTime() - start);
+      }
+    }
+
+    @Override
+    public PasswordEncoder getDelegate() {
+      return delegate;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+      return delegate.upgradeEncoding(encodedPassword);
+    }
+  }
+}
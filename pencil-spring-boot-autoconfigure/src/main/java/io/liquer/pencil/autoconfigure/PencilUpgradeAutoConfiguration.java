@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.liquer.pencil.autoconfigure;
+
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * The optional auto-configuration of the asynchronous password hash upgrade.
+ * The PencilPasswordUpgrader is registered with a custom PencilPasswordUpgradeSink
+ * or a UserDetailsPasswordService bean, use it with a PencilDaoAuthenticationProvider.
+ * @author sius
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnClass(DaoAuthenticationProvider.class)
+@ConditionalOnExpression("${liquer.pencil.enabled:true}")
+@ConditionalOnProperty(prefix = "liquer.pencil.upgrade", name = "enabled")
+@AutoConfigureAfter(PencilAutoConfiguration.class)
+public class PencilUpgradeAutoConfiguration {
+
+  /**
+   * The sink that updates the upgraded passwords with the UserDetailsPasswordService.
+   * @param userDetailsPasswordService the UserDetailsPasswordService
+   * @return the sink
+   */
+  @Bean
+  @ConditionalOnMissingBean(PencilPasswordUpgradeSink.class)
+  @ConditionalOnBean(UserDetailsPasswordService.class)
+  public PencilPasswordUpgradeSink pencilPasswordUpgradeSink(
+      UserDetailsPasswordService userDetailsPasswordService) {
+    return PencilPasswordUpgradeSink.of(userDetailsPasswordService);
+  }
+
+  /**
+   * The asynchronous password upgrader.
+   * @param properties the PencilProperties
+   * @param passwordEncoder the custom DelegatingPasswordEncoder
+   * @param sink the sink for the upgraded passwords
+   * @return the PencilPasswordUpgrader
+   */
+  @Bean
+  @ConditionalOnBean({ PasswordEncoder.class, PencilPasswordUpgradeSink.class })
+  public PencilPasswordUpgrader pencilPasswordUpgrader(
+      PencilProperties properties,
+      PasswordEncoder passwordEncoder,
+      PencilPasswordUpgradeSink sink) {
+    final PencilProperties.Upgrade upgrade = properties.getUpgrade();
+    return new PencilPasswordUpgrader(
+        passwordEncoder,
+        sink,
+        upgrade.getBatchSize(),
+        upgrade.getFlushInterval(),
+        upgrade.getMaxPending());
+  }
+}
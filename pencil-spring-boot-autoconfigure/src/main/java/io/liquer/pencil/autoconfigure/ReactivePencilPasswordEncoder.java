@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.liquer.pencil.autoconfigure;
+
+import java.util.Set;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Reactive counterpart of the custom DelegatingPasswordEncoder for non-blocking callers,
+ * e.g. WebFlux event loops. Encode ids in the inline set (the cheap salted SHA hashes)
+ * run on the subscribing thread, everything else (bcrypt, scrypt, pbkdf2 and unknown ids)
+ * is offloaded to the bounded Scheduler. Encoded passwords without an encode id
+ * are handled like the default encode id.
+ * The Scheduler is disposed with the encoder.
+ *
+ * @author sius
+ */
+public final class ReactivePencilPasswordEncoder implements Disposable {
+
+  private static final String PREFIX = "{";
+  private static final String SUFFIX = "}";
+
+  private final PasswordEncoder passwordEncoder;
+  private final Scheduler scheduler;
+  private final Set<String> inlineEncodeIds;
+  private final boolean inlineDefault;
+
+  /**
+   * Creates the reactive PasswordEncoder.
+   * @param passwordEncoder the blocking DelegatingPasswordEncoder
+   * @param scheduler the bounded Scheduler for the expensive hashes
+   * @param inlineEncodeIds the encode ids to run inline
+   * @param defaultEncodeId the default encode id of the DelegatingPasswordEncoder
+   */
+  public ReactivePencilPasswordEncoder(
+      PasswordEncoder passwordEncoder,
+      Scheduler scheduler,
+      Set<String> inlineEncodeIds,
+      String defaultEncodeId) {
+    this.passwordEncoder = passwordEncoder;
+    this.scheduler = scheduler;
+    this.inlineEncodeIds = inlineEncodeIds;
+    this.inlineDefault = inlineEncodeIds.contains(defaultEncodeId);
+  }
+
+  /**
+   * Encode the raw password with the default encode id.
+   * @param rawPassword the raw password
+   * @return the encoded password, empty if the raw password is null
+   */
+  public Mono<String> encode(CharSequence rawPassword) {
+    return offload(Mono.fromCallable(() -> passwordEncoder.encode(rawPassword)), inlineDefault);
+  }
+
+  /**
+   * Verify the raw password.
+   * @param rawPassword the raw password
+   * @param encodedPassword the encoded password
+   * @return true if the raw password matches the encoded password
+   */
+  public Mono<Boolean> matches(CharSequence rawPassword, String encodedPassword) {
+    return offload(
+        Mono.fromCallable(() -> passwordEncoder.matches(rawPassword, encodedPassword)),
+        isInline(encodedPassword));
+  }
+
+  /**
+   * Whether the encoded password should be re-encoded, always inline.
+   * @param encodedPassword the encoded password
+   * @return true if the encoded password should be re-encoded
+   */
+  public Mono<Boolean> upgradeEncoding(String encodedPassword) {
+    return Mono.fromCallable(() -> passwordEncoder.upgradeEncoding(encodedPassword));
+  }
+
+  /* the encode id is extracted the same way as in the DelegatingPasswordEncoder */
+  boolean isInline(String encodedPassword) {
+    if (encodedPassword == null || !encodedPassword.startsWith(PREFIX)) {
+      return inlineDefault;
+    }
+    final int end = encodedPassword.indexOf(SUFFIX);
+    if (end < 0) {
+      return inlineDefault;
+    }
+    return inlineEncodeIds.contains(encodedPassword.substring(PREFIX.length(), end));
+  }
+
+  @Override
+  public void dispose() {
+    scheduler.dispose();
+  }
+
+  @Override
+  public boolean isDisposed() {
+    return scheduler.isDisposed();
+  }
+
+  private <T> Mono<T> offload(Mono<T> operation, boolean inline) {
+    return inline ? operation : operation.subscribeOn(scheduler);
+  }
+}
@@ -18,11 +18,13 @@
 
 package io.liquer.pencil.autoconfigure;
 
+import io.liquer.pencil.encoder.support.SaltSources;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.context.ConfigurationPropertiesAutoConfiguration;
 import org.springframework.boot.test.context.runner.ApplicationContextRunner;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -113,6 +115,21 @@ public class AutoConfigurationTest {
     });
   }
 
+  @Test
+  void enabled_passwordEncoderBean_should_be_loaded_with_prefetch_salt_source() {
+    this.contextRunner
+            .withConfiguration(AutoConfigurations.of(ConfigurationPropertiesAutoConfiguration.class))
+            .withPropertyValues("liquer.pencil.salt-source=prefetch")
+            .withPropertyValues("liquer.pencil.default-encode-id=SSHA512")
+            .withUserConfiguration(MyConfiguration.class).run((context) -> {
+      Assertions.assertThat(context.getBean(PencilProperties.class).getSaltSource())
+              .isSameAs(SaltSources.Type.PREFETCH);
+      final PasswordEncoder passwordEncoder = context.getBean(PasswordEncoder.class);
+      Assertions.assertThat(passwordEncoder.matches("Test", passwordEncoder.encode("Test")))
+              .isTrue();
+    });
+  }
+
   @Configuration
   static class MyConfiguration {
 
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.liquer.pencil.autoconfigure;
+
+import io.liquer.pencil.encoder.SSHA512PasswordEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.context.ConfigurationPropertiesAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * @author sius
+ */
+public class PencilCoalescingDecoratorTest {
+
+  private final ApplicationContextRunner contextRunner =
+      new ApplicationContextRunner()
+          .withConfiguration(AutoConfigurations.of(
+              ConfigurationPropertiesAutoConfiguration.class,
+              PencilAutoConfiguration.class));
+
+  @Test
+  void coalescing_should_be_opt_in() {
+    this.contextRunner.run((context) ->
+      Assertions.assertThat(context).doesNotHaveBean(PencilCoalescingDecorator.class));
+    this.contextRunner
+        .withPropertyValues("liquer.pencil.coalescing.enabled=true")
+        .run((context) -> {
+      Assertions.assertThat(context).hasSingleBean(PencilCoalescingDecorator.class);
+      final PasswordEncoder passwordEncoder = context.getBean(PasswordEncoder.class);
+      final String encodedPassword = passwordEncoder.encode("Test");
+      Assertions.assertThat(passwordEncoder.matches("Test", encodedPassword)).isTrue();
+      Assertions.assertThat(passwordEncoder.matches("Tesd", encodedPassword)).isFalse();
+    });
+  }
+
+  @Test
+  void identical_concurrent_matches_should_share_one_computation() throws Exception {
+    final PencilCoalescingDecorator decorator = new PencilCoalescingDecorator();
+    final BlockingPasswordEncoder blocking = new BlockingPasswordEncoder();
+    final PasswordEncoder passwordEncoder = decorator.decorate("bcrypt", blocking);
+
+    final CompletableFuture<Boolean> leader =
+        CompletableFuture.supplyAsync(() -> passwordEncoder.matches("Test", "Test"));
+    Assertions.assertThat(blocking.started.await(5, TimeUnit.SECONDS)).isTrue();
+    final List<CompletableFuture<Boolean>> results = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      final CompletableFuture<Boolean> result = new CompletableFuture<>();
+      results.add(result);
+      new Thread(() -> result.complete(passwordEncoder.matches("Test", "Test"))).start();
+    }
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (decorator.getCoalescedCount() < 4 && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+    Assertions.assertThat(decorator.getCoalescedCount()).isEqualTo(4);
+
+    blocking.release.countDown();
+    Assertions.assertThat(leader.get(5, TimeUnit.SECONDS)).isTrue();
+    for (CompletableFuture<Boolean> result : results) {
+      Assertions.assertThat(result.get(5, TimeUnit.SECONDS)).isTrue();
+    }
+    Assertions.assertThat(blocking.calls.get()).isEqualTo(1);
+    Assertions.assertThat(decorator.getInflightCount()).isZero();
+
+    Assertions.assertThat(passwordEncoder.matches("Tesd", "Test")).isFalse();
+    Assertions.assertThat(blocking.calls.get()).isEqualTo(2);
+  }
+
+  @Test
+  void leader_exceptions_should_be_shared() throws Exception {
+    final PencilCoalescingDecorator decorator = new PencilCoalescingDecorator();
+    final BlockingPasswordEncoder blocking = new BlockingPasswordEncoder();
+    final PasswordEncoder passwordEncoder = decorator.decorate("bcrypt", blocking);
+
+    final CompletableFuture<Boolean> leader =
+        CompletableFuture.supplyAsync(() -> passwordEncoder.matches("Test", "fail"));
+    Assertions.assertThat(blocking.started.await(5, TimeUnit.SECONDS)).isTrue();
+    final CompletableFuture<Boolean> follower = new CompletableFuture<>();
+    final Thread thread = new Thread(() -> {
+      try {
+        follower.complete(passwordEncoder.matches("Test", "fail"));
+      } catch (RuntimeException e) {
+        follower.completeExceptionally(e);
+      }
+    });
+    thread.start();
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (decorator.getCoalescedCount() < 1 && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+    blocking.release.countDown();
+
+    Assertions.assertThatThrownBy(leader::join)
+        .isInstanceOf(CompletionException.class)
+        .hasCauseInstanceOf(IllegalArgumentException.class);
+    Assertions.assertThatThrownBy(follower::join)
+        .isInstanceOf(CompletionException.class)
+        .hasCauseInstanceOf(IllegalArgumentException.class);
+    Assertions.assertThat(blocking.calls.get()).isEqualTo(1);
+  }
+
+  @Test
+  void leader_errors_should_complete_the_followers() throws Exception {
+    final PencilCoalescingDecorator decorator = new PencilCoalescingDecorator();
+    final BlockingPasswordEncoder blocking = new BlockingPasswordEncoder();
+    final PasswordEncoder passwordEncoder = decorator.decorate("bcrypt", blocking);
+
+    final CompletableFuture<Boolean> leader =
+        CompletableFuture.supplyAsync(() -> passwordEncoder.matches("Test", "error"));
+    Assertions.assertThat(blocking.started.await(5, TimeUnit.SECONDS)).isTrue();
+    final CompletableFuture<Boolean> follower = new CompletableFuture<>();
+    final Thread thread = new Thread(() -> {
+      try {
+        follower.complete(passwordEncoder.matches("Test", "error"));
+      } catch (Throwable e) {
+        follower.completeExceptionally(e);
+      }
+    });
+    thread.start();
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (decorator.getCoalescedCount() < 1 && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+    Assertions.assertThat(decorator.getCoalescedCount()).isEqualTo(1);
+    blocking.release.countDown();
+
+    Assertions.assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS))
+        .hasCauseInstanceOf(StackOverflowError.class);
+    Assertions.assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS))
+        .hasCauseInstanceOf(StackOverflowError.class);
+    Assertions.assertThat(decorator.getInflightCount()).isZero();
+  }
+
+  @Test
+  void cheap_encoders_should_not_be_decorated() {
+    final PasswordEncoder ssha512 = new SSHA512PasswordEncoder();
+    Assertions.assertThat(new PencilCoalescingDecorator().decorate("SSHA512", ssha512)).isSameAs(ssha512);
+  }
+
+  @Test
+  void cheap_encoders_behind_other_decorators_should_not_be_decorated() {
+    final PasswordEncoder limited = new PencilLimiterDecorator(new PencilProperties.Limiter())
+        .decorate("SSHA512", new SSHA512PasswordEncoder());
+    Assertions.assertThat(new PencilCoalescingDecorator().decorate("SSHA512", limited)).isSameAs(limited);
+  }
+
+  private static final class BlockingPasswordEncoder implements PasswordEncoder {
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+      return rawPassword.toString();
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+      calls.incrementAndGet();
+      started.countDown();
+      try {
+        release.await(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      if ("fail".equals(encodedPassword)) {
+        throw new IllegalArgumentException("fail");
+      }
+      if ("error".equals(encodedPassword)) {
+        throw new StackOverflowError();
+      }
+      return rawPassword.toString().equals(encodedPassword);
+    }
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.liquer.pencil.autoconfigure;
+
+import io.liquer.pencil.encoder.SSHAPasswordEncoder;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+
+/**
+ * @author sius
+ */
+public class PencilDaoAuthenticationProviderTest {
+
+  private final PasswordEncoder passwordEncoder =
+      PencilPasswordEncoderFactory.passwordEncoder(new PencilProperties());
+
+  @Test
+  void legacy_hashes_should_be_upgraded_after_a_successful_login() {
+    final List<PencilPasswordUpgrade> upgrades = new CopyOnWriteArrayList<>();
+    try (PencilPasswordUpgrader upgrader = new PencilPasswordUpgrader(
+        passwordEncoder, upgrades::addAll, 10, Duration.ofHours(1), 10)) {
+      final PencilDaoAuthenticationProvider provider = provider(upgrader);
+
+      provider.authenticate(new UsernamePasswordAuthenticationToken("legacy", "Test"));
+      provider.authenticate(new UsernamePasswordAuthenticationToken("current", "Test"));
+      Assertions.assertThat(upgrader.getPendingCount()).isEqualTo(1);
+      upgrader.flush();
+
+      Assertions.assertThat(upgrades).hasSize(1);
+      Assertions.assertThat(upgrades.get(0).getUser().getUsername()).isEqualTo("legacy");
+      Assertions.assertThat(upgrades.get(0).getEncodedPassword()).startsWith("{bcrypt}");
+    }
+  }
+
+  private PencilDaoAuthenticationProvider provider(PencilPasswordUpgrader upgrader) {
+    final InMemoryUserDetailsManager users = new InMemoryUserDetailsManager(
+        User.withUsername("legacy")
+            .password("{SSHA}" + new SSHAPasswordEncoder("", 8).encode("Test"))
+            .roles("USER")
+            .build(),
+        User.withUsername("current")
+            .password(passwordEncoder.encode("Test"))
+            .roles("USER")
+            .build());
+    final PencilDaoAuthenticationProvider ret = new PencilDaoAuthenticationProvider(upgrader);
+    ret.setUserDetailsService(users);
+    ret.setPasswordEncoder(passwordEncoder);
+    return ret;
+  }
+}
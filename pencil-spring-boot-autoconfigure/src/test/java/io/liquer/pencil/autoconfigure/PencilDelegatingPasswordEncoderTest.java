@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.liquer.pencil.autoconfigure;
+
+import io.liquer.pencil.encoder.SSHA256PasswordEncoder;
+import io.liquer.pencil.encoder.support.BatchPasswordEncoder;
+import io.liquer.pencil.encoder.support.PasswordPair;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author sius
+ */
+public class PencilDelegatingPasswordEncoderTest {
+
+  @Test
+  void batch_encoded_passwords_should_have_the_encode_id() {
+    final PencilProperties properties = new PencilProperties();
+    properties.setDefaultEncodeId("SSHA512");
+    final BatchPasswordEncoder encoder =
+        (BatchPasswordEncoder) PencilPasswordEncoderFactory.passwordEncoder(properties);
+    final List<String> raw = passwords(200);
+    raw.set(5, null);
+
+    final List<String> encoded = encoder.encodeAll(raw, ForkJoinPool.commonPool());
+    assertThat(encoded).hasSize(raw.size());
+    assertThat(encoded.get(5)).isNull();
+    for (int i = 0; i < raw.size(); i++) {
+      if (i != 5) {
+        assertThat(encoded.get(i)).startsWith("{SSHA512}");
+        assertThat(encoder.matches(raw.get(i), encoded.get(i))).isTrue();
+      }
+    }
+  }
+
+  @Test
+  void non_batch_encode_id_should_encode_one_by_one() {
+    final PencilProperties properties = new PencilProperties();
+    properties.setDefaultEncodeId("bcrypt");
+    final BatchPasswordEncoder encoder =
+        (BatchPasswordEncoder) PencilPasswordEncoderFactory.passwordEncoder(properties);
+    final List<String> encoded = encoder.encodeAll(Arrays.asList("a", null));
+    assertThat(encoded.get(0)).startsWith("{bcrypt}$2a$");
+    assertThat(encoded.get(1)).isNull();
+  }
+
+  @Test
+  void mixed_encode_ids_should_match_in_input_order() {
+    final BatchPasswordEncoder encoder =
+        (BatchPasswordEncoder) PencilPasswordEncoderFactory.passwordEncoder(new PencilProperties());
+    final List<PasswordPair> pairs = pairs();
+    final List<Boolean> expected = new ArrayList<>();
+    for (PasswordPair pair : pairs) {
+      expected.add(pair != null && encoder.matches(pair.getRawPassword(), pair.getEncodedPassword()));
+    }
+    assertThat(expected).contains(true, false);
+    assertThat(encoder.matchesAll(pairs)).isEqualTo(expected);
+    assertThat(encoder.matchesAll(pairs, ForkJoinPool.commonPool())).isEqualTo(expected);
+  }
+
+  @Test
+  void decorated_encoders_should_see_every_password() {
+    final AtomicInteger matches = new AtomicInteger();
+    final PencilPasswordEncoderDecorator counting = (encodeId, delegate) -> new PasswordEncoder() {
+      @Override
+      public String encode(CharSequence rawPassword) {
+        return delegate.encode(rawPassword);
+      }
+
+      @Override
+      public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        matches.incrementAndGet();
+        return delegate.matches(rawPassword, encodedPassword);
+      }
+    };
+    final BatchPasswordEncoder encoder = (BatchPasswordEncoder) PencilPasswordEncoderFactory
+        .passwordEncoder(new PencilProperties(), Collections.singletonList(counting));
+    final List<PasswordPair> pairs = pairs();
+    pairs.removeIf(pair -> pair == null);
+
+    assertThat(encoder.matchesAll(pairs, ForkJoinPool.commonPool())).contains(true, false);
+    assertThat(matches.get()).isEqualTo(pairs.size());
+  }
+
+  @Test
+  void ranges_should_pass_through_recording_decorators() {
+    final MeterRegistry registry = new SimpleMeterRegistry();
+    final PencilProperties properties = new PencilProperties();
+    properties.setDefaultEncodeId("SSHA256");
+    final BatchPasswordEncoder encoder = (BatchPasswordEncoder) PencilPasswordEncoderFactory
+        .passwordEncoder(properties, Arrays.asList(new PencilJfrDecorator(), new PencilMetricsDecorator(registry)));
+    final List<String> raw = passwords(40);
+
+    final List<String> encoded = encoder.encodeAll(raw);
+    final List<PasswordPair> pairs = new ArrayList<>();
+    for (int i = 0; i < raw.size(); i++) {
+      pairs.add(new PasswordPair(i % 2 == 0 ? raw.get(i) : "wrong", encoded.get(i)));
+    }
+    final List<Boolean> matches = encoder.matchesAll(pairs);
+
+    for (int i = 0; i < raw.size(); i++) {
+      assertThat(encoded.get(i)).startsWith("{SSHA256}");
+      assertThat(matches.get(i)).isEqualTo(i % 2 == 0);
+    }
+    assertThat(registry.get(PencilMetricsDecorator.TIMER)
+        .tags("id", "SSHA256", "operation", "encode").timer().count()).isEqualTo(1);
+    assertThat(registry.get(PencilMetricsDecorator.TIMER)
+        .tags("id", "SSHA256", "operation", "matches").timer().count()).isEqualTo(1);
+    assertThat(registry.get(PencilMetricsDecorator.MATCH_FAILURES)
+        .tags("id", "SSHA256").functionCounter().count()).isEqualTo(20);
+    assertThat(registry.get(PencilMetricsDecorator.MALFORMED)
+        .tags("id", "SSHA256").functionCounter().count()).isZero();
+  }
+
+  /* SSHA-256, bcrypt, unknown and missing encode ids, wrong passwords and a null pair */
+  private static List<PasswordPair> pairs() {
+    final SSHA256PasswordEncoder ssha256 = new SSHA256PasswordEncoder("", 8);
+    final BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(4);
+    final List<PasswordPair> ret = new ArrayList<>();
+    for (String raw : passwords(40)) {
+      ret.add(new PasswordPair(raw, "{SSHA-256}" + ssha256.encode(raw)));
+      ret.add(new PasswordPair("wrong", "{SSHA256}" + ssha256.encode(raw)));
+    }
+    ret.add(new PasswordPair("a", "{bcrypt}" + bcrypt.encode("a")));
+    ret.add(new PasswordPair("a", "{unknown}" + ssha256.encode("a")));
+    ret.add(new PasswordPair("a", bcrypt.encode("a")));
+    ret.add(null);
+    ret.add(new PasswordPair("a", null));
+    Collections.shuffle(ret);
+    return ret;
+  }
+
+  private static List<String> passwords(int size) {
+    final List<String> ret = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      ret.add("password-" + i);
+    }
+    return ret;
+  }
+}
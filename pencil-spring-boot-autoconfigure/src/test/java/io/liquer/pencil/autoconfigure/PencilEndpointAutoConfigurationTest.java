@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.liquer.pencil.autoconfigure;
+
+import io.liquer.pencil.autoconfigure.PencilEndpoint.EncoderDescriptor;
+import io.liquer.pencil.autoconfigure.PencilEndpoint.PencilDescriptor;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.context.ConfigurationPropertiesAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * @author sius
+ */
+public class PencilEndpointAutoConfigurationTest {
+
+  private final ApplicationContextRunner contextRunner =
+      new ApplicationContextRunner()
+          .withConfiguration(AutoConfigurations.of(
+              ConfigurationPropertiesAutoConfiguration.class,
+              PencilAutoConfiguration.class,
+              PencilEndpointAutoConfiguration.class));
+
+  @Test
+  void unexposed_endpoint_should_not_be_loaded() {
+    this.contextRunner.run((context) -> {
+      Assertions.assertThat(context).hasSingleBean(PasswordEncoder.class);
+      Assertions.assertThat(context).doesNotHaveBean(PencilEndpoint.class);
+      Assertions.assertThat(context).doesNotHaveBean(PencilStatisticsDecorator.class);
+    });
+  }
+
+  @Test
+  void endpoint_should_describe_encoders_and_schemes() {
+    this.contextRunner
+        .withPropertyValues(
+            "management.endpoints.web.exposure.include=pencil",
+            "liquer.pencil.default-encode-id=SSHA256")
+        .run((context) -> {
+      final PasswordEncoder passwordEncoder = context.getBean(PasswordEncoder.class);
+      final String encodedPassword = passwordEncoder.encode("Test");
+      Assertions.assertThat(passwordEncoder.matches("Test", encodedPassword)).isTrue();
+      Assertions.assertThat(passwordEncoder.matches("Test", "{SSHA-256}" + encodedPassword.substring(9)))
+          .isTrue();
+      Assertions.assertThat(passwordEncoder.matches("Test", "{ldap}sVoGssCjBP6qNXsBPIO+9CGt7wHEscLU1P1g9Q=="))
+          .isTrue();
+      Assertions.assertThat(passwordEncoder.matches("Test", "{MD5}098f6bcd4621d373cade4e832627b4f6"))
+          .isFalse();
+
+      final PencilDescriptor descriptor = context.getBean(PencilEndpoint.class).pencil();
+      Assertions.assertThat(descriptor.getProperties().getDefaultEncodeId()).isEqualTo("SSHA256");
+      Assertions.assertThat(descriptor.getEncoders()).containsKeys("bcrypt", "ldap", "SSHA256", "unknown");
+      Assertions.assertThat(descriptor.getEncoders()).doesNotContainKeys("SSHA-256", "SHA1");
+      Assertions.assertThat(descriptor.getEncoders().get("ldap").getAliases())
+          .containsExactly("SHA", "SHA1", "SHA-1");
+
+      final EncoderDescriptor ssha256 = descriptor.getEncoders().get("SSHA256");
+      Assertions.assertThat(ssha256.getAliases()).containsExactly("SSHA-256");
+      Assertions.assertThat(ssha256.getEncode().getCount()).isEqualTo(1);
+      Assertions.assertThat(ssha256.getMatches().getCount()).isEqualTo(2);
+      Assertions.assertThat(ssha256.getMatches().getP50()).isGreaterThan(0.0);
+      Assertions.assertThat(ssha256.getMatches().getMax())
+          .isGreaterThanOrEqualTo(ssha256.getMatches().getP99());
+      Assertions.assertThat(descriptor.getEncoders().get("bcrypt").getMatches().getCount()).isZero();
+      Assertions.assertThat(descriptor.getEncoders().get("unknown").getMatches().getCount()).isEqualTo(1);
+
+      Assertions.assertThat(descriptor.getSchemes())
+          .containsEntry("SSHA256", 1L)
+          .containsEntry("SSHA-256", 1L)
+          .containsEntry("ldap", 1L)
+          .containsEntry("unknown", 1L)
+          .doesNotContainKey("bcrypt");
+    });
+  }
+
+  @Test
+  void latency_percentiles_should_use_the_nearest_rank() {
+    final long[] sorted = new long[LatencyWindow.SIZE];
+    for (int i = 0; i < sorted.length; i++) {
+      sorted[i] = i + 1;
+    }
+    Assertions.assertThat(LatencyWindow.percentile(new long[0], 0.5)).isZero();
+    Assertions.assertThat(LatencyWindow.percentile(sorted, 0.5)).isEqualTo(512);
+    Assertions.assertThat(LatencyWindow.percentile(sorted, 0.99)).isEqualTo(1014);
+    Assertions.assertThat(LatencyWindow.percentile(sorted, 1.0)).isEqualTo(LatencyWindow.SIZE);
+  }
+
+  @Test
+  void latency_window_should_keep_the_recent_samples() {
+    final LatencyWindow window = new LatencyWindow();
+    Assertions.assertThat(window.snapshot()).isEmpty();
+    window.record(5);
+    Assertions.assertThat(window.snapshot()).containsExactly(5);
+    for (int i = 0; i < 100; i++) {
+      window.record(1);
+    }
+    /* after 32 times the window size an older sample survives with a probability of about e^-32 */
+    final int recent = LatencyWindow.SIZE * 32;
+    for (int i = 0; i < recent; i++) {
+      window.record(1000);
+    }
+    final long[] sorted = window.snapshot();
+    Assertions.assertThat(window.count()).isEqualTo(1 + 100 + recent);
+    Assertions.assertThat(sorted).hasSize(LatencyWindow.SIZE).containsOnly(1000L);
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.liquer.pencil.autoconfigure;
+
+import io.liquer.pencil.encoder.SSHA512PasswordEncoder;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.context.ConfigurationPropertiesAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * @author sius
+ */
+public class PencilHashingExecutorTest {
+
+  private final ApplicationContextRunner contextRunner =
+      new ApplicationContextRunner()
+          .withConfiguration(AutoConfigurations.of(
+              ConfigurationPropertiesAutoConfiguration.class,
+              PencilAutoConfiguration.class));
+
+  @Test
+  void hashingExecutor_should_be_opt_in() {
+    this.contextRunner.run((context) ->
+      Assertions.assertThat(context).doesNotHaveBean(PencilHashingExecutor.class));
+  }
+
+  @Test
+  void enabled_hashingExecutor_should_delegate_to_the_passwordEncoder() {
+    this.contextRunner
+        .withPropertyValues(
+            "liquer.pencil.default-encode-id=SSHA512",
+            "liquer.pencil.executor.enabled=true",
+            "liquer.pencil.executor.pool-size=2",
+            "liquer.pencil.executor.max-queue-time=500ms")
+        .run((context) -> {
+      final PencilHashingExecutor executor = context.getBean(PencilHashingExecutor.class);
+      final String encodedPassword = executor.encode("Test").get(5, TimeUnit.SECONDS);
+      Assertions.assertThat(encodedPassword).startsWith("{SSHA512}");
+      Assertions.assertThat(executor.matches("Test", encodedPassword).get(5, TimeUnit.SECONDS)).isTrue();
+      Assertions.assertThat(executor.matches("Tesd", encodedPassword).get(5, TimeUnit.SECONDS)).isFalse();
+    });
+  }
+
+  @Test
+  void operations_should_run_on_the_hashing_threads() throws Exception {
+    try (PencilHashingExecutor executor =
+        new PencilHashingExecutor(new ThreadNamePasswordEncoder(), 1, 1, Duration.ofSeconds(5))) {
+      Assertions.assertThat(executor.encode("Test").get(5, TimeUnit.SECONDS)).isEqualTo("pencil-hash-1");
+    }
+  }
+
+  @Test
+  void full_queue_should_be_rejected_fast() throws Exception {
+    final BlockingPasswordEncoder passwordEncoder = new BlockingPasswordEncoder();
+    try (PencilHashingExecutor executor =
+        new PencilHashingExecutor(passwordEncoder, 1, 1, Duration.ofSeconds(5))) {
+      final CompletableFuture<Boolean> running = executor.matches("Test", "Test");
+      Assertions.assertThat(passwordEncoder.started.await(5, TimeUnit.SECONDS)).isTrue();
+      final CompletableFuture<Boolean> queued = executor.matches("Test", "Test");
+      final CompletableFuture<Boolean> rejected = executor.matches("Test", "Test");
+
+      Assertions.assertThat(rejected.isCompletedExceptionally()).isTrue();
+      Assertions.assertThatThrownBy(rejected::get)
+          .isInstanceOf(ExecutionException.class)
+          .hasCauseInstanceOf(RejectedExecutionException.class);
+      Assertions.assertThat(executor.getQueueSize()).isEqualTo(1);
+      Assertions.assertThat(executor.getRejectedCount()).isEqualTo(1);
+
+      passwordEncoder.release.countDown();
+      Assertions.assertThat(running.get(5, TimeUnit.SECONDS)).isTrue();
+      Assertions.assertThat(queued.get(5, TimeUnit.SECONDS)).isTrue();
+    }
+  }
+
+  @Test
+  void expired_queue_time_should_be_rejected() throws Exception {
+    final BlockingPasswordEncoder passwordEncoder = new BlockingPasswordEncoder();
+    final AtomicLong nanoTime = new AtomicLong();
+    try (PencilHashingExecutor executor =
+        new PencilHashingExecutor(passwordEncoder, 1, 10, Duration.ofMillis(200), nanoTime::get)) {
+      final CompletableFuture<Boolean> running = executor.matches("Test", "Test");
+      Assertions.assertThat(passwordEncoder.started.await(5, TimeUnit.SECONDS)).isTrue();
+      final CompletableFuture<Boolean> queued = executor.matches("Test", "Test");
+      nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(201));
+      passwordEncoder.release.countDown();
+
+      Assertions.assertThat(running.get(5, TimeUnit.SECONDS)).isTrue();
+      Assertions.assertThatThrownBy(() -> queued.get(5, TimeUnit.SECONDS))
+          .isInstanceOf(ExecutionException.class)
+          .hasCauseInstanceOf(RejectedExecutionException.class);
+      Assertions.assertThat(executor.getRejectedCount()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  void errors_should_complete_the_future() throws Exception {
+    try (PencilHashingExecutor executor =
+        new PencilHashingExecutor(new ErrorPasswordEncoder(), 1, 1, Duration.ofSeconds(5))) {
+      Assertions.assertThatThrownBy(() -> executor.encode("Test").get(5, TimeUnit.SECONDS))
+          .isInstanceOf(ExecutionException.class)
+          .hasCauseInstanceOf(StackOverflowError.class);
+      Assertions.assertThatThrownBy(() -> executor.matches("Test", "Test").get(5, TimeUnit.SECONDS))
+          .isInstanceOf(ExecutionException.class)
+          .hasCauseInstanceOf(StackOverflowError.class);
+    }
+  }
+
+  @Test
+  void invalid_arguments_should_throw() {
+    final PasswordEncoder passwordEncoder = new SSHA512PasswordEncoder();
+    Assertions.assertThatThrownBy(() -> new PencilHashingExecutor(passwordEncoder, -1, 1, Duration.ZERO))
+        .isInstanceOf(IllegalArgumentException.class);
+    Assertions.assertThatThrownBy(() -> new PencilHashingExecutor(passwordEncoder, 1, 0, Duration.ZERO))
+        .isInstanceOf(IllegalArgumentException.class);
+    Assertions.assertThatThrownBy(() -> new PencilHashingExecutor(passwordEncoder, 1, 1, null))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static final class ThreadNamePasswordEncoder implements PasswordEncoder {
+    @Override
+    public String encode(CharSequence rawPassword) {
+      return Thread.currentThread().getName();
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+      return false;
+    }
+  }
+
+  private static final class ErrorPasswordEncoder implements PasswordEncoder {
+    @Override
+    public String encode(CharSequence rawPassword) {
+      throw new StackOverflowError();
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+      throw new StackOverflowError();
+    }
+  }
+
+  private static final class BlockingPasswordEncoder implements PasswordEncoder {
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+      return rawPassword.toString();
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+      started.countDown();
+      try {
+        release.await(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return rawPassword.toString().equals(encodedPassword);
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.liquer.pencil.autoconfigure;
+
+import io.liquer.pencil.encoder.SSHA512PasswordEncoder;
+import io.liquer.pencil.encoder.jfr.PencilEncodeEvent;
+import io.liquer.pencil.encoder.jfr.PencilMatchEvent;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.context.ConfigurationPropertiesAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * @author sius
+ */
+public class PencilJfrDecoratorTest {
+
+  private final ApplicationContextRunner contextRunner =
+      new ApplicationContextRunner()
+          .withConfiguration(AutoConfigurations.of(
+              ConfigurationPropertiesAutoConfiguration.class,
+              PencilAutoConfiguration.class));
+
+  @Test
+  void jfrDecorator_should_be_loaded_by_default() {
+    this.contextRunner.run((context) ->
+      Assertions.assertThat(context).hasSingleBean(PencilJfrDecorator.class));
+  }
+
+  @Test
+  void disabled_jfrDecorator_should_not_be_loaded() {
+    this.contextRunner
+        .withPropertyValues("liquer.pencil.jfr.enabled=false")
+        .run((context) -> {
+      Assertions.assertThat(context).hasSingleBean(PasswordEncoder.class);
+      Assertions.assertThat(context).doesNotHaveBean(PencilJfrDecorator.class);
+    });
+  }
+
+  @Test
+  void encoders_with_builtin_events_should_not_be_decorated() {
+    final PencilJfrDecorator decorator = new PencilJfrDecorator();
+    final PasswordEncoder ssha512 = new SSHA512PasswordEncoder();
+    final PasswordEncoder bcrypt = new BCryptPasswordEncoder();
+    Assertions.assertThat(decorator.decorate("SSHA512", ssha512)).isSameAs(ssha512);
+    Assertions.assertThat(decorator.decorate("bcrypt", bcrypt)).isNotSameAs(bcrypt);
+    Assertions.assertThat(DecoratedPasswordEncoder.unwrap(decorator.decorate("bcrypt", bcrypt)))
+        .isSameAs(bcrypt);
+  }
+
+  @Test
+  void bcrypt_should_emit_enabled_events() throws Exception {
+    final Path file = Files.createTempFile("pencil", ".jfr");
+    try {
+      this.contextRunner.run((context) -> {
+        final PasswordEncoder passwordEncoder = context.getBean(PasswordEncoder.class);
+        try (Recording recording = new Recording()) {
+          recording.enable(PencilEncodeEvent.NAME).withThreshold(Duration.ZERO);
+          recording.enable(PencilMatchEvent.NAME).withThreshold(Duration.ZERO);
+          recording.start();
+          final String encodedPassword = passwordEncoder.encode("Test");
+          passwordEncoder.matches("Test", encodedPassword);
+          passwordEncoder.matches("Tesd", encodedPassword);
+          recording.stop();
+          recording.dump(file);
+        }
+      });
+      final List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+
+      Assertions.assertThat(outcomes(events, PencilEncodeEvent.NAME)).containsExactly("ok");
+      Assertions.assertThat(outcomes(events, PencilMatchEvent.NAME))
+          .containsExactly("match", "mismatch");
+      for (RecordedEvent e : events) {
+        Assertions.assertThat(e.getString("encodeId")).isEqualTo("bcrypt");
+        Assertions.assertThat(e.getString("algorithm")).isEqualTo("BCryptPasswordEncoder");
+        Assertions.assertThat(e.getInt("saltSize")).isEqualTo(-1);
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private static List<String> outcomes(List<RecordedEvent> events, String name) {
+    return events.stream()
+        .filter(e -> e.getEventType().getName().equals(name))
+        .sorted((a, b) -> a.getStartTime().compareTo(b.getStartTime()))
+        .map(e -> e.getString("outcome"))
+        .collect(Collectors.toList());
+  }
+}
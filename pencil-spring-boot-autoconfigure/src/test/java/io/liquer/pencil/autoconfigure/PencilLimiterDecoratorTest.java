@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.liquer.pencil.autoconfigure;
+
+import io.liquer.pencil.encoder.SSHA512PasswordEncoder;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.context.ConfigurationPropertiesAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * @author sius
+ */
+public class PencilLimiterDecoratorTest {
+
+  private final ApplicationContextRunner contextRunner =
+      new ApplicationContextRunner()
+          .withConfiguration(AutoConfigurations.of(
+              ConfigurationPropertiesAutoConfiguration.class,
+              PencilAutoConfiguration.class));
+
+  @Test
+  void limiter_should_be_opt_in() {
+    this.contextRunner.run((context) ->
+      Assertions.assertThat(context).doesNotHaveBean(PencilLimiterDecorator.class));
+  }
+
+  @Test
+  void enabled_limiter_should_bind_the_limits_per_cost_class() {
+    this.contextRunner
+        .withPropertyValues(
+            "liquer.pencil.limiter.enabled=true",
+            "liquer.pencil.limiter.cheap.initial-limit=32",
+            "liquer.pencil.limiter.adaptive.initial-limit=2")
+        .run((context) -> {
+      final PencilLimiterDecorator limiter = context.getBean(PencilLimiterDecorator.class);
+      Assertions.assertThat(limiter.getCheapLimit()).isEqualTo(32);
+      Assertions.assertThat(limiter.getAdaptiveLimit()).isEqualTo(2);
+      final PasswordEncoder passwordEncoder = context.getBean(PasswordEncoder.class);
+      Assertions.assertThat(passwordEncoder.matches("Test", passwordEncoder.encode("Test"))).isTrue();
+    });
+  }
+
+  @Test
+  void matches_over_the_limit_should_be_rejected_per_cost_class() throws Exception {
+    final PencilProperties.Limiter properties = new PencilProperties.Limiter();
+    properties.getAdaptive().setInitialLimit(1);
+    final PencilLimiterDecorator decorator = new PencilLimiterDecorator(properties);
+    final BlockingPasswordEncoder blocking = new BlockingPasswordEncoder();
+    final PasswordEncoder adaptive = decorator.decorate("bcrypt", blocking);
+    final PasswordEncoder cheap = decorator.decorate("SSHA512", new SSHA512PasswordEncoder());
+
+    final CompletableFuture<Boolean> running =
+        CompletableFuture.supplyAsync(() -> adaptive.matches("Test", "Test"));
+    Assertions.assertThat(blocking.started.await(5, TimeUnit.SECONDS)).isTrue();
+    Assertions.assertThatThrownBy(() -> adaptive.matches("Test", "Test"))
+        .isInstanceOf(PencilLimitExceededException.class);
+    Assertions.assertThat(cheap.matches("Test", cheap.encode("Test"))).isTrue();
+
+    blocking.release.countDown();
+    Assertions.assertThat(running.get(5, TimeUnit.SECONDS)).isTrue();
+    Assertions.assertThat(adaptive.matches("Test", "Test")).isTrue();
+  }
+
+  @Test
+  void error_in_matches_should_release_the_permit() {
+    final PencilProperties.Limiter properties = new PencilProperties.Limiter();
+    properties.getAdaptive().setInitialLimit(1);
+    final PencilLimiterDecorator decorator = new PencilLimiterDecorator(properties);
+    final PasswordEncoder failing = decorator.decorate("bcrypt", new PasswordEncoder() {
+      @Override
+      public String encode(CharSequence rawPassword) {
+        return rawPassword.toString();
+      }
+
+      @Override
+      public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        throw new StackOverflowError();
+      }
+    });
+
+    for (int i = 0; i < 3; i++) {
+      Assertions.assertThatThrownBy(() -> failing.matches("Test", "Test"))
+          .isInstanceOf(StackOverflowError.class);
+    }
+  }
+
+  @Test
+  void limit_should_decrease_on_slow_and_increase_on_fast_samples() {
+    final AdaptiveLimiter limiter = new AdaptiveLimiter(10, 2, 12, 2.0, 0.9);
+    final int inflight = limiter.tryAcquire();
+    limiter.release(1_000_000L, 10);
+    Assertions.assertThat(limiter.getLimit()).isEqualTo(11);
+
+    limiter.tryAcquire();
+    limiter.release(1_000_000L, 10);
+    limiter.tryAcquire();
+    limiter.release(1_000_000L, 10);
+    Assertions.assertThat(limiter.getLimit()).isEqualTo(12);
+
+    limiter.tryAcquire();
+    limiter.release(1_000_000L, 1);
+    Assertions.assertThat(limiter.getLimit()).as("unused limit should not grow").isEqualTo(12);
+
+    limiter.tryAcquire();
+    limiter.release(2_200_000L, 12);
+    Assertions.assertThat(limiter.getLimit()).isEqualTo(10);
+
+    for (int i = 0; i < 10; i++) {
+      limiter.tryAcquire();
+      limiter.release(100_000_000L, 12);
+    }
+    Assertions.assertThat(limiter.getLimit()).isEqualTo(2);
+    Assertions.assertThat(limiter.getInflight()).isZero();
+    Assertions.assertThat(inflight).isEqualTo(1);
+  }
+
+  @Test
+  void invalid_limits_should_throw() {
+    Assertions.assertThatThrownBy(() -> new AdaptiveLimiter(1, 0, 1, 2.0, 0.9))
+        .isInstanceOf(IllegalArgumentException.class);
+    Assertions.assertThatThrownBy(() -> new AdaptiveLimiter(1, 2, 1, 2.0, 0.9))
+        .isInstanceOf(IllegalArgumentException.class);
+    Assertions.assertThatThrownBy(() -> new AdaptiveLimiter(1, 1, 1, 0.5, 0.9))
+        .isInstanceOf(IllegalArgumentException.class);
+    Assertions.assertThatThrownBy(() -> new AdaptiveLimiter(1, 1, 1, 2.0, 1.0))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static final class BlockingPasswordEncoder implements PasswordEncoder {
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+      return rawPassword.toString();
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+      started.countDown();
+      try {
+        release.await(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return rawPassword.toString().equals(encodedPassword);
+    }
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.autoconfigure;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.context.ConfigurationPropertiesAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * @author sius
+ */
+public class PencilMetricsAutoConfigurationTest {
+
+  private final ApplicationContextRunner contextRunner =
+      new ApplicationContextRunner()
+          .withConfiguration(AutoConfigurations.of(
+              ConfigurationPropertiesAutoConfiguration.class,
+              PencilAutoConfiguration.class,
+              PencilMetricsAutoConfiguration.class));
+
+  @Test
+  void without_meterRegistry_metricsDecorator_should_not_be_loaded() {
+    this.contextRunner.run((context) -> {
+      Assertions.assertThat(context).hasSingleBean(PasswordEncoder.class);
+      Assertions.assertThat(context).doesNotHaveBean(PencilMetricsDecorator.class);
+    });
+  }
+
+  @Test
+  void disabled_metricsDecorator_should_not_be_loaded() {
+    this.contextRunner
+        .withPropertyValues("liquer.pencil.metrics.enabled=false")
+        .withUserConfiguration(MeterRegistryConfiguration.class).run((context) -> {
+      Assertions.assertThat(context).hasSingleBean(PasswordEncoder.class);
+      Assertions.assertThat(context).doesNotHaveBean(PencilMetricsDecorator.class);
+    });
+  }
+
+  @Test
+  void metrics_should_be_recorded_per_encode_id() {
+    this.contextRunner
+        .withPropertyValues("liquer.pencil.default-encode-id=SSHA256")
+        .withUserConfiguration(MeterRegistryConfiguration.class).run((context) -> {
+      Assertions.assertThat(context).hasSingleBean(PencilMetricsDecorator.class);
+      final PasswordEncoder passwordEncoder = context.getBean(PasswordEncoder.class);
+      final MeterRegistry registry = context.getBean(MeterRegistry.class);
+
+      final String encodedPassword = passwordEncoder.encode("Test");
+      Assertions.assertThat(encodedPassword).startsWith("{SSHA256}");
+      Assertions.assertThat(passwordEncoder.matches("Test", encodedPassword)).isTrue();
+      Assertions.assertThat(passwordEncoder.matches("Tesd", encodedPassword)).isFalse();
+      Assertions.assertThat(passwordEncoder.matches("Test", "{SSHA256}!!!")).isFalse();
+      Assertions.assertThat(passwordEncoder.matches("Test", "{ldap}sVoGssCjBP6qNXsBPIO+9CGt7wHEscLU1P1g9Q=="))
+          .isTrue();
+      Assertions.assertThat(passwordEncoder.matches("Test", "{MD5}098f6bcd4621d373cade4e832627b4f6"))
+          .isFalse();
+
+      Assertions.assertThat(registry.get(PencilMetricsDecorator.TIMER)
+          .tags("id", "SSHA256", "operation", "encode").timer().count()).isEqualTo(1);
+      Assertions.assertThat(registry.get(PencilMetricsDecorator.TIMER)
+          .tags("id", "SSHA256", "operation", "matches").timer().count()).isEqualTo(3);
+      Assertions.assertThat(registry.get(PencilMetricsDecorator.TIMER)
+          .tags("id", "ldap", "operation", "matches").timer().count()).isEqualTo(1);
+      Assertions.assertThat(registry.get(PencilMetricsDecorator.MATCH_FAILURES)
+          .tags("id", "SSHA256").functionCounter().count()).isEqualTo(1);
+      Assertions.assertThat(registry.get(PencilMetricsDecorator.MALFORMED)
+          .tags("id", "SSHA256").functionCounter().count()).isEqualTo(1);
+      Assertions.assertThat(registry.get(PencilMetricsDecorator.UNKNOWN_IDS)
+          .functionCounter().count()).isEqualTo(1);
+      Assertions.assertThat(registry.get(PencilMetricsDecorator.ACTIVE)
+          .gauge().value()).isZero();
+    });
+  }
+
+  @Test
+  void malformed_bcrypt_hash_should_be_counted_as_malformed() {
+    this.contextRunner
+        .withUserConfiguration(MeterRegistryConfiguration.class).run((context) -> {
+      final PasswordEncoder passwordEncoder = context.getBean(PasswordEncoder.class);
+      final MeterRegistry registry = context.getBean(MeterRegistry.class);
+      Assertions.assertThat(passwordEncoder.matches("Test", "{bcrypt}not-a-bcrypt-hash")).isFalse();
+      Assertions.assertThat(registry.get(PencilMetricsDecorator.MALFORMED)
+          .tags("id", "bcrypt").functionCounter().count()).isEqualTo(1);
+      Assertions.assertThat(registry.get(PencilMetricsDecorator.MATCH_FAILURES)
+          .tags("id", "bcrypt").functionCounter().count()).isZero();
+    });
+  }
+
+  @Test
+  void malformed_ssha_hash_behind_the_limiter_should_be_counted_as_malformed() {
+    this.contextRunner
+        .withPropertyValues("liquer.pencil.limiter.enabled=true")
+        .withUserConfiguration(MeterRegistryConfiguration.class).run((context) -> {
+      Assertions.assertThat(context).hasSingleBean(PencilLimiterDecorator.class);
+      final PasswordEncoder passwordEncoder = context.getBean(PasswordEncoder.class);
+      final MeterRegistry registry = context.getBean(MeterRegistry.class);
+      Assertions.assertThat(passwordEncoder.matches("Test", "{SSHA}!!!")).isFalse();
+      Assertions.assertThat(registry.get(PencilMetricsDecorator.MALFORMED)
+          .tags("id", "SSHA").functionCounter().count()).isEqualTo(1);
+      Assertions.assertThat(registry.get(PencilMetricsDecorator.MATCH_FAILURES)
+          .tags("id", "SSHA").functionCounter().count()).isZero();
+    });
+  }
+
+  @Configuration
+  static class MeterRegistryConfiguration {
+
+    @Bean
+    MeterRegistry meterRegistry() {
+      return new SimpleMeterRegistry();
+    }
+  }
+}
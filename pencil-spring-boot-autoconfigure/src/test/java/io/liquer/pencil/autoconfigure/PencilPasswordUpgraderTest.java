@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.liquer.pencil.autoconfigure;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.context.ConfigurationPropertiesAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * @author sius
+ */
+public class PencilPasswordUpgraderTest {
+
+  private final ApplicationContextRunner contextRunner =
+      new ApplicationContextRunner()
+          .withConfiguration(AutoConfigurations.of(
+              ConfigurationPropertiesAutoConfiguration.class,
+              PencilAutoConfiguration.class,
+              PencilUpgradeAutoConfiguration.class));
+
+  private final PasswordEncoder passwordEncoder =
+      PencilPasswordEncoderFactory.passwordEncoder(new PencilProperties());
+
+  @Test
+  void upgrader_should_be_opt_in() {
+    this.contextRunner
+        .withUserConfiguration(UserDetailsPasswordServiceConfiguration.class)
+        .run((context) ->
+      Assertions.assertThat(context).doesNotHaveBean(PencilPasswordUpgrader.class));
+  }
+
+  @Test
+  void enabled_upgrader_should_require_a_sink() {
+    this.contextRunner
+        .withPropertyValues("liquer.pencil.upgrade.enabled=true")
+        .run((context) ->
+      Assertions.assertThat(context).doesNotHaveBean(PencilPasswordUpgrader.class));
+    this.contextRunner
+        .withPropertyValues("liquer.pencil.upgrade.enabled=true")
+        .withUserConfiguration(UserDetailsPasswordServiceConfiguration.class)
+        .run((context) -> {
+      Assertions.assertThat(context).hasSingleBean(PencilPasswordUpgradeSink.class);
+      Assertions.assertThat(context).hasSingleBean(PencilPasswordUpgrader.class);
+    });
+  }
+
+  @Test
+  void upgrades_should_be_coalesced_per_user_and_batched() {
+    final List<List<PencilPasswordUpgrade>> batches = new CopyOnWriteArrayList<>();
+    try (PencilPasswordUpgrader upgrader = new PencilPasswordUpgrader(
+        passwordEncoder, batches::add, 2, Duration.ofHours(1), 100)) {
+      Assertions.assertThat(upgrader.submit(user("u1"), "Test1")).isTrue();
+      Assertions.assertThat(upgrader.submit(user("u1"), "Other")).isFalse();
+      Assertions.assertThat(upgrader.getPendingCount()).isEqualTo(1);
+      upgrader.flush();
+
+      Assertions.assertThat(batches).hasSize(1);
+      final PencilPasswordUpgrade upgrade = batches.get(0).get(0);
+      Assertions.assertThat(upgrade.getUser().getUsername()).isEqualTo("u1");
+      Assertions.assertThat(upgrade.getEncodedPassword()).startsWith("{bcrypt}");
+      Assertions.assertThat(passwordEncoder.matches("Test1", upgrade.getEncodedPassword())).isTrue();
+      Assertions.assertThat(upgrader.getUpgradedCount()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  void full_batches_should_be_flushed_in_the_background() throws Exception {
+    final CountDownLatch flushed = new CountDownLatch(1);
+    final List<PencilPasswordUpgrade> upgrades = new CopyOnWriteArrayList<>();
+    try (PencilPasswordUpgrader upgrader = new PencilPasswordUpgrader(
+        passwordEncoder, batch -> {
+          upgrades.addAll(batch);
+          flushed.countDown();
+        }, 2, Duration.ofHours(1), 100)) {
+      upgrader.submit(user("u1"), "Test1");
+      upgrader.submit(user("u2"), "Test2");
+      Assertions.assertThat(flushed.await(10, TimeUnit.SECONDS)).isTrue();
+      Assertions.assertThat(upgrades).hasSize(2);
+    }
+  }
+
+  @Test
+  void close_should_flush_and_reject_further_upgrades() {
+    final List<PencilPasswordUpgrade> upgrades = new CopyOnWriteArrayList<>();
+    final PencilPasswordUpgrader upgrader = new PencilPasswordUpgrader(
+        passwordEncoder, upgrades::addAll, 10, Duration.ofHours(1), 100);
+    upgrader.submit(user("u1"), "Test1");
+    upgrader.close();
+    Assertions.assertThat(upgrades).hasSize(1);
+    Assertions.assertThat(upgrader.submit(user("u2"), "Test2")).isFalse();
+  }
+
+  @Test
+  void upgrades_beyond_max_pending_should_be_dropped() {
+    try (PencilPasswordUpgrader upgrader = new PencilPasswordUpgrader(
+        passwordEncoder, batch -> { }, 10, Duration.ofHours(1), 1)) {
+      Assertions.assertThat(upgrader.submit(user("u1"), "Test1")).isTrue();
+      Assertions.assertThat(upgrader.submit(user("u2"), "Test2")).isFalse();
+      Assertions.assertThat(upgrader.getDroppedCount()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  void sink_failures_should_be_counted() {
+    try (PencilPasswordUpgrader upgrader = new PencilPasswordUpgrader(
+        passwordEncoder, batch -> {
+          throw new IllegalStateException("store unavailable");
+        }, 10, Duration.ofHours(1), 10)) {
+      upgrader.submit(user("u1"), "Test1");
+      upgrader.flush();
+      Assertions.assertThat(upgrader.getFailedCount()).isEqualTo(1);
+      Assertions.assertThat(upgrader.getPendingCount()).isZero();
+    }
+  }
+
+  @Test
+  void invalid_arguments_should_throw() {
+    Assertions.assertThatThrownBy(() -> new PencilPasswordUpgrader(
+        passwordEncoder, batch -> { }, 0, Duration.ofSeconds(1), 1))
+        .isInstanceOf(IllegalArgumentException.class);
+    Assertions.assertThatThrownBy(() -> new PencilPasswordUpgrader(
+        passwordEncoder, batch -> { }, 1, Duration.ZERO, 1))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static UserDetails user(String username) {
+    return User.withUsername(username).password("{SSHA}x").roles("USER").build();
+  }
+
+  @Configuration
+  static class UserDetailsPasswordServiceConfiguration {
+
+    @Bean
+    UserDetailsPasswordService userDetailsPasswordService() {
+      return (user, newPassword) -> user;
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.liquer.pencil.autoconfigure;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.context.ConfigurationPropertiesAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+/**
+ * @author sius
+ */
+public class ReactivePencilPasswordEncoderTest {
+
+  private final ApplicationContextRunner contextRunner =
+      new ApplicationContextRunner()
+          .withConfiguration(AutoConfigurations.of(
+              ConfigurationPropertiesAutoConfiguration.class,
+              PencilAutoConfiguration.class,
+              PencilReactiveAutoConfiguration.class));
+
+  @Test
+  void disabled_reactivePasswordEncoder_should_not_be_loaded() {
+    this.contextRunner
+        .withPropertyValues("liquer.pencil.reactive.enabled=false")
+        .run((context) ->
+      Assertions.assertThat(context).doesNotHaveBean(ReactivePencilPasswordEncoder.class));
+  }
+
+  @Test
+  void reactivePasswordEncoder_should_encode_and_match() {
+    this.contextRunner
+        .withPropertyValues("liquer.pencil.default-encode-id=SSHA512")
+        .run((context) -> {
+      final ReactivePencilPasswordEncoder passwordEncoder =
+          context.getBean(ReactivePencilPasswordEncoder.class);
+      final String encodedPassword = passwordEncoder.encode("Test").block();
+      Assertions.assertThat(encodedPassword).startsWith("{SSHA512}");
+      StepVerifier.create(passwordEncoder.matches("Test", encodedPassword))
+          .expectNext(true)
+          .verifyComplete();
+      StepVerifier.create(passwordEncoder.matches("Tesd", encodedPassword))
+          .expectNext(false)
+          .verifyComplete();
+      StepVerifier.create(passwordEncoder.upgradeEncoding(encodedPassword))
+          .expectNext(false)
+          .verifyComplete();
+    });
+  }
+
+  @Test
+  void cheap_encode_ids_should_run_inline_and_adaptive_hashes_offloaded() {
+    this.contextRunner
+        .withPropertyValues("liquer.pencil.default-encode-id=SSHA512")
+        .run((context) -> {
+      final ReactivePencilPasswordEncoder reactive = context.getBean(ReactivePencilPasswordEncoder.class);
+      final String bcrypt = "{bcrypt}" + new BCryptPasswordEncoder().encode("Test");
+      Assertions.assertThat(reactive.isInline("{SSHA512}x")).isTrue();
+      Assertions.assertThat(reactive.isInline("{SSHA-256}x")).isTrue();
+      Assertions.assertThat(reactive.isInline("{ldap}x")).isTrue();
+      Assertions.assertThat(reactive.isInline("noEncodeId")).isTrue();
+      Assertions.assertThat(reactive.isInline(bcrypt)).isFalse();
+      Assertions.assertThat(reactive.isInline("{scrypt}x")).isFalse();
+      Assertions.assertThat(reactive.isInline("{MD5}x")).isFalse();
+
+      final AtomicReference<String> thread = new AtomicReference<>();
+      StepVerifier.create(reactive.matches("Test", bcrypt)
+          .doOnNext(matches -> thread.set(Thread.currentThread().getName())))
+          .expectNext(true)
+          .verifyComplete();
+      Assertions.assertThat(thread.get()).startsWith("pencil-reactive");
+    });
+  }
+
+  @Test
+  void default_bcrypt_should_be_offloaded() {
+    this.contextRunner.run((context) -> {
+      final ReactivePencilPasswordEncoder reactive = context.getBean(ReactivePencilPasswordEncoder.class);
+      Assertions.assertThat(reactive.isInline("noEncodeId")).isFalse();
+      Assertions.assertThat(reactive.isInline("{SSHA}x")).isTrue();
+    });
+  }
+
+  @Test
+  void disposing_should_dispose_the_scheduler() {
+    final PasswordEncoder passwordEncoder = PencilPasswordEncoderFactory.passwordEncoder(new PencilProperties());
+    final ReactivePencilPasswordEncoder reactive = new ReactivePencilPasswordEncoder(
+        passwordEncoder, Schedulers.newBoundedElastic(1, 1, "test"), Collections.emptySet(), "bcrypt");
+    Assertions.assertThat(reactive.isDisposed()).isFalse();
+    reactive.dispose();
+    Assertions.assertThat(reactive.isDisposed()).isTrue();
+  }
+}
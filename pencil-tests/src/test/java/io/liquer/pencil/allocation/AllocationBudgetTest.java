@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2020 Uwe Schumacher.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+package io.liquer.pencil.allocation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import io.liquer.pencil.encoder.SSHA224PasswordEncoder;
+import io.liquer.pencil.encoder.SSHA256PasswordEncoder;
+import io.liquer.pencil.encoder.SSHA384PasswordEncoder;
+import io.liquer.pencil.encoder.SSHA512PasswordEncoder;
+import io.liquer.pencil.encoder.SSHAPasswordEncoder;
+import io.liquer.pencil.encoder.legacy.XORPasswordEncoder;
+import io.liquer.pencil.encoder.support.Base64Support;
+import io.liquer.pencil.encoder.support.EPParser;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Allocation budgets in bytes per call for the encode/matches hot paths.
+ * A budget is the measured steady state allocation after JIT warm up
+ * (C2, compressed oops) with some headroom for JDK variance,
+ * the salted encoders match without any per call garbage once C2 escape analysis
+ * removed the temporary objects, the near zero budgets leave room for a few of them.
+ * The suite is skipped without C2, e.g. with -Xint or -XX:TieredStopAtLevel=1.
+ * Lower a budget when a path gets cheaper.
+ *
+ * @author sius
+ */
+public class AllocationBudgetTest {
+
+  private static final int WARMUP = 20_000;
+  private static final int CALLS = 10_000;
+  private static final String RAW_PASSWORD = "Tr0ub4dor&3";
+
+  private static com.sun.management.ThreadMXBean threadMXBean;
+
+  @BeforeAll
+  static void threadMXBean() {
+    final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+    threadMXBean = (com.sun.management.ThreadMXBean) bean;
+    assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+    threadMXBean.setThreadAllocatedMemoryEnabled(true);
+    assumeTrue(c2Available(), "the allocation budgets rely on C2 escape analysis");
+  }
+
+  /* the C2 compiler is enabled, i.e. neither -Xint nor a tiered stop level below 4 */
+  private static boolean c2Available() {
+    if (ManagementFactory.getCompilationMXBean() == null) {
+      return false;
+    }
+    final HotSpotDiagnosticMXBean hotSpot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+    if (hotSpot == null) {
+      return true;
+    }
+    try {
+      if (!Boolean.parseBoolean(hotSpot.getVMOption("UseCompiler").getValue())) {
+        return false;
+      }
+      return !Boolean.parseBoolean(hotSpot.getVMOption("TieredCompilation").getValue())
+          || Integer.parseInt(hotSpot.getVMOption("TieredStopAtLevel").getValue()) >= 4;
+    } catch (IllegalArgumentException e) {
+      return true;
+    }
+  }
+
+  @ParameterizedTest(name = "{0}.{1} should allocate at most {2} bytes per call")
+  @CsvSource({
+      "SSHA   , encode , 512",
+      "SSHA   , matches, 64",
+      "SSHA224, encode , 576",
+      "SSHA224, matches, 64",
+      "SSHA256, encode , 576",
+      "SSHA256, matches, 64",
+      "SSHA384, encode , 576",
+      "SSHA384, matches, 64",
+      "SSHA512, encode , 608",
+      "SSHA512, matches, 64",
+      "XOR    , encode , 192",
+      "XOR    , matches, 96",
+  })
+  void password_encoder_should_stay_within_allocation_budget(String encoder, String op, long budget) {
+    final PasswordEncoder passwordEncoder = passwordEncoder(encoder);
+    final String encodedPassword = passwordEncoder.encode(RAW_PASSWORD);
+    final Runnable call = "encode".equals(op)
+        ? () -> passwordEncoder.encode(RAW_PASSWORD)
+        : () -> passwordEncoder.matches(RAW_PASSWORD, encodedPassword);
+    assertThat(bytesPerCall(call)).as("%s.%s bytes per call", encoder, op).isLessThanOrEqualTo(budget);
+  }
+
+  @ParameterizedTest(name = "Base64Support.{0} of {1} bytes should allocate at most {2} bytes per call")
+  @CsvSource({
+      "encode   , 28  , 224",
+      "encode   , 72  , 352",
+      "encode   , 1024, 3072",
+      "decode   , 72  , 128",
+      "decode   , 1024, 1088",
+      "decodeTo , 72  , 64",
+      "wrap     , 1024, 4608",
+      "unwrap   , 1024, 4608",
+      "parse    , 72  , 64",
+  })
+  void base64_support_should_stay_within_allocation_budget(String op, int size, long budget) {
+    final byte[] value = new byte[size];
+    new Random(size).nextBytes(value);
+    final String encoded = Base64Support.base64Encode(value);
+    final String wrapped = Base64Support.wrap(encoded, 76);
+    final byte[] dst = new byte[size];
+    final EPParser parser = new EPParser(Collections.singleton("{SSHA512}"), 64);
+    final String encodedPassword = "{SSHA512}" + encoded;
+    final Runnable call;
+    switch (op) {
+      case "encode":
+        call = () -> Base64Support.base64Encode("{SSHA512}", value, 0, size, false, false);
+        break;
+      case "decode":
+        call = () -> Base64Support.base64Decode(encoded);
+        break;
+      case "decodeTo":
+        call = () -> Base64Support.decode(encoded, 0, encoded.length(), dst, 0);
+        break;
+      case "wrap":
+        call = () -> Base64Support.wrap(encoded, 76);
+        break;
+      case "unwrap":
+        call = () -> Base64Support.unwrap(wrapped);
+        break;
+      case "parse":
+        call = () -> {
+          if (parser.parse(encodedPassword)) {
+            parser.decode(dst, 0);
+          }
+        };
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown op: " + op);
+    }
+    assertThat(bytesPerCall(call)).as("%s(%d) bytes per call", op, size).isLessThanOrEqualTo(budget);
+  }
+
+  private static long bytesPerCall(Runnable call) {
+    for (int i = 0; i < WARMUP; i++) {
+      call.run();
+    }
+    final long threadId = Thread.currentThread().getId();
+    final long before = threadMXBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < CALLS; i++) {
+      call.run();
+    }
+    return (threadMXBean.getThreadAllocatedBytes(threadId) - before) / CALLS;
+  }
+
+  private static PasswordEncoder passwordEncoder(String encoder) {
+    switch (encoder) {
+      case "SSHA":
+        return new SSHAPasswordEncoder();
+      case "SSHA224":
+        return new SSHA224PasswordEncoder();
+      case "SSHA256":
+        return new SSHA256PasswordEncoder();
+      case "SSHA384":
+        return new SSHA384PasswordEncoder();
+      case "SSHA512":
+        return new SSHA512PasswordEncoder();
+      case "XOR":
+        return new XORPasswordEncoder();
+      default:
+        throw new IllegalArgumentException("Unknown encoder: " + encoder);
+    }
+  }
+}
@@ -64,6 +64,8 @@ public class PencilEnabledTest {
       "SSHA-384, {SSHA-384}GEfRczgipirNvmj1VSzQhe1daUitOcotC+qB18Ke6USKeRB8uB3Ik2HQE+KcwIEcntPDMMMohmo=",
       "SSHA512 , {SSHA512}XPTKozn3qFBn6O4VhYuFDVJDzmzQ9gLvh6FHhcpLjS0VamaS03d+nyeqc0DEAcefepgY8o8ENFS6C9NCZnBASC/KIPh3crfC",
       "SSHA-512, {SSHA-512}ck3hUCXlJ+KIhaOQH3bOEKmR+7+IsagntQOkoQrVWM2ANCoKk5yZA6QiO+bgS1Oo0dad7kDB9SOmVKn3gzRAaDCZ2QhFYbPC",
+      "bcrypt+SSHA512, {bcrypt+SSHA512}qW0MGpxX9fY=$2a$04$ZI6BVbgWyfRioLgtw/3wQOwjmWY.Jo2REE77bBmniojJhJI1P1Cea",
+      "bcrypt+SSHA-1, {bcrypt+SSHA-1}AhIAw7Jb7UY=$2a$04$T/KrrIZws.azxm1JZyIUUuYeGgHWIl7AExwlPukzdVTs8l/jAbHUK",
   })
   void encoded_passwords_should_match(String encodeId, String encodedPassword) {
     final CharSequence expectedPassword = "Test";